@@ -4,6 +4,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LoaderUsage;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -21,12 +22,18 @@ public abstract class AbstractCaller implements ProxyCallerInterface {
     private final Cache<MethodDesriptor, Method> methodCache = CacheBuilder.newBuilder()
             .build();
     private final ArtifactInterface artifact;
+    private final LoaderUsage.Usage usage;
 
     public AbstractCaller(Class clazz,
                           ArtifactInterface artifact,
                           Map<String, MethodDesriptor.Result> data) {
         this.clazz = clazz;
         this.artifact = artifact;
+        this.usage = artifact == null ? null : LoaderUsage.of(artifact.getName());
+        if (usage != null && clazz != null) {
+            // an evicted loader stays open while callers like this one use its classes
+            usage.addCaller(this, clazz.getClassLoader());
+        }
         this.data.putAll(data);
     }
 
@@ -84,6 +91,9 @@ public abstract class AbstractCaller implements ProxyCallerInterface {
         if (desriptor == null || StringUtils.isBlank(desriptor.getName())) {
             return null;
         }
+        if (usage != null) {
+            usage.touch();
+        }
 
         try {
             Method method;
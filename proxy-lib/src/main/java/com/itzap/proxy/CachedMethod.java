@@ -1,6 +1,13 @@
 package com.itzap.proxy;
 
+import com.itzap.proxy.metrics.ArtifactAccounting;
+import com.itzap.proxy.metrics.CallTracer;
+import com.itzap.proxy.metrics.FlightEvents;
+import com.itzap.proxy.metrics.MethodMetrics;
+import com.itzap.proxy.metrics.ProxyMetrics;
+import com.itzap.proxy.metrics.StartupTimeline;
 import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.ArtifactWarmUp;
 import org.apache.commons.lang3.StringUtils;
 
 import java.lang.reflect.Method;
@@ -32,17 +39,32 @@ public class CachedMethod implements ProxyInterface {
             return new MethodDesriptor.Result(this, null);
         }
 
+        boolean recorded = !ArtifactWarmUp.isReplaying();
+        MethodMetrics metrics = recorded && ProxyMetrics.isEnabled() ?
+                ProxyMetrics.forMethod(this.artifact, this.sourceClass, this.method) : null;
+        boolean firstCall = recorded && StartupTimeline.isFirstCallPending();
+        long start = metrics != null || firstCall ? System.nanoTime() : 0;
+        Object event = FlightEvents.beginCall();
+        CallTracer.Frame frame = recorded && CallTracer.isEnabled() ? CallTracer.enter() : null;
+        ArtifactAccounting.Frame account = recorded && ArtifactAccounting.isEnabled() ?
+                ArtifactAccounting.enter() : null;
+        Object[] args = null;
+        boolean failed = true;
         ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
         try {
             if (this.descriptor.isPushClassLoader()) {
                 Thread.currentThread().setContextClassLoader(this.sourceClass.getClassLoader());
             }
 
+            args = ProxyUtils.unwrapProxies(params);
+            Object result;
             if (this.descriptor.isStatic()) {
-                return new MethodDesriptor.Result(this, method.invoke(null, ProxyUtils.unwrapProxies(params)));
+                result = method.invoke(null, args);
             } else {
-                return new MethodDesriptor.Result(this, method.invoke(source, ProxyUtils.unwrapProxies(params)));
+                result = method.invoke(source, args);
             }
+            failed = false;
+            return new MethodDesriptor.Result(this, result);
 
         } catch (Exception e) {
             throw new ProxyException(this,
@@ -51,6 +73,19 @@ public class CachedMethod implements ProxyInterface {
             if (this.descriptor.isPushClassLoader()) {
                 Thread.currentThread().setContextClassLoader(contextClassLoader);
             }
+            if (account != null) {
+                ArtifactAccounting.exit(account, this.artifact);
+            }
+            if (metrics != null) {
+                metrics.record(start, failed);
+            }
+            if (firstCall) {
+                StartupTimeline.firstCall(this.artifact, start, this.descriptor.getName());
+            }
+            FlightEvents.endCall(event, this.artifact, this.sourceClass, this.descriptor.getName(), failed);
+            if (frame != null) {
+                CallTracer.exit(frame, this.artifact, this.sourceClass, this.method, args, failed);
+            }
         }
     }
 
@@ -0,0 +1,7 @@
+package com.itzap.proxy;
+
+public class IntegrityException extends ProxyException {
+    public IntegrityException(ProxyInterface proxy, String message) {
+        super(proxy, message);
+    }
+}
@@ -5,6 +5,10 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.itzap.proxy.metrics.ArtifactAccounting;
+import com.itzap.proxy.metrics.MethodMetrics;
+import com.itzap.proxy.metrics.ProxyMetrics;
+import com.itzap.proxy.metrics.StartupTimeline;
 import com.itzap.proxy.model.ArtifactInterface;
 import com.itzap.proxy.utils.LibLoader;
 import org.apache.commons.lang3.ArrayUtils;
@@ -145,13 +149,44 @@ public class ObjectBuilder implements ProxyVersionedInterface {
         LOGGER.debug("Loading enum {}", clazzName);
 
         try {
-            return getClassLoader().loadClass(clazzName);
+            URLClassLoader classLoader = getClassLoader();
+            long start = System.nanoTime();
+            Class<?> clazz = classLoader.loadClass(clazzName);
+            StartupTimeline timeline = StartupTimeline.get(this.artifact.getName());
+            if (timeline != null) {
+                timeline.recordOnce(StartupTimeline.Phase.FIRST_CLASS_LOAD, start, 1, 0, clazzName);
+            }
+            return clazz;
         } catch (Exception e) {
             throw new ProxyException(this, e);
         }
     }
 
     public ProxyCallerInterface build() {
+        if (!ProxyMetrics.isEnabled() && !ArtifactAccounting.isEnabled()) {
+            return doBuild();
+        }
+
+        MethodMetrics metrics = ProxyMetrics.isEnabled() ?
+                ProxyMetrics.forBuild(this.artifact, resolveClassName()) : null;
+        ArtifactAccounting.Frame account = ArtifactAccounting.isEnabled() ? ArtifactAccounting.enter() : null;
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ProxyCallerInterface target = doBuild();
+            failed = false;
+            return target;
+        } finally {
+            if (account != null) {
+                ArtifactAccounting.exit(account, this.artifact);
+            }
+            if (metrics != null) {
+                metrics.record(start, failed);
+            }
+        }
+    }
+
+    private ProxyCallerInterface doBuild() {
         ProxyCallerInterface target;
         Class<?> targetClass;
         ClassLoader currentClassLoader = Thread.currentThread().getContextClassLoader();
@@ -10,8 +10,25 @@ public interface ProxyCallerInterface extends ProxyVersionedInterface {
     MethodDesriptor.Result call(MethodDesriptor desriptor, Object ... params);
 
     Object see();
+
     Class myClass();
     boolean isInstanceOf(String name);
     boolean isNull();
     ArtifactInterface getArtifact();
+
+    /**
+     * The proxied object as a type the caller shares with the artifact, through an API layer.
+     */
+    default <T> T as(Class<T> type) {
+        Object obj = see();
+        if (obj == null) {
+            return null;
+        }
+        if (!type.isInstance(obj)) {
+            throw new ProxyException(this, String.format(
+                    "%s is not visible to %s. Declare an API layer shared by both class loaders",
+                    type.getName(), obj.getClass().getName()));
+        }
+        return type.cast(obj);
+    }
 }
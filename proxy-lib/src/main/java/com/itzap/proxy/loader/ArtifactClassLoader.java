@@ -0,0 +1,145 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+/**
+ * Class loader that defines classes straight from {@link JarSource} buffers instead of
+ * going through the JDK jar streams. Jar URLs are kept by the loader itself, so the
+ * parent {@link URLClassLoader} never opens them.
+ */
+public class ArtifactClassLoader extends CountingClassLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactClassLoader.class);
+    private static final String CLASS_SUFFIX = ".class";
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final List<JarSource> sources;
+    private final Map<String, JarSource> index;
+    private final Map<JarSource, CodeSource> codeSources = Maps.newIdentityHashMap();
+
+    public ArtifactClassLoader(List<? extends JarSource> sources, ClassLoader parent) {
+        super(new URL[0], parent);
+        this.sources = ImmutableList.copyOf(sources);
+
+        Map<String, JarSource> index = Maps.newHashMap();
+        for (JarSource source: this.sources) {
+            for (String name: source.getNames()) {
+                if (!index.containsKey(name)) {
+                    index.put(name, source);
+                }
+            }
+            codeSources.put(source, new CodeSource(source.getUrl(), (Certificate[]) null));
+        }
+        this.index = index;
+    }
+
+    public List<JarSource> getSources() {
+        return sources;
+    }
+
+    @Override
+    public URL[] getURLs() {
+        URL[] urls = new URL[sources.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = sources.get(i).getUrl();
+        }
+        return urls;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(CLASS_SUFFIX);
+        JarSource source = index.get(path);
+        if (source == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        try {
+            ByteBuffer bytes = source.read(path);
+            definePackageFor(name, source);
+            Class<?> clazz = defineClass(name, bytes, codeSources.get(source));
+            classDefined(clazz);
+            return clazz;
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        JarSource source = index.get(name);
+        return source == null ? null : source.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) {
+        if (!index.containsKey(name)) {
+            return Collections.emptyEnumeration();
+        }
+
+        List<URL> urls = Lists.newArrayList();
+        for (JarSource source: sources) {
+            if (source.contains(name)) {
+                URL url = source.getResource(name);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        for (JarSource source: sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close jar source {}", source.getUrl(), e);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageFor(String className, JarSource source) {
+        int dot = className.lastIndexOf('.');
+        if (dot <= 0) {
+            return;
+        }
+
+        String packageName = className.substring(0, dot);
+        if (getPackage(packageName) != null) {
+            return;
+        }
+
+        try {
+            Manifest manifest = source.getManifest();
+            if (manifest != null) {
+                definePackage(packageName, manifest, source.getUrl());
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // package was defined concurrently by another thread
+        }
+    }
+}
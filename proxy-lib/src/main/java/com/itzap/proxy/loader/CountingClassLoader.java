@@ -0,0 +1,62 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableList;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * URL class loader that counts the classes it defines, so the memory held by an artifact
+ * can be estimated without walking the heap. A loader that records also keeps the names of the
+ * classes it defines afterwards, in definition order, for AppCDS training runs.
+ */
+public class CountingClassLoader extends URLClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final AtomicInteger definedClasses = new AtomicInteger();
+    private volatile Queue<String> definedNames;
+
+    public CountingClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    public synchronized void startRecording() {
+        if (definedNames == null) {
+            definedNames = new ConcurrentLinkedQueue<String>();
+        }
+    }
+
+    public boolean isRecording() {
+        return definedNames != null;
+    }
+
+    public int getDefinedClasses() {
+        return definedClasses.get();
+    }
+
+    public List<String> getDefinedClassNames() {
+        Queue<String> names = definedNames;
+        return names == null ? ImmutableList.<String>of() : ImmutableList.copyOf(names);
+    }
+
+    protected void classDefined(Class<?> clazz) {
+        Queue<String> names = definedNames;
+        if (names != null) {
+            names.add(clazz.getName());
+        }
+        definedClasses.incrementAndGet();
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = super.findClass(name);
+        classDefined(clazz);
+        return clazz;
+    }
+}
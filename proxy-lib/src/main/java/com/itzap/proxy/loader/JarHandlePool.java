@@ -0,0 +1,207 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarFile;
+
+/**
+ * LRU bounded pool of open jar files shared by the artifact loaders. Handles are reference
+ * counted, an evicted handle that is still in use is closed by its last user.
+ */
+public final class JarHandlePool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JarHandlePool.class);
+    private static final int DEFAULT_MAX_OPEN = 64;
+    private static final JarHandlePool INSTANCE = new JarHandlePool(DEFAULT_MAX_OPEN);
+
+    private final Map<File, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong opens = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile int maxOpen;
+
+    public interface JarFunction<T> {
+        T apply(JarFile jar) throws IOException;
+    }
+
+    JarHandlePool(int maxOpen) {
+        this.maxOpen = maxOpen;
+    }
+
+    public static JarHandlePool get() {
+        return INSTANCE;
+    }
+
+    public void setMaxOpen(int maxOpen) {
+        Preconditions.checkArgument(maxOpen > 0, "Max open jars must be positive");
+        this.maxOpen = maxOpen;
+        synchronized (handles) {
+            evict();
+        }
+    }
+
+    public int getMaxOpen() {
+        return maxOpen;
+    }
+
+    public <T> T withJar(File file, JarFunction<T> function) throws IOException {
+        Handle handle = acquire(file.getAbsoluteFile());
+        try {
+            return function.apply(handle.jar);
+        } finally {
+            release(handle);
+        }
+    }
+
+    public void close(File file) {
+        synchronized (handles) {
+            Handle handle = handles.remove(file.getAbsoluteFile());
+            if (handle != null) {
+                retire(handle);
+            }
+        }
+    }
+
+    public void closeAll() {
+        synchronized (handles) {
+            for (Handle handle: handles.values()) {
+                retire(handle);
+            }
+            handles.clear();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(opens.get(), hits.get(), evictions.get(), open.get(), maxOpen);
+    }
+
+    private Handle acquire(File file) throws IOException {
+        synchronized (handles) {
+            Handle handle = handles.get(file);
+            if (handle != null) {
+                handle.refs++;
+                hits.incrementAndGet();
+                return handle;
+            }
+        }
+
+        JarFile jar = new JarFile(file);
+        opens.incrementAndGet();
+        open.incrementAndGet();
+        synchronized (handles) {
+            Handle handle = handles.get(file);
+            if (handle != null) {
+                // opened concurrently by another thread
+                handle.refs++;
+                closeJar(jar);
+                return handle;
+            }
+
+            handle = new Handle(jar);
+            handle.refs++;
+            handles.put(file, handle);
+            evict();
+            return handle;
+        }
+    }
+
+    private void release(Handle handle) {
+        synchronized (handles) {
+            handle.refs--;
+            if (handle.retired && handle.refs == 0) {
+                closeJar(handle.jar);
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Handle> iterator = handles.values().iterator();
+        while (handles.size() > maxOpen && iterator.hasNext()) {
+            Handle handle = iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+            retire(handle);
+        }
+    }
+
+    private void retire(Handle handle) {
+        handle.retired = true;
+        if (handle.refs == 0) {
+            closeJar(handle.jar);
+        }
+    }
+
+    private void closeJar(JarFile jar) {
+        LOGGER.debug("Closing jar {}", jar.getName());
+        IOUtils.closeQuietly(jar);
+        open.decrementAndGet();
+    }
+
+    private static class Handle {
+        private final JarFile jar;
+        private int refs;
+        private boolean retired;
+
+        private Handle(JarFile jar) {
+            this.jar = jar;
+        }
+    }
+
+    public static class Stats {
+        private final long opens;
+        private final long hits;
+        private final long evictions;
+        private final int open;
+        private final int maxOpen;
+
+        private Stats(long opens, long hits, long evictions, int open, int maxOpen) {
+            this.opens = opens;
+            this.hits = hits;
+            this.evictions = evictions;
+            this.open = open;
+            this.maxOpen = maxOpen;
+        }
+
+        public long getOpens() {
+            return opens;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getOpen() {
+            return open;
+        }
+
+        public int getMaxOpen() {
+            return maxOpen;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("opens", opens)
+                    .add("hits", hits)
+                    .add("evictions", evictions)
+                    .add("open", open)
+                    .add("maxOpen", maxOpen)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.itzap.proxy.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.jar.Manifest;
+
+public interface JarSource extends Closeable {
+    URL getUrl();
+
+    Collection<String> getNames();
+
+    boolean contains(String name);
+
+    ByteBuffer read(String name) throws IOException;
+
+    URL getResource(String name);
+
+    Manifest getManifest();
+}
@@ -0,0 +1,83 @@
+package com.itzap.proxy.loader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+
+/**
+ * Serves {@code jar:} resource URLs of a {@link JarSource} from the source itself, so reading
+ * a resource does not leave a jar file open in the JDK jar cache.
+ */
+class JarSourceUrlHandler extends URLStreamHandler {
+    private static final String SEPARATOR = "!/";
+
+    private final JarSource source;
+
+    JarSourceUrlHandler(JarSource source) {
+        this.source = source;
+    }
+
+    URL toUrl(String name) throws MalformedURLException {
+        return new URL("jar", "", -1, source.getUrl().toExternalForm() + SEPARATOR + name, this);
+    }
+
+    @Override
+    protected URLConnection openConnection(URL url) throws IOException {
+        String path = url.getFile();
+        int separator = path.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new MalformedURLException("Jar URL has no entry " + url);
+        }
+        return new SourceConnection(url, path.substring(separator + SEPARATOR.length()));
+    }
+
+    private class SourceConnection extends URLConnection {
+        private final String name;
+        private ByteBuffer data;
+
+        private SourceConnection(URL url, String name) {
+            super(url);
+            this.name = name;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+
+            data = source.read(name);
+            if (data == null) {
+                throw new FileNotFoundException(url.toExternalForm());
+            }
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new ByteBufferInputStream(data);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return data.remaining();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int getContentLength() {
+            long length = getContentLengthLong();
+            return length > Integer.MAX_VALUE ? -1 : (int) length;
+        }
+    }
+}
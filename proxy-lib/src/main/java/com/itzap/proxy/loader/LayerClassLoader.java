@@ -0,0 +1,97 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class loader facade over a module layer. Classes of the layer's packages go straight to the
+ * loader of the module that owns the package, everything else is delegated to the parent. The
+ * facade never reads the jars itself; its URLs are only reported.
+ */
+public class LayerClassLoader extends CountingClassLoader {
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Map<String, ClassLoader> packages;
+    private final ClassLoader layerLoader;
+    private final Collection<? extends Closeable> readers;
+    private final Set<String> seen = Sets.newConcurrentHashSet();
+
+    public LayerClassLoader(List<URL> urls, ClassLoader parent, Map<String, ClassLoader> packages,
+                            ClassLoader layerLoader) {
+        this(urls, parent, packages, layerLoader, Collections.<Closeable>emptyList());
+    }
+
+    /**
+     * @param readers module readers opened by the layer loader, closed together with this loader
+     */
+    public LayerClassLoader(List<URL> urls, ClassLoader parent, Map<String, ClassLoader> packages,
+                            ClassLoader layerLoader, Collection<? extends Closeable> readers) {
+        super(urls.toArray(new URL[0]), parent);
+        this.packages = ImmutableMap.copyOf(packages);
+        this.layerLoader = layerLoader;
+        this.readers = readers;
+    }
+
+    public ClassLoader getLayerLoader() {
+        return layerLoader;
+    }
+
+    public Set<String> getLayerPackages() {
+        return packages.keySet();
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        int dot = name.lastIndexOf('.');
+        ClassLoader loader = dot < 0 ? null : packages.get(name.substring(0, dot));
+        if (loader == null) {
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> clazz = loader.loadClass(name);
+        if (clazz.getClassLoader() == loader && seen.add(name)) {
+            classDefined(clazz);
+        }
+        return clazz;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        return layerLoader.getResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        Enumeration<URL> resources = layerLoader.getResources(name);
+        return resources != null ? resources : Collections.<URL>emptyEnumeration();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Closeable reader: readers) {
+            IOUtils.closeQuietly(reader);
+        }
+        if (layerLoader instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) layerLoader);
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,9 @@
+package com.itzap.proxy.loader;
+
+import java.net.URL;
+import java.util.List;
+
+// implemented in the Java 11 layer of the multi-release jar
+interface LayerFactory {
+    LayerClassLoader newClassLoader(String name, List<URL> urls, ClassLoader parent) throws Exception;
+}
@@ -0,0 +1,132 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.FluentIterable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+public class MappedJarSource implements JarSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedJarSource.class);
+
+    private final File file;
+    private final URL url;
+    private final ZipIndex index;
+    private final JarSourceUrlHandler handler;
+    private volatile Manifest manifest;
+    private volatile boolean manifestLoaded;
+
+    protected MappedJarSource(File file, URL url, ZipIndex index) {
+        this.file = file;
+        this.url = url;
+        this.index = index;
+        this.handler = new JarSourceUrlHandler(this);
+    }
+
+    public static MappedJarSource open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Jar file %s is too large to be mapped", file.getAbsolutePath()));
+            }
+
+            // the mapping stays valid after the channel is closed, so no file handle is kept open
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedJarSource(file, file.toURI().toURL(), ZipIndex.read(buffer));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ZipIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public URL getUrl() {
+        return url;
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        return FluentIterable.from(index.getEntries())
+                .transform(ZipIndex.Entry::getName)
+                .toList();
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return index.contains(name);
+    }
+
+    @Override
+    public ByteBuffer read(String name) throws IOException {
+        return index.read(name);
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (!index.contains(name)) {
+            return null;
+        }
+
+        try {
+            return handler.toUrl(name);
+        } catch (MalformedURLException e) {
+            LOGGER.warn("Failed to build resource URL for {} in {}", name, url);
+            return null;
+        }
+    }
+
+    @Override
+    public Manifest getManifest() {
+        if (!manifestLoaded) {
+            synchronized (this) {
+                if (!manifestLoaded) {
+                    manifest = readManifest();
+                    manifestLoaded = true;
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private Manifest readManifest() {
+        try {
+            ByteBuffer data = index.read(JarFile.MANIFEST_NAME);
+            if (data == null) {
+                return null;
+            }
+            return new Manifest(new ByteBufferInputStream(data));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read manifest from {}", url, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        // mapped buffers are released by the garbage collector
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("url", url)
+                .add("entries", index.size())
+                .toString();
+    }
+}
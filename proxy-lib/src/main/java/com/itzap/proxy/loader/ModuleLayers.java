@@ -0,0 +1,51 @@
+package com.itzap.proxy.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Entry point to the module layer engine. The engine lives in the Java 11 layer of the
+ * multi-release jar; on older runtimes it is missing and callers fall back to URL class loaders.
+ */
+public final class ModuleLayers {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleLayers.class);
+    private static final String FACTORY = "com.itzap.proxy.loader.ModuleLayerFactory";
+
+    private ModuleLayers() {}
+
+    private static class FactoryHolder {
+        private static final LayerFactory FACTORY_INSTANCE = load();
+    }
+
+    public static boolean isSupported() {
+        return FactoryHolder.FACTORY_INSTANCE != null;
+    }
+
+    // null when module layers are not supported or the jars do not resolve as modules
+    public static LayerClassLoader newClassLoader(String name, List<URL> urls, ClassLoader parent) {
+        LayerFactory factory = FactoryHolder.FACTORY_INSTANCE;
+        if (factory == null) {
+            return null;
+        }
+
+        try {
+            return factory.newClassLoader(name, urls, parent);
+        } catch (Exception | LinkageError e) {
+            LOGGER.info("Artifact {} cannot be loaded as a module layer: {}", name, e.toString());
+            LOGGER.debug("Module layer resolution failed for {}", name, e);
+            return null;
+        }
+    }
+
+    private static LayerFactory load() {
+        try {
+            return (LayerFactory) Class.forName(FACTORY).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Module layer engine is not available on this runtime", e);
+            return null;
+        }
+    }
+}
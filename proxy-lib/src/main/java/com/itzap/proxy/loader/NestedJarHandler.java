@@ -0,0 +1,161 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Handler for {@code nested:<outer jar>!/<nested jar>[!/<entry>]} URLs. Nested jars must
+ * be STORED in the outer jar, their entries are read from the outer jar mapping without
+ * extracting anything to disk.
+ */
+public class NestedJarHandler extends URLStreamHandler {
+    public static final String PROTOCOL = "nested";
+    private static final String SEPARATOR = "!/";
+    private static final NestedJarHandler INSTANCE = new NestedJarHandler();
+    private static final Map<File, MappedJarSource> OUTER_JARS = Maps.newConcurrentMap();
+    private static final Map<String, NestedJarSource> NESTED_JARS = Maps.newConcurrentMap();
+
+    public static URL toUrl(File outer, String entryName) {
+        return toUrl(outer.toURI().getRawPath() + SEPARATOR + entryName);
+    }
+
+    public static URL toUrl(File outer, String entryName, String resource) {
+        return toUrl(outer.toURI().getRawPath() + SEPARATOR + entryName + SEPARATOR + resource);
+    }
+
+    private static URL toUrl(String path) {
+        try {
+            return new URL(PROTOCOL, "", -1, path, INSTANCE);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid nested jar path " + path, e);
+        }
+    }
+
+    public static URL parse(String spec) throws MalformedURLException {
+        return new URL(null, spec, INSTANCE);
+    }
+
+    public static boolean isNested(URL url) {
+        return url != null && PROTOCOL.equalsIgnoreCase(url.getProtocol());
+    }
+
+    public static MappedJarSource openOuter(File outer) throws IOException {
+        File key = outer.getAbsoluteFile();
+        MappedJarSource source = OUTER_JARS.get(key);
+        if (source == null) {
+            synchronized (OUTER_JARS) {
+                source = OUTER_JARS.get(key);
+                if (source == null) {
+                    source = MappedJarSource.open(key);
+                    OUTER_JARS.put(key, source);
+                }
+            }
+        }
+        return source;
+    }
+
+    public static NestedJarSource open(URL url) throws IOException {
+        String[] parts = split(url);
+        return open(parts[0], parts[1]);
+    }
+
+    private static NestedJarSource open(String outerPath, String entryName) throws IOException {
+        String key = outerPath + SEPARATOR + entryName;
+        NestedJarSource source = NESTED_JARS.get(key);
+        if (source == null) {
+            synchronized (NESTED_JARS) {
+                source = NESTED_JARS.get(key);
+                if (source == null) {
+                    source = NestedJarSource.open(openOuter(new File(URI.create("file:" + outerPath))), entryName);
+                    NESTED_JARS.put(key, source);
+                }
+            }
+        }
+        return source;
+    }
+
+    private static String[] split(URL url) throws MalformedURLException {
+        if (!isNested(url)) {
+            throw new MalformedURLException("Not a nested jar URL " + url);
+        }
+
+        String path = url.getPath();
+        int first = path.indexOf(SEPARATOR);
+        if (first <= 0) {
+            throw new MalformedURLException("Nested jar URL has no entry " + url);
+        }
+
+        String outer = path.substring(0, first);
+        String rest = path.substring(first + SEPARATOR.length());
+        int second = rest.indexOf(SEPARATOR);
+        if (second < 0) {
+            return new String[]{outer, rest, null};
+        }
+        return new String[]{outer, rest.substring(0, second), rest.substring(second + SEPARATOR.length())};
+    }
+
+    @Override
+    protected URLConnection openConnection(URL url) throws IOException {
+        return new NestedConnection(url);
+    }
+
+    private static class NestedConnection extends URLConnection {
+        private ByteBuffer data;
+
+        private NestedConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+
+            String[] parts = split(url);
+            if (StringUtils.isBlank(parts[2])) {
+                throw new IOException("Nested jar URL does not point to an entry " + url);
+            }
+
+            data = open(parts[0], parts[1]).read(parts[2]);
+            if (data == null) {
+                throw new FileNotFoundException(url.toExternalForm());
+            }
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new ByteBufferInputStream(data);
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return data.remaining();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int getContentLength() {
+            long length = getContentLengthLong();
+            return length > Integer.MAX_VALUE ? -1 : (int) length;
+        }
+    }
+}
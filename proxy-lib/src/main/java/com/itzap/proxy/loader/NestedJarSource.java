@@ -0,0 +1,43 @@
+package com.itzap.proxy.loader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+
+public class NestedJarSource extends MappedJarSource {
+    private final String entryName;
+
+    private NestedJarSource(File outer, String entryName, ZipIndex index) {
+        super(outer, NestedJarHandler.toUrl(outer, entryName), index);
+        this.entryName = entryName;
+    }
+
+    public static NestedJarSource open(MappedJarSource outer, String entryName) throws IOException {
+        ZipIndex.Entry entry = outer.getIndex().getEntry(entryName);
+        if (entry == null) {
+            throw new FileNotFoundException(String.format("Nested jar %s is not found in %s",
+                    entryName, outer.getUrl()));
+        }
+        if (!entry.isStored()) {
+            throw new IOException(String.format("Nested jar %s in %s is compressed and cannot be read in place",
+                    entryName, outer.getUrl()));
+        }
+
+        return new NestedJarSource(outer.getFile(), entryName,
+                ZipIndex.read(outer.getIndex().rawData(entry)));
+    }
+
+    public String getEntryName() {
+        return entryName;
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (!contains(name)) {
+            return null;
+        }
+
+        return NestedJarHandler.toUrl(getFile(), entryName, name);
+    }
+}
@@ -0,0 +1,115 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.Manifest;
+
+/**
+ * Jar source that keeps only the entry names in memory and reads entries through the shared
+ * {@link JarHandlePool}, reopening the jar on demand.
+ */
+public class PooledJarSource implements JarSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledJarSource.class);
+
+    private final File file;
+    private final URL url;
+    private final Set<String> names;
+    private final Manifest manifest;
+    private final JarSourceUrlHandler handler;
+
+    private PooledJarSource(File file, Set<String> names, Manifest manifest) throws MalformedURLException {
+        this.file = file;
+        this.url = file.toURI().toURL();
+        this.names = names;
+        this.manifest = manifest;
+        this.handler = new JarSourceUrlHandler(this);
+    }
+
+    public static PooledJarSource open(final File file) throws IOException {
+        return JarHandlePool.get().withJar(file, jar -> {
+            ImmutableSet.Builder<String> names = ImmutableSet.builder();
+            for (JarEntry entry: Collections.list(jar.entries())) {
+                names.add(entry.getName());
+            }
+            return new PooledJarSource(file, names.build(), jar.getManifest());
+        });
+    }
+
+    @Override
+    public URL getUrl() {
+        return url;
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        return names;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    @Override
+    public ByteBuffer read(final String name) throws IOException {
+        if (!names.contains(name)) {
+            return null;
+        }
+
+        return JarHandlePool.get().withJar(file, jar -> {
+            JarEntry entry = jar.getJarEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                return ByteBuffer.wrap(IOUtils.toByteArray(in));
+            }
+        });
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (!names.contains(name)) {
+            return null;
+        }
+
+        try {
+            return handler.toUrl(name);
+        } catch (MalformedURLException e) {
+            LOGGER.warn("Failed to build resource URL for {} in {}", name, url);
+            return null;
+        }
+    }
+
+    @Override
+    public Manifest getManifest() {
+        return manifest;
+    }
+
+    @Override
+    public void close() {
+        JarHandlePool.get().close(file);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("url", url)
+                .add("entries", names.size())
+                .toString();
+    }
+}
@@ -0,0 +1,295 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.itzap.proxy.utils.Digests;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads jars that are byte identical across artifacts once. The shareable jars of an artifact go
+ * into one parent loader, and an artifact reuses a loader only when its whole shareable set is the
+ * same, so a shared jar never links against another artifact's copy of a jar. Shared jars cannot
+ * see the other jars of the artifact; the policy should pick jars that do not depend on them.
+ * Jars are hashed only when a loaded set has the same file names and sizes.
+ */
+public final class SharedJarLoaders {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedJarLoaders.class);
+    // parent, then file names and sizes of the set; emptied as the sets are released
+    private static final Map<ClassLoader, Map<String, List<SetLoader>>> LOADERS = Maps.newHashMap();
+    private static final Map<String, ArtifactShare> SHARES = Maps.newConcurrentMap();
+
+    private static volatile Predicate<String> policy;
+
+    private SharedJarLoaders() {}
+
+    public static void setPolicy(Predicate<String> policy) {
+        SharedJarLoaders.policy = policy;
+    }
+
+    public static boolean isEnabled() {
+        return policy != null;
+    }
+
+    public static boolean isShareable(URL url) {
+        Predicate<String> current = policy;
+        return current != null &&
+                "file".equalsIgnoreCase(url.getProtocol()) &&
+                "jar".equalsIgnoreCase(FilenameUtils.getExtension(url.getPath())) &&
+                current.apply(FilenameUtils.getName(url.getPath()));
+    }
+
+    /**
+     * Moves shareable jars out of the given list into a shared parent loader.
+     * Returns the shared loader or the original parent when nothing is shared.
+     */
+    public static ClassLoader share(String artifact, List<URL> urls, ClassLoader parent) throws IOException {
+        List<URL> shared = Lists.newArrayList();
+        for (URL url: urls) {
+            if (isShareable(url)) {
+                shared.add(url);
+            }
+        }
+        if (shared.isEmpty()) {
+            return parent;
+        }
+
+        shared.sort(Comparator.comparing(url -> FilenameUtils.getName(url.getPath())));
+        long bytes = 0;
+        List<String> parts = Lists.newArrayListWithCapacity(shared.size());
+        for (URL url: shared) {
+            File jar = FileUtils.toFile(url);
+            parts.add(jar.getName() + '|' + jar.length());
+            bytes += jar.length();
+        }
+        String shape = Joiner.on(',').join(parts);
+
+        // hashing happens outside of the lock and only for sets that may match
+        List<SetLoader> candidates;
+        synchronized (LOADERS) {
+            candidates = ImmutableList.copyOf(shapes(parent).getOrDefault(shape, ImmutableList.<SetLoader>of()));
+        }
+        List<String> hashes = null;
+        if (!candidates.isEmpty()) {
+            hashes = hashes(shared);
+            for (SetLoader candidate: candidates) {
+                candidate.hashes();
+            }
+        }
+
+        SetLoader loader = null;
+        synchronized (LOADERS) {
+            List<SetLoader> sameShape = shapes(parent).get(shape);
+            if (sameShape == null) {
+                sameShape = Lists.newArrayList();
+                shapes(parent).put(shape, sameShape);
+            }
+            for (SetLoader candidate: sameShape) {
+                if (hashes == null) {
+                    hashes = hashes(shared);
+                }
+                if (hashes.equals(candidate.hashes())) {
+                    loader = candidate;
+                    break;
+                }
+            }
+            if (loader == null) {
+                loader = new SetLoader(shared, parent, hashes);
+                sameShape.add(loader);
+                LOGGER.info("Created shared loader for {} jars of artifact {}", shared.size(), artifact);
+            } else {
+                LOGGER.info("Artifact {} reuses shared loader for {} jars, saving {} bytes",
+                        artifact, shared.size(), bytes);
+            }
+            loader.artifacts.add(artifact);
+        }
+        SHARES.put(artifact, new ArtifactShare(artifact, shared.size(),
+                loader.artifacts.size() > 1 ? bytes : 0));
+
+        urls.removeAll(shared);
+        return loader;
+    }
+
+    public static Map<String, ArtifactShare> getReport() {
+        return ImmutableMap.copyOf(SHARES);
+    }
+
+    public static void release(String artifact) {
+        SHARES.remove(artifact);
+        synchronized (LOADERS) {
+            Iterator<Map<String, List<SetLoader>>> parents = LOADERS.values().iterator();
+            while (parents.hasNext()) {
+                Map<String, List<SetLoader>> shapes = parents.next();
+                Iterator<List<SetLoader>> lists = shapes.values().iterator();
+                while (lists.hasNext()) {
+                    List<SetLoader> loaders = lists.next();
+                    Iterator<SetLoader> iterator = loaders.iterator();
+                    while (iterator.hasNext()) {
+                        SetLoader loader = iterator.next();
+                        loader.artifacts.remove(artifact);
+                        if (loader.artifacts.isEmpty()) {
+                            iterator.remove();
+                            IOUtils.closeQuietly(loader);
+                        }
+                    }
+                    if (loaders.isEmpty()) {
+                        lists.remove();
+                    }
+                }
+                // the parent is no longer referenced once its last set is gone
+                if (shapes.isEmpty()) {
+                    parents.remove();
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (LOADERS) {
+            for (URLClassLoader loader: loaders()) {
+                IOUtils.closeQuietly(loader);
+            }
+            LOADERS.clear();
+            SHARES.clear();
+        }
+    }
+
+    /**
+     * Whether a live shared loader reads a jar from the given folder. Shared jars are read from the
+     * folder of the artifact that loaded them first, which other artifacts may outlive.
+     */
+    public static boolean isInUse(File dir) {
+        File key = dir.getAbsoluteFile();
+        synchronized (LOADERS) {
+            for (URLClassLoader loader: loaders()) {
+                for (URL url: loader.getURLs()) {
+                    File jar = FileUtils.toFile(url);
+                    if (jar != null && key.equals(jar.getAbsoluteFile().getParentFile())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public static List<URLClassLoader> getLoaders() {
+        synchronized (LOADERS) {
+            return ImmutableList.copyOf(loaders());
+        }
+    }
+
+    private static Map<String, List<SetLoader>> shapes(ClassLoader parent) {
+        Map<String, List<SetLoader>> shapes = LOADERS.get(parent);
+        if (shapes == null) {
+            shapes = Maps.newHashMap();
+            LOADERS.put(parent, shapes);
+        }
+        return shapes;
+    }
+
+    private static List<URLClassLoader> loaders() {
+        List<URLClassLoader> result = Lists.newArrayList();
+        for (Map<String, List<SetLoader>> shapes: LOADERS.values()) {
+            for (List<SetLoader> loaders: shapes.values()) {
+                result.addAll(loaders);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> hashes(List<URL> jars) throws IOException {
+        List<String> hashes = Lists.newArrayListWithCapacity(jars.size());
+        for (URL url: jars) {
+            hashes.add(Digests.sha256(FileUtils.toFile(url)));
+        }
+        return hashes;
+    }
+
+    /**
+     * Loads one shared set of jars, in file name order.
+     */
+    private static class SetLoader extends URLClassLoader {
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        private final Set<String> artifacts = Collections.synchronizedSet(Sets.<String>newLinkedHashSet());
+        private List<String> hashes;
+
+        private SetLoader(List<URL> jars, ClassLoader parent, List<String> hashes) {
+            super(jars.toArray(new URL[0]), parent);
+            this.hashes = hashes;
+        }
+
+        // taken the first time a set with the same names and sizes is shared
+        private synchronized List<String> hashes() throws IOException {
+            if (hashes == null) {
+                hashes = SharedJarLoaders.hashes(Arrays.asList(getURLs()));
+            }
+            return hashes;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("jars", getURLs().length)
+                    .add("artifacts", artifacts)
+                    .toString();
+        }
+    }
+
+    public static class ArtifactShare {
+        private final String artifact;
+        private final int sharedJars;
+        private final long savedBytes;
+
+        private ArtifactShare(String artifact, int sharedJars, long savedBytes) {
+            this.artifact = artifact;
+            this.sharedJars = sharedJars;
+            this.savedBytes = savedBytes;
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public int getSharedJars() {
+            return sharedJars;
+        }
+
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("artifact", artifact)
+                    .add("sharedJars", sharedJars)
+                    .add("savedBytes", savedBytes)
+                    .toString();
+        }
+    }
+}
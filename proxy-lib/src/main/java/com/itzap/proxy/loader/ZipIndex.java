@@ -0,0 +1,312 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Central directory of a zip archive read straight from a byte buffer. Entry data of
+ * STORED entries is returned as a slice of the original buffer, DEFLATED entries are
+ * inflated into a heap buffer.
+ */
+public final class ZipIndex {
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int LOC_SIZE = 30;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int FLAG_ENCRYPTED = 0x1;
+
+    private final ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+
+    private ZipIndex(ByteBuffer buffer, Map<String, Entry> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    public static ZipIndex read(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buffer.limit();
+
+        int eocd = findEndOfCentralDirectory(buffer);
+        long total = u16(buffer, eocd + 10);
+        long cenSize = u32(buffer, eocd + 12);
+        long cenOffset = u32(buffer, eocd + 16);
+        long cenEnd = eocd;
+
+        int locator = eocd - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIG) {
+            int zip64 = locator - ZIP64_EOCD_SIZE;
+            if (zip64 < 0 || buffer.getInt(zip64) != ZIP64_EOCD_SIG) {
+                zip64 = checkIndex(buffer.getLong(locator + 8), limit - ZIP64_EOCD_SIZE);
+            }
+            if (buffer.getInt(zip64) != ZIP64_EOCD_SIG) {
+                throw new IOException("Invalid zip64 end of central directory record");
+            }
+            total = buffer.getLong(zip64 + 32);
+            cenSize = buffer.getLong(zip64 + 40);
+            cenOffset = buffer.getLong(zip64 + 48);
+            cenEnd = zip64;
+        }
+
+        // archives with a prefix (launch scripts, nested jars) have offsets relative to the zip start
+        long base = cenEnd - cenSize - cenOffset;
+        if (base < 0) {
+            throw new IOException("Invalid central directory offset");
+        }
+
+        ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+        Set<String> seen = new HashSet<>();
+        int pos = checkIndex(base + cenOffset, limit);
+        for (long i = 0; i < total; i++) {
+            if (pos + CEN_SIZE > limit || buffer.getInt(pos) != CEN_SIG) {
+                throw new IOException("Invalid central directory header at " + pos);
+            }
+            int flags = u16(buffer, pos + 8);
+            int method = u16(buffer, pos + 10);
+            long crc = u32(buffer, pos + 16);
+            long compressedSize = u32(buffer, pos + 20);
+            long size = u32(buffer, pos + 24);
+            int nameLength = u16(buffer, pos + 28);
+            int extraLength = u16(buffer, pos + 30);
+            int commentLength = u16(buffer, pos + 32);
+            long localOffset = u32(buffer, pos + 42);
+
+            String name = readName(buffer, pos + CEN_SIZE, nameLength);
+            int extra = pos + CEN_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = u16(buffer, extra);
+                int length = u16(buffer, extra + 2);
+                if (id == ZIP64_EXTRA) {
+                    int field = extra + 4;
+                    if (size == ZIP64_MAGIC) {
+                        size = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if (localOffset == ZIP64_MAGIC) {
+                        localOffset = buffer.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            if ((flags & FLAG_ENCRYPTED) == 0 && seen.add(name)) {
+                entries.put(name, new Entry(name, method, crc, compressedSize, size, base + localOffset));
+            }
+            pos = extraEnd + commentLength;
+        }
+
+        return new ZipIndex(buffer, entries.build());
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public ByteBuffer read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        return entry == null ? null : read(entry);
+    }
+
+    public ByteBuffer read(Entry entry) throws IOException {
+        ByteBuffer raw = rawData(entry);
+        if (entry.method == ZipEntry.STORED) {
+            return raw;
+        }
+
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException(String.format("Unsupported compression method %d for entry %s",
+                    entry.method, entry.name));
+        }
+
+        byte[] input = new byte[raw.remaining() + 1];
+        raw.get(input, 0, input.length - 1);
+        byte[] output = new byte[checkSize(entry.size, entry.name)];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int count = 0;
+            while (count < output.length) {
+                int read = inflater.inflate(output, count, output.length - count);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += read;
+            }
+            if (count != output.length) {
+                throw new IOException(String.format("Truncated entry %s. Expected %d bytes, inflated %d",
+                        entry.name, output.length, count));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Failed to inflate entry " + entry.name, e);
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(output);
+    }
+
+    public ByteBuffer rawData(Entry entry) throws IOException {
+        long start = dataOffset(entry);
+        long end = start + entry.compressedSize;
+        if (end > buffer.limit()) {
+            throw new IOException("Entry " + entry.name + " is outside of the archive");
+        }
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((int) end);
+        slice.position((int) start);
+        return slice.slice();
+    }
+
+    long dataOffset(Entry entry) throws IOException {
+        long offset = entry.dataOffset;
+        if (offset >= 0) {
+            return offset;
+        }
+
+        int local = checkIndex(entry.localOffset, buffer.limit() - LOC_SIZE);
+        if (buffer.getInt(local) != LOC_SIG) {
+            throw new IOException("Invalid local header for entry " + entry.name);
+        }
+        offset = local + LOC_SIZE + u16(buffer, local + 26) + u16(buffer, local + 28);
+        entry.dataOffset = offset;
+        return offset;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        int stop = Math.max(0, limit - EOCD_SIZE - MAX_COMMENT);
+        for (int pos = limit - EOCD_SIZE; pos >= stop; pos--) {
+            if (buffer.getInt(pos) == EOCD_SIG && pos + EOCD_SIZE + u16(buffer, pos + 20) == limit) {
+                return pos;
+            }
+        }
+
+        throw new IOException("End of central directory record is not found");
+    }
+
+    private static String readName(ByteBuffer buffer, int pos, int length) {
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = buffer.get(pos + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static int checkIndex(long index, int limit) throws IOException {
+        if (index < 0 || index > limit) {
+            throw new IOException("Invalid zip offset " + index);
+        }
+        return (int) index;
+    }
+
+    private static int checkSize(long size, String name) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Entry " + name + " is too large");
+        }
+        return (int) size;
+    }
+
+    private static int u16(ByteBuffer buffer, int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private static long u32(ByteBuffer buffer, int pos) {
+        return buffer.getInt(pos) & ZIP64_MAGIC;
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localOffset;
+        private volatile long dataOffset = -1;
+
+        private Entry(String name, int method, long crc, long compressedSize, long size, long localOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public boolean isStored() {
+            return method == ZipEntry.STORED;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("method", method)
+                    .add("size", size)
+                    .add("compressedSize", compressedSize)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.itzap.proxy.maven;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * Maven coordinates, {@code groupId:artifactId[:type[:classifier]]:version}.
+ */
+public class Coordinates {
+    public static final String JAR = "jar";
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String type;
+    private final String classifier;
+
+    public Coordinates(String groupId, String artifactId, String version) {
+        this(groupId, artifactId, version, JAR, null);
+    }
+
+    public Coordinates(String groupId, String artifactId, String version, String type, String classifier) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.type = StringUtils.defaultIfBlank(type, JAR);
+        this.classifier = StringUtils.trimToNull(classifier);
+    }
+
+    public static Coordinates parse(String coordinates) {
+        List<String> parts = Splitter.on(':').trimResults().splitToList(coordinates);
+        switch (parts.size()) {
+            case 2:
+                return new Coordinates(parts.get(0), parts.get(1), null);
+            case 3:
+                return new Coordinates(parts.get(0), parts.get(1), parts.get(2));
+            case 4:
+                return new Coordinates(parts.get(0), parts.get(1), parts.get(3), parts.get(2), null);
+            case 5:
+                return new Coordinates(parts.get(0), parts.get(1), parts.get(4), parts.get(2), parts.get(3));
+            default:
+                throw new IllegalArgumentException("Invalid Maven coordinates " + coordinates);
+        }
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public boolean isSnapshot() {
+        return StringUtils.endsWith(version, "-SNAPSHOT");
+    }
+
+    public Coordinates withVersion(String version) {
+        return new Coordinates(groupId, artifactId, version, type, classifier);
+    }
+
+    public Coordinates asPom() {
+        return new Coordinates(groupId, artifactId, version, "pom", null);
+    }
+
+    // conflict key: the same artifact in different versions has the same key
+    public String getKey() {
+        return Joiner.on(':').skipNulls().join(groupId, artifactId, type, classifier);
+    }
+
+    // path relative to the repository root, e.g. org/slf4j/slf4j-api/1.7.25/slf4j-api-1.7.25.jar
+    public String toPath(String extension) {
+        return groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" +
+                artifactId + "-" + version + (classifier == null ? "" : "-" + classifier) + "." + extension;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Coordinates)) {
+            return false;
+        }
+        return toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return Joiner.on(':').skipNulls().join(groupId, artifactId, type, classifier, version);
+    }
+}
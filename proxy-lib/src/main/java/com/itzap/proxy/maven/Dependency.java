@@ -0,0 +1,71 @@
+package com.itzap.proxy.maven;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Set;
+
+public class Dependency {
+    public static final String COMPILE = "compile";
+    public static final String RUNTIME = "runtime";
+    public static final String IMPORT = "import";
+
+    private final Coordinates coordinates;
+    private final String scope;
+    private final boolean optional;
+    private final Set<String> exclusions;
+
+    public Dependency(Coordinates coordinates, String scope, boolean optional, Set<String> exclusions) {
+        this.coordinates = coordinates;
+        this.scope = StringUtils.trimToNull(scope);
+        this.optional = optional;
+        this.exclusions = ImmutableSet.copyOf(exclusions);
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    // null when not declared, so a managed scope can still apply
+    public String getScope() {
+        return scope;
+    }
+
+    public boolean isOptional() {
+        return optional;
+    }
+
+    // groupId:artifactId pairs, either part may be *
+    public Set<String> getExclusions() {
+        return exclusions;
+    }
+
+    public boolean isRuntime() {
+        return scope == null || COMPILE.equals(scope) || RUNTIME.equals(scope);
+    }
+
+    public Dependency withCoordinates(Coordinates coordinates) {
+        return new Dependency(coordinates, scope, optional, exclusions);
+    }
+
+    public Dependency withScope(String scope) {
+        return new Dependency(coordinates, scope, optional, exclusions);
+    }
+
+    public static boolean isExcluded(Set<String> exclusions, Coordinates coordinates) {
+        for (String exclusion: exclusions) {
+            String groupId = StringUtils.substringBefore(exclusion, ":");
+            String artifactId = StringUtils.substringAfter(exclusion, ":");
+            if (("*".equals(groupId) || groupId.equals(coordinates.getGroupId())) &&
+                    ("*".equals(artifactId) || artifactId.equals(coordinates.getArtifactId()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return coordinates + (scope == null ? "" : " (" + scope + ")");
+    }
+}
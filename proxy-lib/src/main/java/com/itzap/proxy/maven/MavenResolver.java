@@ -0,0 +1,409 @@
+package com.itzap.proxy.maven;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.utils.ProxyExecutors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the runtime classpath (compile and runtime scopes) of Maven coordinates. Files are looked
+ * up in the local repository first and downloaded from the remote repositories into it. Conflicts are
+ * settled like Maven does: the nearest declaration wins and root dependency management overrides
+ * transitive versions. Each level of the dependency graph and all jars are fetched in parallel.
+ */
+public class MavenResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenResolver.class);
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final int MAX_PARENTS = 16;
+
+    private final List<URI> repositories;
+    private final File localRepository;
+    private final ConcurrentMap<Coordinates, Pom> poms = Maps.newConcurrentMap();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    public MavenResolver(List<URI> repositories, File localRepository) {
+        this.repositories = ImmutableList.copyOf(repositories);
+        this.localRepository = localRepository;
+    }
+
+    public File getLocalRepository() {
+        return localRepository;
+    }
+
+    // files fetched from remote repositories, POMs included
+    public int getDownloads() {
+        return downloads.get();
+    }
+
+    public List<File> resolve(Coordinates root) throws IOException {
+        List<Coordinates> artifacts = resolveGraph(root);
+
+        List<ListenableFuture<File>> downloads = Lists.newArrayList();
+        for (final Coordinates coordinates: artifacts) {
+            downloads.add(ProxyExecutors.io().submit(new Callable<File>() {
+                @Override
+                public File call() throws IOException {
+                    return fetch(coordinates, Coordinates.JAR);
+                }
+            }));
+        }
+        return await(downloads);
+    }
+
+    // coordinates of every jar on the runtime classpath, root first, in breadth first order
+    public List<Coordinates> resolveGraph(Coordinates root) throws IOException {
+        Pom rootPom = effective(root.asPom());
+        Map<String, String> rootManaged = Maps.newHashMap();
+        for (Dependency dependency: rootPom.getManaged()) {
+            rootManaged.put(dependency.getCoordinates().getKey(), dependency.getCoordinates().getVersion());
+        }
+
+        LinkedHashMap<String, Coordinates> selected = Maps.newLinkedHashMap();
+        selected.put(root.getKey(), root);
+        List<Coordinates> jars = Lists.newArrayList();
+        if (rootPom.hasJar()) {
+            jars.add(root);
+        }
+
+        List<Node> level = ImmutableList.of(new Node(root, rootPom, ImmutableSet.<String>of(), true));
+        while (!level.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while resolving " + root);
+            }
+            List<Node> next = Lists.newArrayList();
+            for (Node node: level) {
+                for (Dependency dependency: node.pom.getDependencies()) {
+                    Coordinates coordinates = dependency.getCoordinates();
+                    if (!dependency.isRuntime() ||
+                            (dependency.isOptional() && !node.root) ||
+                            Dependency.isExcluded(node.exclusions, coordinates) ||
+                            selected.containsKey(coordinates.getKey())) {
+                        continue;
+                    }
+
+                    String version = node.root ? coordinates.getVersion() :
+                            StringUtils.defaultIfBlank(rootManaged.get(coordinates.getKey()), coordinates.getVersion());
+                    version = pickVersion(version);
+                    if (StringUtils.isBlank(version)) {
+                        LOGGER.warn("No version for dependency {} of {}", coordinates.getKey(), node.coordinates);
+                        continue;
+                    }
+
+                    coordinates = coordinates.withVersion(version);
+                    selected.put(coordinates.getKey(), coordinates);
+                    if (isJar(coordinates)) {
+                        jars.add(coordinates);
+                        Set<String> exclusions = Sets.newLinkedHashSet(node.exclusions);
+                        exclusions.addAll(dependency.getExclusions());
+                        next.add(new Node(coordinates, null, exclusions, false));
+                    }
+                }
+            }
+            level = loadPoms(next);
+        }
+
+        LOGGER.debug("Resolved {} to {}", root, jars);
+        return jars;
+    }
+
+    public Pom effective(Coordinates coordinates) throws IOException {
+        Coordinates key = coordinates.asPom();
+        Pom pom = poms.get(key);
+        if (pom == null) {
+            pom = effective(key, 0);
+            Pom existing = poms.putIfAbsent(key, pom);
+            pom = existing != null ? existing : pom;
+        }
+        return pom;
+    }
+
+    private Pom effective(Coordinates coordinates, int depth) throws IOException {
+        if (depth > MAX_PARENTS) {
+            throw new IOException("Parent chain of " + coordinates + " is too deep");
+        }
+
+        Pom raw;
+        try {
+            raw = Pom.parse(fetch(coordinates, "pom"));
+        } catch (FileNotFoundException e) {
+            // same as Maven: a missing POM means no transitive dependencies
+            LOGGER.warn("POM for {} is missing, its dependencies are not resolved", coordinates);
+            return Pom.empty(coordinates);
+        }
+
+        Pom parent = raw.getParent() == null ? null : effective(raw.getParent(), depth + 1);
+
+        Map<String, String> properties = Maps.newHashMap();
+        if (parent != null) {
+            properties.putAll(parent.getProperties());
+            properties.put("project.parent.groupId", parent.getCoordinates().getGroupId());
+            properties.put("project.parent.version", parent.getCoordinates().getVersion());
+        }
+        properties.putAll(raw.getProperties());
+        Coordinates self = raw.getCoordinates();
+        for (String prefix: new String[]{"project.", "pom.", ""}) {
+            properties.put(prefix + "groupId", self.getGroupId());
+            properties.put(prefix + "artifactId", self.getArtifactId());
+            properties.put(prefix + "version", self.getVersion());
+        }
+
+        Map<String, Dependency> managed = Maps.newLinkedHashMap();
+        List<Dependency> imports = Lists.newArrayList();
+        for (Dependency dependency: interpolate(raw.getManaged(), properties)) {
+            if (Dependency.IMPORT.equals(dependency.getScope())) {
+                imports.add(dependency);
+            } else {
+                managed.put(dependency.getCoordinates().getKey(), dependency);
+            }
+        }
+        if (parent != null) {
+            putAbsent(managed, parent.getManaged());
+        }
+        for (Dependency bom: imports) {
+            putAbsent(managed, effective(bom.getCoordinates()).getManaged());
+        }
+
+        Map<String, Dependency> dependencies = Maps.newLinkedHashMap();
+        if (parent != null) {
+            for (Dependency dependency: parent.getDependencies()) {
+                dependencies.put(dependency.getCoordinates().getKey(), dependency);
+            }
+        }
+        for (Dependency dependency: interpolate(raw.getDependencies(), properties)) {
+            Dependency managedDependency = managed.get(dependency.getCoordinates().getKey());
+            if (managedDependency != null) {
+                if (StringUtils.isBlank(dependency.getCoordinates().getVersion())) {
+                    dependency = dependency.withCoordinates(managedDependency.getCoordinates());
+                }
+                if (dependency.getScope() == null) {
+                    dependency = dependency.withScope(managedDependency.getScope());
+                }
+            }
+            dependencies.put(dependency.getCoordinates().getKey(), dependency);
+        }
+
+        return new Pom(self, raw.getParent(), raw.getPackaging(), properties,
+                ImmutableList.copyOf(dependencies.values()), ImmutableList.copyOf(managed.values()));
+    }
+
+    // a snapshot can be deployed again under the same version, so its local copy is used only when no repository has it
+    public File fetch(Coordinates coordinates, String extension) throws IOException {
+        String path = coordinates.toPath(extension);
+        File local = new File(localRepository, path);
+        if (local.isFile() && !coordinates.isSnapshot()) {
+            return local;
+        }
+
+        for (URI repository: repositories) {
+            URI base = URI.create(StringUtils.appendIfMissing(repository.toString(), "/"));
+            URI uri = base.resolve(coordinates.isSnapshot() ? snapshotPath(base, coordinates, extension) : path);
+            try {
+                download(uri, local);
+                downloads.incrementAndGet();
+                LOGGER.debug("Downloaded {} to {}", uri, local);
+                return local;
+            } catch (FileNotFoundException e) {
+                LOGGER.debug("{} is not found in {}", path, repository);
+            }
+        }
+        if (local.isFile()) {
+            LOGGER.debug("Snapshot {} is not found in {}. Using the local copy", path, repositories);
+            return local;
+        }
+        throw new FileNotFoundException(path + " is not found in " + repositories);
+    }
+
+    // deployed snapshots are named by timestamp and build number, listed in the version's maven-metadata.xml
+    private String snapshotPath(URI base, Coordinates coordinates, String extension) throws IOException {
+        String path = coordinates.toPath(extension);
+        String dir = StringUtils.substringBeforeLast(path, "/");
+        File metadata = new File(localRepository, dir + "/maven-metadata.tmp" + System.nanoTime());
+        try {
+            download(base.resolve(dir + "/maven-metadata.xml"), metadata);
+            String value = snapshotValue(Pom.read(metadata), coordinates.getClassifier(), extension);
+            if (value == null) {
+                return path;
+            }
+            return dir + "/" + coordinates.getArtifactId() + "-" + value +
+                    (coordinates.getClassifier() == null ? "" : "-" + coordinates.getClassifier()) + "." + extension;
+        } catch (FileNotFoundException e) {
+            // not deployed with unique versions, the file keeps its -SNAPSHOT name
+            return path;
+        } finally {
+            FileUtils.deleteQuietly(metadata);
+        }
+    }
+
+    private static String snapshotValue(Element metadata, String classifier, String extension) {
+        Element versioning = Pom.child(metadata, "versioning");
+        if (versioning == null) {
+            return null;
+        }
+        Element snapshotVersions = Pom.child(versioning, "snapshotVersions");
+        if (snapshotVersions != null) {
+            for (Element snapshotVersion: Pom.children(snapshotVersions)) {
+                if (extension.equals(Pom.text(snapshotVersion, "extension")) &&
+                        StringUtils.equals(classifier, Pom.text(snapshotVersion, "classifier"))) {
+                    return Pom.text(snapshotVersion, "value");
+                }
+            }
+        }
+        Element snapshot = Pom.child(versioning, "snapshot");
+        String version = Pom.text(metadata, "version");
+        if (snapshot == null || version == null || Pom.text(snapshot, "timestamp") == null) {
+            return null;
+        }
+        return StringUtils.removeEnd(version, "-SNAPSHOT") + "-" + Pom.text(snapshot, "timestamp") + "-" +
+                Pom.text(snapshot, "buildNumber");
+    }
+
+    private static void download(URI uri, File target) throws IOException {
+        FileUtils.forceMkdir(target.getParentFile());
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp" + System.nanoTime());
+        try {
+            URLConnection connection = uri.toURL().openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (connection instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                    throw new FileNotFoundException(uri.toString());
+                }
+                if (status / 100 != 2) {
+                    throw new IOException("Failed to download " + uri + ", status " + status);
+                }
+            }
+            try (InputStream in = connection.getInputStream()) {
+                FileUtils.copyInputStreamToFile(in, temp);
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private List<Node> loadPoms(List<Node> nodes) throws IOException {
+        List<ListenableFuture<Pom>> futures = Lists.newArrayList();
+        for (final Node node: nodes) {
+            futures.add(ProxyExecutors.io().submit(new Callable<Pom>() {
+                @Override
+                public Pom call() throws IOException {
+                    return effective(node.coordinates);
+                }
+            }));
+        }
+
+        List<Pom> loaded = await(futures);
+        List<Node> result = Lists.newArrayListWithCapacity(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            result.add(new Node(node.coordinates, loaded.get(i), node.exclusions, false));
+        }
+        return result;
+    }
+
+    private static <T> List<T> await(List<ListenableFuture<T>> futures) throws IOException {
+        ListenableFuture<List<T>> all = Futures.allAsList(futures);
+        try {
+            return all.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // downloads write to temp files first, so an interrupted one leaves nothing behind
+            all.cancel(true);
+            throw new IOException("Interrupted while resolving", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static List<Dependency> interpolate(List<Dependency> dependencies, Map<String, String> properties) {
+        List<Dependency> result = Lists.newArrayListWithCapacity(dependencies.size());
+        for (Dependency dependency: dependencies) {
+            Coordinates coordinates = dependency.getCoordinates();
+            result.add(new Dependency(new Coordinates(
+                    Pom.interpolate(coordinates.getGroupId(), properties),
+                    Pom.interpolate(coordinates.getArtifactId(), properties),
+                    Pom.interpolate(coordinates.getVersion(), properties),
+                    coordinates.getType(),
+                    Pom.interpolate(coordinates.getClassifier(), properties)),
+                    Pom.interpolate(dependency.getScope(), properties),
+                    dependency.isOptional(),
+                    dependency.getExclusions()));
+        }
+        return result;
+    }
+
+    private static void putAbsent(Map<String, Dependency> managed, Collection<Dependency> dependencies) {
+        for (Dependency dependency: dependencies) {
+            if (!managed.containsKey(dependency.getCoordinates().getKey())) {
+                managed.put(dependency.getCoordinates().getKey(), dependency);
+            }
+        }
+    }
+
+    private static boolean isJar(Coordinates coordinates) {
+        return Coordinates.JAR.equals(coordinates.getType()) || "bundle".equals(coordinates.getType());
+    }
+
+    // version ranges are not resolved against repository metadata, the lower bound is used
+    static String pickVersion(String version) {
+        if (version == null || !(version.startsWith("[") || version.startsWith("("))) {
+            return version;
+        }
+        String range = StringUtils.strip(version, "[]() ");
+        String lower = StringUtils.trimToNull(StringUtils.substringBefore(range, ","));
+        return lower != null ? lower : StringUtils.trimToNull(StringUtils.substringAfter(range, ","));
+    }
+
+    private static class Node {
+        private final Coordinates coordinates;
+        private final Pom pom;
+        private final Set<String> exclusions;
+        private final boolean root;
+
+        private Node(Coordinates coordinates, Pom pom, Set<String> exclusions, boolean root) {
+            this.coordinates = coordinates;
+            this.pom = pom;
+            this.exclusions = exclusions;
+            this.root = root;
+        }
+    }
+}
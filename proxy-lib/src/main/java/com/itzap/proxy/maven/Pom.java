@@ -0,0 +1,194 @@
+package com.itzap.proxy.maven;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parts of a POM needed to build a runtime classpath: coordinates, parent, properties,
+ * dependencies and dependency management. {@link MavenResolver} merges the parent chain into it.
+ */
+public class Pom {
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+    private static final int MAX_INTERPOLATION_DEPTH = 8;
+
+    private final Coordinates coordinates;
+    private final Coordinates parent;
+    private final String packaging;
+    private final Map<String, String> properties;
+    private final List<Dependency> dependencies;
+    private final List<Dependency> managed;
+
+    Pom(Coordinates coordinates, Coordinates parent, String packaging, Map<String, String> properties,
+        List<Dependency> dependencies, List<Dependency> managed) {
+        this.coordinates = coordinates;
+        this.parent = parent;
+        this.packaging = StringUtils.defaultIfBlank(packaging, Coordinates.JAR);
+        this.properties = ImmutableMap.copyOf(properties);
+        this.dependencies = ImmutableList.copyOf(dependencies);
+        this.managed = ImmutableList.copyOf(managed);
+    }
+
+    public static Pom empty(Coordinates coordinates) {
+        return new Pom(coordinates, null, Coordinates.JAR, ImmutableMap.<String, String>of(),
+                ImmutableList.<Dependency>of(), ImmutableList.<Dependency>of());
+    }
+
+    public static Pom parse(File file) throws IOException {
+        Element project = read(file);
+        Element parentElement = child(project, "parent");
+        Coordinates parent = parentElement == null ? null : new Coordinates(text(parentElement, "groupId"),
+                text(parentElement, "artifactId"), text(parentElement, "version"), "pom", null);
+
+        String groupId = StringUtils.defaultIfBlank(text(project, "groupId"),
+                parent == null ? null : parent.getGroupId());
+        String version = StringUtils.defaultIfBlank(text(project, "version"),
+                parent == null ? null : parent.getVersion());
+        Coordinates coordinates = new Coordinates(groupId, text(project, "artifactId"), version);
+
+        Map<String, String> properties = Maps.newLinkedHashMap();
+        Element propertiesElement = child(project, "properties");
+        if (propertiesElement != null) {
+            for (Element property: children(propertiesElement)) {
+                properties.put(property.getTagName(), property.getTextContent().trim());
+            }
+        }
+
+        Element management = child(project, "dependencyManagement");
+        return new Pom(coordinates, parent, text(project, "packaging"), properties,
+                dependencies(child(project, "dependencies")),
+                dependencies(management == null ? null : child(management, "dependencies")));
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    public Coordinates getParent() {
+        return parent;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    public boolean hasJar() {
+        return !"pom".equals(packaging);
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public List<Dependency> getDependencies() {
+        return dependencies;
+    }
+
+    public List<Dependency> getManaged() {
+        return managed;
+    }
+
+    static String interpolate(String value, Map<String, String> properties) {
+        if (value == null) {
+            return null;
+        }
+
+        String result = value;
+        for (int i = 0; i < MAX_INTERPOLATION_DEPTH && result.contains("${"); i++) {
+            Matcher matcher = PROPERTY.matcher(result);
+            StringBuffer buffer = new StringBuffer();
+            while (matcher.find()) {
+                String replacement = properties.get(matcher.group(1));
+                matcher.appendReplacement(buffer, Matcher.quoteReplacement(
+                        replacement == null ? matcher.group() : replacement));
+            }
+            matcher.appendTail(buffer);
+            if (buffer.toString().equals(result)) {
+                break;
+            }
+            result = buffer.toString();
+        }
+        return result;
+    }
+
+    private static List<Dependency> dependencies(Element dependencies) {
+        if (dependencies == null) {
+            return ImmutableList.of();
+        }
+
+        List<Dependency> result = Lists.newArrayList();
+        for (Element dependency: children(dependencies)) {
+            if (!"dependency".equals(dependency.getTagName())) {
+                continue;
+            }
+
+            Set<String> exclusions = Sets.newLinkedHashSet();
+            Element exclusionsElement = child(dependency, "exclusions");
+            if (exclusionsElement != null) {
+                for (Element exclusion: children(exclusionsElement)) {
+                    exclusions.add(text(exclusion, "groupId") + ":" + text(exclusion, "artifactId"));
+                }
+            }
+
+            result.add(new Dependency(new Coordinates(text(dependency, "groupId"), text(dependency, "artifactId"),
+                    text(dependency, "version"), text(dependency, "type"), text(dependency, "classifier")),
+                    text(dependency, "scope"),
+                    Boolean.parseBoolean(text(dependency, "optional")),
+                    exclusions));
+        }
+        return result;
+    }
+
+    static Element read(File file) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            document = factory.newDocumentBuilder().parse(file);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Failed to parse " + file.getAbsolutePath(), e);
+        }
+        return document.getDocumentElement();
+    }
+
+    static Element child(Element element, String name) {
+        for (Element child: children(element)) {
+            if (name.equals(child.getTagName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    static List<Element> children(Element element) {
+        List<Element> children = Lists.newArrayList();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    static String text(Element element, String name) {
+        Element child = child(element, name);
+        return child == null ? null : StringUtils.trimToNull(child.getTextContent());
+    }
+}
@@ -0,0 +1,189 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Charges thread CPU time and allocated bytes of proxied calls to the artifact version that ran
+ * them. A nested proxied call is charged to its own artifact and subtracted from the enclosing
+ * call, so the totals of all artifacts add up to the time spent in proxied code.
+ * Allocations are measured only on runtimes with the {@code com.sun.management} extension.
+ */
+public final class ArtifactAccounting {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactAccounting.class);
+    private static final String UNKNOWN = "unknown";
+
+    private static final ConcurrentMap<String, Account> ACCOUNTS = Maps.newConcurrentMap();
+    private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+    private static volatile boolean enabled;
+    private static volatile long startedAt = System.nanoTime();
+
+    private ArtifactAccounting() {}
+
+    private static class Meters {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+    }
+
+    public static void setEnabled(boolean enabled) {
+        if (enabled) {
+            ThreadMXBean threads = Meters.THREADS;
+            if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+                threads.setThreadCpuTimeEnabled(true);
+            }
+            if (Meters.ALLOCATIONS != null && !Meters.ALLOCATIONS.isThreadAllocatedMemoryEnabled()) {
+                Meters.ALLOCATIONS.setThreadAllocatedMemoryEnabled(true);
+            }
+            if (!ArtifactAccounting.enabled && ACCOUNTS.isEmpty()) {
+                startedAt = System.nanoTime();
+            }
+        }
+        ArtifactAccounting.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isAllocationSupported() {
+        return Meters.ALLOCATIONS != null;
+    }
+
+    public static Frame enter() {
+        Frame frame = new Frame(CURRENT.get(), cpuTime(), allocatedBytes());
+        CURRENT.set(frame);
+        return frame;
+    }
+
+    public static void exit(Frame frame, ArtifactInterface artifact) {
+        CURRENT.set(frame.parent);
+
+        long cpu = Math.max(0, cpuTime() - frame.cpu);
+        long allocated = Math.max(0, allocatedBytes() - frame.allocated);
+        if (frame.parent != null) {
+            frame.parent.childCpu += cpu;
+            frame.parent.childAllocated += allocated;
+        }
+        account(artifact).add(Math.max(0, cpu - frame.childCpu), Math.max(0, allocated - frame.childAllocated));
+    }
+
+    public static List<ArtifactCost> getSnapshot() {
+        ImmutableList.Builder<ArtifactCost> costs = ImmutableList.builder();
+        for (Account account: ACCOUNTS.values()) {
+            costs.add(account.snapshot());
+        }
+        return costs.build();
+    }
+
+    public static ArtifactCost getCost(ArtifactInterface artifact) {
+        Account account = ACCOUNTS.get(key(name(artifact), version(artifact)));
+        return account == null ? null : account.snapshot();
+    }
+
+    public static void reset() {
+        ACCOUNTS.clear();
+        startedAt = System.nanoTime();
+    }
+
+    private static Account account(ArtifactInterface artifact) {
+        final String name = name(artifact);
+        final String version = version(artifact);
+        String key = key(name, version);
+        Account account = ACCOUNTS.get(key);
+        if (account == null) {
+            account = ACCOUNTS.computeIfAbsent(key, k -> new Account(name, version));
+        }
+        return account;
+    }
+
+    private static String key(String artifact, String version) {
+        return Joiner.on('|').join(artifact, version);
+    }
+
+    private static String name(ArtifactInterface artifact) {
+        return artifact == null ? UNKNOWN : artifact.getName();
+    }
+
+    private static String version(ArtifactInterface artifact) {
+        return artifact == null || artifact.getVersion() == null ? UNKNOWN : artifact.getVersion().getVersion();
+    }
+
+    private static long cpuTime() {
+        long cpu = Meters.THREADS.getCurrentThreadCpuTime();
+        return cpu < 0 ? 0 : cpu;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean allocations = Meters.ALLOCATIONS;
+        if (allocations == null) {
+            return 0;
+        }
+        long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+        return allocated < 0 ? 0 : allocated;
+    }
+
+    private static com.sun.management.ThreadMXBean allocations() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean &&
+                    ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                return (com.sun.management.ThreadMXBean) threads;
+            }
+        } catch (LinkageError e) {
+            LOGGER.debug("Thread allocation counters are not available on this runtime", e);
+        }
+        return null;
+    }
+
+    /**
+     * A running accounted call on the current thread.
+     */
+    public static class Frame {
+        private final Frame parent;
+        private final long cpu;
+        private final long allocated;
+        private long childCpu;
+        private long childAllocated;
+
+        private Frame(Frame parent, long cpu, long allocated) {
+            this.parent = parent;
+            this.cpu = cpu;
+            this.allocated = allocated;
+        }
+    }
+
+    private static class Account {
+        private final String artifact;
+        private final String version;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder cpu = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+
+        private Account(String artifact, String version) {
+            this.artifact = artifact;
+            this.version = version;
+        }
+
+        private void add(long cpuNanos, long allocatedBytes) {
+            calls.increment();
+            cpu.add(cpuNanos);
+            allocated.add(allocatedBytes);
+        }
+
+        private ArtifactCost snapshot() {
+            return new ArtifactCost(artifact, version, calls.sum(), cpu.sum(), allocated.sum(),
+                    System.nanoTime() - startedAt);
+        }
+    }
+}
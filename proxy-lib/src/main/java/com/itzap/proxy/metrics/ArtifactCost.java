@@ -0,0 +1,83 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.MoreObjects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * CPU time and allocated bytes charged to one artifact version since accounting started or was
+ * reset. Nested proxied calls are charged to their own artifact only.
+ */
+public class ArtifactCost {
+    private final String artifact;
+    private final String version;
+    private final long calls;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final long elapsedNanos;
+
+    @ConstructorProperties({"artifact", "version", "calls", "cpuNanos", "allocatedBytes", "elapsedNanos"})
+    public ArtifactCost(String artifact, String version, long calls, long cpuNanos, long allocatedBytes,
+                        long elapsedNanos) {
+        this.artifact = artifact;
+        this.version = version;
+        this.calls = calls;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    // wall time the totals were collected over
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getCpuNanosPerCall() {
+        return calls == 0 ? 0 : (double) cpuNanos / calls;
+    }
+
+    public double getBytesPerCall() {
+        return calls == 0 ? 0 : (double) allocatedBytes / calls;
+    }
+
+    // average number of cores busy in the artifact
+    public double getCpuLoad() {
+        return elapsedNanos <= 0 ? 0 : (double) cpuNanos / elapsedNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : allocatedBytes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("artifact", artifact)
+                .add("version", version)
+                .add("calls", calls)
+                .add("cpuNanos", cpuNanos)
+                .add("allocatedBytes", allocatedBytes)
+                .add("elapsedNanos", elapsedNanos)
+                .toString();
+    }
+}
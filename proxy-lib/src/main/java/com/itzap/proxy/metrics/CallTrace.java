@@ -0,0 +1,124 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * One captured proxied call. Calls made while another proxied call is running on the same
+ * thread, such as callbacks into proxies, carry the id of the enclosing call and their depth.
+ */
+public class CallTrace {
+    private final long id;
+    private final long parentId;
+    private final int depth;
+    private final long timestamp;
+    private final String thread;
+    private final String artifact;
+    private final String version;
+    private final String className;
+    private final String descriptor;
+    private final List<String> argumentTypes;
+    private final List<String> arguments;
+    private final long durationNanos;
+    private final boolean failed;
+    private final boolean slow;
+
+    CallTrace(long id, long parentId, int depth, long timestamp, String thread,
+              String artifact, String version, String className, String descriptor,
+              List<String> argumentTypes, List<String> arguments,
+              long durationNanos, boolean failed, boolean slow) {
+        this.id = id;
+        this.parentId = parentId;
+        this.depth = depth;
+        this.timestamp = timestamp;
+        this.thread = thread;
+        this.artifact = artifact;
+        this.version = version;
+        this.className = className;
+        this.descriptor = descriptor;
+        this.argumentTypes = ImmutableList.copyOf(argumentTypes);
+        this.arguments = ImmutableList.copyOf(arguments);
+        this.durationNanos = durationNanos;
+        this.failed = failed;
+        this.slow = slow;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // zero for a top level call
+    public long getParentId() {
+        return parentId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    // method name with its parameter types
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public List<String> getArgumentTypes() {
+        return argumentTypes;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    // captured for exceeding the slow call threshold rather than by sampling
+    public boolean isSlow() {
+        return slow;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append("  ");
+        }
+        return builder.append('#').append(id)
+                .append(parentId == 0 ? "" : " <- #" + parentId)
+                .append(' ').append(thread)
+                .append(' ').append(artifact).append('@').append(version)
+                .append(' ').append(className).append('.').append(descriptor)
+                .append(" args [").append(Joiner.on(", ").join(arguments)).append(']')
+                .append(String.format(" %.3f ms", durationNanos / 1e6))
+                .append(failed ? " failed" : "")
+                .append(slow ? " slow" : " sampled")
+                .toString();
+    }
+}
@@ -0,0 +1,240 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Optional tracer for proxied calls. A configured fraction of calls is sampled and calls over
+ * the slow threshold are always captured. Captures go into a bounded ring buffer that writers
+ * fill without locks, overwriting the oldest entries.
+ */
+public final class CallTracer {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_VALUE_LENGTH = 64;
+    private static final String UNKNOWN = "unknown";
+
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+    private static volatile double sampleRate;
+    private static volatile long slowNanos;
+    private static volatile boolean enabled;
+    private static volatile int maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+    private static volatile Ring ring = new Ring(DEFAULT_CAPACITY);
+
+    private CallTracer() {}
+
+    // fraction of calls to capture, 0 to 1
+    public static void setSampleRate(double sampleRate) {
+        Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+        CallTracer.sampleRate = sampleRate;
+        update();
+    }
+
+    // calls that take longer are always captured; zero turns slow call capture off
+    public static void setSlowThreshold(long duration, TimeUnit unit) {
+        CallTracer.slowNanos = Math.max(0, unit.toNanos(duration));
+        update();
+    }
+
+    // rounded up to a power of two; clears the captured calls
+    public static void setCapacity(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+        ring = new Ring(capacity);
+    }
+
+    public static void setMaxValueLength(int maxValueLength) {
+        CallTracer.maxValueLength = Math.max(0, maxValueLength);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Frame enter() {
+        double rate = sampleRate;
+        Frame frame = new Frame(CURRENT.get(), rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+        CURRENT.set(frame);
+        return frame;
+    }
+
+    public static void exit(Frame frame, ArtifactInterface artifact, Class<?> type, Method method,
+                            Object[] args, boolean failed) {
+        CURRENT.set(frame.parent);
+
+        long duration = System.nanoTime() - frame.start;
+        long threshold = slowNanos;
+        boolean slow = threshold > 0 && duration >= threshold;
+        if (!slow && !frame.sampled) {
+            return;
+        }
+
+        List<String> types = Lists.newArrayList();
+        List<String> values = Lists.newArrayList();
+        if (args != null) {
+            for (Object arg: args) {
+                types.add(arg == null ? "null" : arg.getClass().getName());
+                values.add(value(arg));
+            }
+        }
+        ring.add(new CallTrace(frame.id(), frame.parent == null ? 0 : frame.parent.id(), frame.depth,
+                System.currentTimeMillis(), Thread.currentThread().getName(),
+                artifact == null ? UNKNOWN : artifact.getName(),
+                artifact == null || artifact.getVersion() == null ? UNKNOWN : artifact.getVersion().getVersion(),
+                type == null ? UNKNOWN : type.getName(), descriptor(method),
+                types, values, duration, failed, slow));
+    }
+
+    // oldest first
+    public static List<CallTrace> getTraces() {
+        return ring.snapshot();
+    }
+
+    public static void dump(Appendable out) throws IOException {
+        for (CallTrace trace: getTraces()) {
+            out.append(trace.toString()).append(System.lineSeparator());
+        }
+    }
+
+    public static void clear() {
+        ring = new Ring(ring.capacity());
+    }
+
+    private static void update() {
+        enabled = sampleRate > 0 || slowNanos > 0;
+    }
+
+    private static String descriptor(Method method) {
+        List<String> types = Lists.newArrayList();
+        for (Class<?> type: method.getParameterTypes()) {
+            types.add(type.getSimpleName());
+        }
+        return method.getName() + '(' + Joiner.on(',').join(types) + ')';
+    }
+
+    private static String value(Object arg) {
+        int maxLength = Math.max(4, maxValueLength);
+        String value;
+        try {
+            value = format(arg, maxLength);
+        } catch (Throwable e) {
+            // a toString that overflows the stack or fails to link must not fail the traced call
+            if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) {
+                throw (VirtualMachineError) e;
+            }
+            value = "<" + e.getClass().getSimpleName() + ">";
+        }
+        return StringUtils.abbreviate(value, maxLength);
+    }
+
+    // an element takes at least two characters, so larger collections would be cut off anyway
+    private static String format(Object arg, int maxLength) {
+        int size = -1;
+        if (arg instanceof Collection) {
+            size = ((Collection<?>) arg).size();
+        } else if (arg instanceof Map) {
+            size = ((Map<?, ?>) arg).size();
+        } else if (arg != null && arg.getClass().isArray()) {
+            size = Array.getLength(arg);
+            if (size <= maxLength / 2) {
+                return ArrayUtils.toString(arg);
+            }
+        }
+        if (size > maxLength / 2) {
+            return arg.getClass().getSimpleName() + "<size=" + size + ">";
+        }
+        return String.valueOf(arg);
+    }
+
+    /**
+     * A running traced call on the current thread.
+     */
+    public static class Frame {
+        private final Frame parent;
+        private final int depth;
+        private final boolean sampled;
+        private final long start = System.nanoTime();
+        // taken when the call or one of its nested calls is captured, frames stay on their thread
+        private long id;
+
+        private Frame(Frame parent, boolean sampled) {
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.sampled = sampled;
+        }
+
+        private long id() {
+            if (id == 0) {
+                id = IDS.incrementAndGet();
+            }
+            return id;
+        }
+    }
+
+    private static class Ring {
+        private final AtomicReferenceArray<Entry> entries;
+        private final AtomicLong cursor = new AtomicLong();
+        private final int mask;
+
+        private Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+            this.entries = new AtomicReferenceArray<>(capacity == 1 ? 1 : size);
+            this.mask = entries.length() - 1;
+        }
+
+        private int capacity() {
+            return entries.length();
+        }
+
+        private void add(CallTrace trace) {
+            long sequence = cursor.getAndIncrement();
+            entries.set((int) (sequence & mask), new Entry(sequence, trace));
+        }
+
+        private List<CallTrace> snapshot() {
+            long end = cursor.get();
+            long start = Math.max(0, end - entries.length());
+            List<Entry> found = Lists.newArrayList();
+            for (int i = 0; i < entries.length(); i++) {
+                Entry entry = entries.get(i);
+                if (entry != null && entry.sequence >= start && entry.sequence < end) {
+                    found.add(entry);
+                }
+            }
+            found.sort(Comparator.comparingLong(entry -> entry.sequence));
+
+            ImmutableList.Builder<CallTrace> traces = ImmutableList.builder();
+            for (Entry entry: found) {
+                traces.add(entry.trace);
+            }
+            return traces.build();
+        }
+    }
+
+    private static class Entry {
+        private final long sequence;
+        private final CallTrace trace;
+
+        private Entry(long sequence, CallTrace trace) {
+            this.sequence = sequence;
+            this.trace = trace;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.model.ArtifactInterface;
+
+/**
+ * Flight recorder events behind {@link FlightEvents}. A begin method returns null when its event
+ * is not enabled, and the end methods are called only with a non null event.
+ */
+interface EventSink {
+    Object beginCall();
+
+    void endCall(Object event, ArtifactInterface artifact, Class<?> type, String method, boolean failed);
+
+    Object beginLoader();
+
+    void endLoader(Object event, ArtifactInterface artifact, ClassLoader loader, int urls);
+
+    Object beginExtraction();
+
+    void endExtraction(Object event, ArtifactInterface artifact, int jars, long bytes);
+
+    Object beginResolutionMiss();
+
+    void endResolutionMiss(Object event, ArtifactInterface artifact, int urls);
+}
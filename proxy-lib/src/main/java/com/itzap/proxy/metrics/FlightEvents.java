@@ -0,0 +1,73 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.model.ArtifactInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Java Flight Recorder events for proxied calls, loader creation, jar extraction and resolution
+ * misses. The events live in the Java 11 layer of the multi-release jar; on runtimes without JFR
+ * every method is a no-op. Calls are recorded only above the 20 ms threshold of the
+ * {@code com.itzap.proxy.Call} event, which recording settings can lower.
+ */
+public final class FlightEvents {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightEvents.class);
+    private static final String SINK = "com.itzap.proxy.metrics.JfrEventSink";
+    private static final EventSink SINK_INSTANCE = load();
+
+    private FlightEvents() {}
+
+    public static boolean isSupported() {
+        return SINK_INSTANCE != null;
+    }
+
+    public static Object beginCall() {
+        return SINK_INSTANCE == null ? null : SINK_INSTANCE.beginCall();
+    }
+
+    public static void endCall(Object event, ArtifactInterface artifact, Class<?> type, String method, boolean failed) {
+        if (event != null) {
+            SINK_INSTANCE.endCall(event, artifact, type, method, failed);
+        }
+    }
+
+    public static Object beginLoader() {
+        return SINK_INSTANCE == null ? null : SINK_INSTANCE.beginLoader();
+    }
+
+    public static void endLoader(Object event, ArtifactInterface artifact, ClassLoader loader, int urls) {
+        if (event != null) {
+            SINK_INSTANCE.endLoader(event, artifact, loader, urls);
+        }
+    }
+
+    public static Object beginExtraction() {
+        return SINK_INSTANCE == null ? null : SINK_INSTANCE.beginExtraction();
+    }
+
+    public static void endExtraction(Object event, ArtifactInterface artifact, int jars, long bytes) {
+        if (event != null) {
+            SINK_INSTANCE.endExtraction(event, artifact, jars, bytes);
+        }
+    }
+
+    public static Object beginResolutionMiss() {
+        return SINK_INSTANCE == null ? null : SINK_INSTANCE.beginResolutionMiss();
+    }
+
+    public static void endResolutionMiss(Object event, ArtifactInterface artifact, int urls) {
+        if (event != null) {
+            SINK_INSTANCE.endResolutionMiss(event, artifact, urls);
+        }
+    }
+
+    private static EventSink load() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+            return (EventSink) Class.forName(SINK).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("Flight recorder events are not available on this runtime", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.itzap.proxy.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in nanoseconds with 16 sub-buckets per power of two, so a recorded
+ * value is off by at most 1/16 of itself. Every slot is a striped adder created on its first use,
+ * so threads record without locks and memory does not grow with the number of threads.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // values above about 68 seconds land in the last bucket
+    private static final int MAX_BIT = 36;
+    static final int BUCKETS = (MAX_BIT - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final int ERRORS = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int SLOTS = BUCKETS + 2;
+
+    private final AtomicReferenceArray<LongAdder> slots = new AtomicReferenceArray<>(SLOTS);
+    private volatile long[] baseline = new long[SLOTS];
+
+    public void record(long nanos, boolean error) {
+        slot(index(nanos)).increment();
+        slot(SUM).add(Math.max(0, nanos));
+        if (error) {
+            slot(ERRORS).increment();
+        }
+    }
+
+    public Counts read() {
+        long[] counts = merge();
+        long[] base = baseline;
+        for (int i = 0; i < SLOTS; i++) {
+            counts[i] -= base[i];
+        }
+        return new Counts(counts);
+    }
+
+    public void reset() {
+        baseline = merge();
+    }
+
+    private long[] merge() {
+        long[] counts = new long[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            LongAdder slot = slots.get(i);
+            if (slot != null) {
+                counts[i] = slot.sum();
+            }
+        }
+        return counts;
+    }
+
+    private LongAdder slot(int index) {
+        LongAdder slot = slots.get(index);
+        if (slot == null) {
+            slots.compareAndSet(index, null, new LongAdder());
+            slot = slots.get(index);
+        }
+        return slot;
+    }
+
+    static int index(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int bit = Math.min(MAX_BIT, 63 - Long.numberOfLeadingZeros(nanos));
+        if (bit == MAX_BIT && nanos >>> MAX_BIT > 1) {
+            return BUCKETS - 1;
+        }
+        int shift = bit - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    // highest value that falls in the bucket
+    static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Merged bucket counts at one point in time.
+     */
+    public static class Counts {
+        private final long[] counts;
+        private final long total;
+
+        private Counts(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts[i];
+            }
+            this.total = total;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        public long getErrors() {
+            return counts[ERRORS];
+        }
+
+        public long getTotalNanos() {
+            return counts[SUM];
+        }
+
+        public double getMean() {
+            return total == 0 ? 0 : (double) counts[SUM] / total;
+        }
+
+        public long getMax() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getPercentile(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+            return getMax();
+        }
+    }
+}
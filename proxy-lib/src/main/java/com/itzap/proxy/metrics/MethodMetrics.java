@@ -0,0 +1,70 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Call count, error count and latency of one method, or of object creation, of one artifact version.
+ */
+public class MethodMetrics {
+    public static final String BUILD = "<build>";
+
+    private final String artifact;
+    private final String version;
+    private final String className;
+    private final String method;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private volatile boolean forgotten;
+
+    MethodMetrics(String artifact, String version, String className, String method) {
+        this.artifact = artifact;
+        this.version = version;
+        this.className = className;
+        this.method = method;
+    }
+
+    public void record(long startNanos, boolean error) {
+        histogram.record(System.nanoTime() - startNanos, error);
+    }
+
+    public MethodStats snapshot() {
+        return new MethodStats(artifact, version, className, method, histogram.read());
+    }
+
+    void reset() {
+        histogram.reset();
+    }
+
+    void forget() {
+        forgotten = true;
+    }
+
+    boolean isForgotten() {
+        return forgotten;
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("artifact", artifact)
+                .add("version", version)
+                .add("className", className)
+                .add("method", method)
+                .toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.MoreObjects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of {@link MethodMetrics}. Latencies are in nanoseconds and percentiles are accurate
+ * to 1/16 of the value.
+ */
+public class MethodStats {
+    private final String artifact;
+    private final String version;
+    private final String className;
+    private final String method;
+    private final long calls;
+    private final long errors;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    MethodStats(String artifact, String version, String className, String method, LatencyHistogram.Counts counts) {
+        this(artifact, version, className, method, counts.getCount(), counts.getErrors(), counts.getMean(),
+                counts.getPercentile(50), counts.getPercentile(90), counts.getPercentile(99),
+                counts.getPercentile(99.9), counts.getMax());
+    }
+
+    @ConstructorProperties({"artifact", "version", "className", "method", "calls", "errors",
+            "mean", "p50", "p90", "p99", "p999", "max"})
+    public MethodStats(String artifact, String version, String className, String method, long calls, long errors,
+                       double mean, long p50, long p90, long p99, long p999, long max) {
+        this.artifact = artifact;
+        this.version = version;
+        this.className = className;
+        this.method = method;
+        this.calls = calls;
+        this.errors = errors;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("artifact", artifact)
+                .add("version", version)
+                .add("className", className)
+                .add("method", method)
+                .add("calls", calls)
+                .add("errors", errors)
+                .add("mean", mean)
+                .add("p50", p50)
+                .add("p99", p99)
+                .add("max", max)
+                .toString();
+    }
+}
@@ -0,0 +1,182 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-method call metrics keyed by artifact, version, class and method. Disabled by default; when
+ * enabled, the metrics of a method are cached on its class, so a call pays two clock reads and an
+ * increment of a {@code LongAdder} latency slot. Metrics of an artifact are dropped when it is unloaded.
+ */
+public final class ProxyMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyMetrics.class);
+    private static final String OBJECT_NAME = "com.itzap.proxy:type=ProxyMetrics";
+    private static final String UNKNOWN = "unknown";
+
+    private static final ConcurrentMap<String, MethodMetrics> METRICS = Maps.newConcurrentMap();
+    private static final ClassValue<ConcurrentMap<Method, MethodMetrics>> BY_CLASS =
+            new ClassValue<ConcurrentMap<Method, MethodMetrics>>() {
+                @Override
+                protected ConcurrentMap<Method, MethodMetrics> computeValue(Class<?> type) {
+                    return Maps.newConcurrentMap();
+                }
+            };
+
+    private static volatile boolean enabled;
+    private static volatile boolean registered;
+
+    private ProxyMetrics() {}
+
+    public static void setEnabled(boolean enabled) {
+        if (enabled) {
+            register();
+        }
+        ProxyMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static MethodMetrics forMethod(final ArtifactInterface artifact, final Class<?> type, final Method method) {
+        MethodMetrics metrics = BY_CLASS.get(type).get(method);
+        if (metrics == null || metrics.isForgotten()) {
+            metrics = get(artifact, type.getName(), method.getName());
+            BY_CLASS.get(type).put(method, metrics);
+        }
+        return metrics;
+    }
+
+    public static MethodMetrics forBuild(ArtifactInterface artifact, String className) {
+        return get(artifact, className, MethodMetrics.BUILD);
+    }
+
+    public static List<MethodStats> getSnapshot() {
+        ImmutableList.Builder<MethodStats> stats = ImmutableList.builder();
+        for (MethodMetrics metrics: METRICS.values()) {
+            stats.add(metrics.snapshot());
+        }
+        return stats.build();
+    }
+
+    public static MethodStats getStats(ArtifactInterface artifact, String className, String method) {
+        MethodMetrics metrics = METRICS.get(key(name(artifact), version(artifact), className, method));
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    public static int getTrackedMethods() {
+        return METRICS.size();
+    }
+
+    /**
+     * Drops the metrics of an unloaded artifact. Entries cached on its classes go with the classes, and
+     * classes that stay loaded look their metrics up again.
+     */
+    public static void forget(String artifact) {
+        Iterator<MethodMetrics> iterator = METRICS.values().iterator();
+        while (iterator.hasNext()) {
+            MethodMetrics metrics = iterator.next();
+            if (metrics.getArtifact().equals(artifact)) {
+                metrics.forget();
+                iterator.remove();
+            }
+        }
+    }
+
+    // counts start again from zero, the tracked methods are kept
+    public static void reset() {
+        for (MethodMetrics metrics: METRICS.values()) {
+            metrics.reset();
+        }
+    }
+
+    private static MethodMetrics get(ArtifactInterface artifact, String className, String method) {
+        final String name = name(artifact);
+        final String version = version(artifact);
+        String key = key(name, version, className, method);
+        MethodMetrics metrics = METRICS.get(key);
+        if (metrics == null) {
+            metrics = METRICS.computeIfAbsent(key, k -> new MethodMetrics(name, version, className, method));
+        }
+        return metrics;
+    }
+
+    private static String key(String artifact, String version, String className, String method) {
+        return Joiner.on('|').useForNull(UNKNOWN).join(artifact, version, className, method);
+    }
+
+    private static String name(ArtifactInterface artifact) {
+        return artifact == null ? UNKNOWN : artifact.getName();
+    }
+
+    private static String version(ArtifactInterface artifact) {
+        return artifact == null || artifact.getVersion() == null ? UNKNOWN : artifact.getVersion().getVersion();
+    }
+
+    private static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register {}", OBJECT_NAME, e);
+        }
+    }
+
+    private static class MXBean implements ProxyMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ProxyMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            ProxyMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public int getTrackedMethods() {
+            return ProxyMetrics.getTrackedMethods();
+        }
+
+        @Override
+        public List<MethodStats> getMethodStats() {
+            return ProxyMetrics.getSnapshot();
+        }
+
+        @Override
+        public void reset() {
+            ProxyMetrics.reset();
+        }
+
+        @Override
+        public List<ArtifactCost> getArtifactCosts() {
+            return ArtifactAccounting.getSnapshot();
+        }
+
+        @Override
+        public String dumpTraces() {
+            StringBuilder out = new StringBuilder();
+            try {
+                CallTracer.dump(out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.itzap.proxy.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the proxy call metrics, registered as {@code com.itzap.proxy:type=ProxyMetrics}.
+ */
+public interface ProxyMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getTrackedMethods();
+
+    List<MethodStats> getMethodStats();
+
+    void reset();
+
+    List<ArtifactCost> getArtifactCosts();
+
+    String dumpTraces();
+}
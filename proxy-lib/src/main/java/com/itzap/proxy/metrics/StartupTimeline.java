@@ -0,0 +1,307 @@
+package com.itzap.proxy.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.itzap.proxy.model.ArtifactInterface;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup steps of one artifact load, from discovering its jars to its first proxied call, with
+ * durations and file and byte counts. A timeline starts when the loader of an artifact is created
+ * and replaces the timeline of an earlier load. Steps that run inside another step, such as a
+ * directory scan during discovery, overlap it in time.
+ */
+public class StartupTimeline {
+    public enum Phase {
+        DISCOVERY, DIRECTORY_SCAN, FALLBACK_PROBE, EXTRACTION, LOADER_CREATION, FIRST_CLASS_LOAD, WARM_UP, FIRST_CALL
+    }
+
+    private static final ConcurrentMap<String, StartupTimeline> TIMELINES = Maps.newConcurrentMap();
+    private static final ThreadLocal<StartupTimeline> CURRENT = new ThreadLocal<>();
+    // timelines still waiting for their first call, so calls skip the lookup once all have one
+    private static final AtomicInteger PENDING_FIRST_CALLS = new AtomicInteger();
+
+    private static volatile boolean enabled;
+
+    private final String artifact;
+    private final String version;
+    private final long startedAt = System.currentTimeMillis();
+    private final long origin = System.nanoTime();
+    private final List<Step> steps = new CopyOnWriteArrayList<>();
+    private final Set<Phase> once = Sets.newConcurrentHashSet();
+    private final AtomicBoolean firstCallPending = new AtomicBoolean(true);
+
+    private StartupTimeline(String artifact, String version) {
+        this.artifact = artifact;
+        this.version = version;
+    }
+
+    // off by default; while a timeline waits for its first call, every proxied call is timed
+    public static void setEnabled(boolean enabled) {
+        StartupTimeline.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // starts a new timeline for the artifact and makes it current on this thread; returns the previous current one
+    public static StartupTimeline begin(ArtifactInterface artifact) {
+        StartupTimeline previous = CURRENT.get();
+        if (!enabled) {
+            return previous;
+        }
+
+        StartupTimeline timeline = new StartupTimeline(artifact.getName(),
+                artifact.getVersion() == null ? null : artifact.getVersion().getVersion());
+        PENDING_FIRST_CALLS.incrementAndGet();
+        StartupTimeline replaced = TIMELINES.put(timeline.artifact, timeline);
+        if (replaced != null) {
+            replaced.settleFirstCall();
+        }
+        CURRENT.set(timeline);
+        return previous;
+    }
+
+    public static void end(StartupTimeline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    // timeline of the artifact being loaded on this thread, or null
+    public static StartupTimeline current() {
+        return CURRENT.get();
+    }
+
+    public static StartupTimeline get(String artifact) {
+        return artifact == null ? null : TIMELINES.get(artifact);
+    }
+
+    public static Map<String, StartupTimeline> getAll() {
+        return ImmutableMap.copyOf(TIMELINES);
+    }
+
+    // the artifact is unloaded, so its timeline stops waiting for a first call
+    public static void settle(String artifact) {
+        StartupTimeline timeline = get(artifact);
+        if (timeline != null) {
+            timeline.settleFirstCall();
+        }
+    }
+
+    public static void settleAll() {
+        for (StartupTimeline timeline: TIMELINES.values()) {
+            timeline.settleFirstCall();
+        }
+    }
+
+    public static void clear() {
+        settleAll();
+        TIMELINES.clear();
+    }
+
+    // runs the task with the current timeline of the submitting thread
+    public static <T> Callable<T> propagate(final Callable<T> task) {
+        final StartupTimeline timeline = CURRENT.get();
+        if (timeline == null) {
+            return task;
+        }
+        return () -> {
+            StartupTimeline previous = CURRENT.get();
+            CURRENT.set(timeline);
+            try {
+                return task.call();
+            } finally {
+                end(previous);
+            }
+        };
+    }
+
+    public static boolean isFirstCallPending() {
+        return PENDING_FIRST_CALLS.get() > 0;
+    }
+
+    public static void firstCall(ArtifactInterface artifact, long startNanos, String method) {
+        if (artifact == null) {
+            return;
+        }
+        StartupTimeline timeline = TIMELINES.get(artifact.getName());
+        if (timeline != null && timeline.firstCallPending.get()) {
+            timeline.recordOnce(Phase.FIRST_CALL, startNanos, 0, 0, method);
+            timeline.settleFirstCall();
+        }
+    }
+
+    public void record(Phase phase, long startNanos, int files, long bytes, String detail) {
+        steps.add(new Step(phase, detail, startNanos - origin, System.nanoTime() - startNanos,
+                files, bytes, Thread.currentThread().getName()));
+    }
+
+    public void recordOnce(Phase phase, long startNanos, int files, long bytes, String detail) {
+        if (once.add(phase)) {
+            record(phase, startNanos, files, bytes, detail);
+        }
+    }
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    // ordered by start
+    public List<Step> getSteps() {
+        List<Step> sorted = Lists.newArrayList(steps);
+        sorted.sort(Comparator.comparingLong(Step::getOffsetNanos));
+        return ImmutableList.copyOf(sorted);
+    }
+
+    // from the start of the timeline to the end of its last step
+    public long getTotalNanos() {
+        long total = 0;
+        for (Step step: steps) {
+            total = Math.max(total, step.offsetNanos + step.durationNanos);
+        }
+        return total;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"artifact\":").append(quote(artifact))
+                .append(",\"version\":").append(quote(version))
+                .append(",\"startedAt\":").append(startedAt)
+                .append(",\"totalNanos\":").append(getTotalNanos())
+                .append(",\"steps\":[");
+        List<Step> sorted = getSteps();
+        for (int i = 0; i < sorted.size(); i++) {
+            Step step = sorted.get(i);
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"phase\":").append(quote(step.phase.name()))
+                    .append(",\"detail\":").append(quote(step.detail))
+                    .append(",\"offsetNanos\":").append(step.offsetNanos)
+                    .append(",\"durationNanos\":").append(step.durationNanos)
+                    .append(",\"files\":").append(step.files)
+                    .append(",\"bytes\":").append(step.bytes)
+                    .append(",\"thread\":").append(quote(step.thread))
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    public void print(Appendable out) throws IOException {
+        out.append(String.format("Startup timeline of %s@%s: %.3f ms%n", artifact, version, getTotalNanos() / 1e6));
+        for (Step step: getSteps()) {
+            out.append(String.format("  %+10.3f ms %10.3f ms  %-16s files=%-4d bytes=%-10d %s%n",
+                    step.offsetNanos / 1e6, step.durationNanos / 1e6, step.phase,
+                    step.files, step.bytes, step.detail == null ? "" : step.detail));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        try {
+            print(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private void settleFirstCall() {
+        if (firstCallPending.compareAndSet(true, false)) {
+            PENDING_FIRST_CALLS.decrementAndGet();
+        }
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * One timed step. The offset is from the start of the timeline.
+     */
+    public static class Step {
+        private final Phase phase;
+        private final String detail;
+        private final long offsetNanos;
+        private final long durationNanos;
+        private final int files;
+        private final long bytes;
+        private final String thread;
+
+        private Step(Phase phase, String detail, long offsetNanos, long durationNanos,
+                     int files, long bytes, String thread) {
+            this.phase = phase;
+            this.detail = detail;
+            this.offsetNanos = offsetNanos;
+            this.durationNanos = durationNanos;
+            this.files = files;
+            this.bytes = bytes;
+            this.thread = thread;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+    }
+}
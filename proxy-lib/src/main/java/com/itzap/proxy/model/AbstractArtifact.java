@@ -56,6 +56,11 @@ public abstract class AbstractArtifact implements ArtifactInterface {
     private final File destination;
     protected final Predicate<String> predicate;
     private final ProxyVersionedInterface versionInfo;
+    private final LoaderEngine loaderEngine;
+    private final boolean fastJar;
+    private final ArtifactInterface apiLayer;
+    private final WarmUp warmUp;
+    private final Integrity integrity;
 
     public AbstractArtifact(String root,
                             String name,
@@ -64,6 +69,27 @@ public abstract class AbstractArtifact implements ArtifactInterface {
                             File destination,
                             Predicate<String> predicate,
                             ProxyVersionedInterface versionInfo) {
+        this(root, name, extensions, clazz, destination, predicate, versionInfo, LoaderEngine.URL, false, null, null, null);
+    }
+
+    protected AbstractArtifact(Builder<?, ?> builder) {
+        this(builder.root, builder.name, builder.extensions, builder.clazz,
+                builder.destination, builder.predicate, builder.versionInfo,
+                builder.loaderEngine, builder.fastJar, builder.apiLayer, builder.warmUp, builder.integrity);
+    }
+
+    private AbstractArtifact(String root,
+                             String name,
+                             Set<String> extensions,
+                             Class<?> clazz,
+                             File destination,
+                             Predicate<String> predicate,
+                             ProxyVersionedInterface versionInfo,
+                             LoaderEngine loaderEngine,
+                             boolean fastJar,
+                             ArtifactInterface apiLayer,
+                             WarmUp warmUp,
+                             Integrity integrity) {
         versionInfo = ObjectUtils.defaultIfNull(versionInfo, ProxyUtils.UNKNOWN_VERSION);
 
         this.root = StringUtils.defaultIfBlank(root, versionInfo.getPath());
@@ -73,6 +99,11 @@ public abstract class AbstractArtifact implements ArtifactInterface {
         this.destination = ObjectUtils.defaultIfNull(destination, versionInfo.getDir());
         this.predicate = predicate;
         this.versionInfo = versionInfo;
+        this.loaderEngine = ObjectUtils.defaultIfNull(loaderEngine, LoaderEngine.URL);
+        this.fastJar = fastJar;
+        this.apiLayer = apiLayer;
+        this.warmUp = warmUp;
+        this.integrity = integrity;
     }
 
     @Override
@@ -140,6 +171,7 @@ public abstract class AbstractArtifact implements ArtifactInterface {
                 .add("extension", Joiner.on(',').join(extensions))
                 .add("destination", destination.getAbsolutePath())
                 .add("sourceType", this.getSourceType())
+                .add("loaderEngine", loaderEngine)
                 .toString();
     }
 
@@ -166,6 +198,31 @@ public abstract class AbstractArtifact implements ArtifactInterface {
         return true;
     }
 
+    @Override
+    public LoaderEngine getLoaderEngine() {
+        return this.loaderEngine;
+    }
+
+    @Override
+    public boolean isFastJar() {
+        return this.fastJar;
+    }
+
+    @Override
+    public ArtifactInterface getApiLayer() {
+        return this.apiLayer;
+    }
+
+    @Override
+    public WarmUp getWarmUp() {
+        return this.warmUp;
+    }
+
+    @Override
+    public Integrity getIntegrity() {
+        return this.integrity;
+    }
+
     @Override
     public ProxyVersionedInterface getVersion() {
         return this.versionInfo;
@@ -179,6 +236,11 @@ public abstract class AbstractArtifact implements ArtifactInterface {
         File destination;
         Predicate<String> predicate;
         ProxyVersionedInterface versionInfo;
+        LoaderEngine loaderEngine;
+        boolean fastJar;
+        ArtifactInterface apiLayer;
+        WarmUp warmUp;
+        Integrity integrity;
 
         protected abstract B getThis();
 
@@ -218,5 +280,30 @@ public abstract class AbstractArtifact implements ArtifactInterface {
             this.versionInfo = versionInfo;
             return getThis();
         }
+
+        public B withLoaderEngine(LoaderEngine loaderEngine) {
+            this.loaderEngine = loaderEngine;
+            return getThis();
+        }
+
+        public B withFastJar(boolean fastJar) {
+            this.fastJar = fastJar;
+            return getThis();
+        }
+
+        public B withApiLayer(ArtifactInterface apiLayer) {
+            this.apiLayer = apiLayer;
+            return getThis();
+        }
+
+        public B withWarmUp(WarmUp warmUp) {
+            this.warmUp = warmUp;
+            return getThis();
+        }
+
+        public B withIntegrity(Integrity integrity) {
+            this.integrity = integrity;
+            return getThis();
+        }
     }
 }
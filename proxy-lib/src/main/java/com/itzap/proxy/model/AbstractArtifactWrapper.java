@@ -68,6 +68,31 @@ public abstract class AbstractArtifactWrapper implements ArtifactInterface {
         return getArtifact().isUseSystemLoader();
     }
 
+    @Override
+    public LoaderEngine getLoaderEngine() {
+        return getArtifact().getLoaderEngine();
+    }
+
+    @Override
+    public boolean isFastJar() {
+        return getArtifact().isFastJar();
+    }
+
+    @Override
+    public ArtifactInterface getApiLayer() {
+        return getArtifact().getApiLayer();
+    }
+
+    @Override
+    public WarmUp getWarmUp() {
+        return getArtifact().getWarmUp();
+    }
+
+    @Override
+    public Integrity getIntegrity() {
+        return getArtifact().getIntegrity();
+    }
+
     @Override
     public LibCallback getCallback() {
         return getArtifact().getCallback();
@@ -11,7 +11,11 @@ import java.util.Set;
 
 public interface ArtifactInterface extends ProxyInterface {
     public enum SourceType {
-        JAR, DIR, S3, UNKNOWN
+        JAR, DIR, S3, MAVEN, UNKNOWN
+    }
+
+    public enum LoaderEngine {
+        URL, MAPPED, POOLED, MODULE
     }
 
     String getRoot();
@@ -38,6 +42,16 @@ public interface ArtifactInterface extends ProxyInterface {
 
     boolean isUseSystemLoader();
 
+    LoaderEngine getLoaderEngine();
+
+    boolean isFastJar();
+
+    ArtifactInterface getApiLayer();
+
+    WarmUp getWarmUp();
+
+    Integrity getIntegrity();
+
     LibCallback getCallback();
 
     List<URL> load();
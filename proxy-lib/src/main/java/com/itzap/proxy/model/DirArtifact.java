@@ -13,10 +13,7 @@ import static com.itzap.proxy.utils.LibLoader.jarPredicate;
 
 public class DirArtifact extends AbstractArtifact {
     private DirArtifact(Builder builder) {
-        super(builder.root,
-                builder.name, builder.extensions, builder.clazz,
-                builder.destination,
-                builder.predicate, builder.versionInfo);
+        super(builder);
     }
 
     @Override
@@ -0,0 +1,92 @@
+package com.itzap.proxy.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Expected SHA-256 digests of the jars of an artifact, by jar file name. In strict mode a jar
+ * without an expected digest fails the check as well.
+ */
+public class Integrity {
+    private final Map<String, String> digests;
+    private final boolean strict;
+
+    private Integrity(Builder builder) {
+        this.digests = ImmutableMap.copyOf(builder.digests);
+        this.strict = builder.strict;
+    }
+
+    public Map<String, String> getDigests() {
+        return digests;
+    }
+
+    public String getDigest(String jarName) {
+        return digests.get(jarName);
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("digests", digests.size())
+                .add("strict", strict)
+                .toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final Map<String, String> digests = Maps.newLinkedHashMap();
+        private boolean strict = true;
+
+        private Builder() {
+        }
+
+        public Builder withDigest(String jarName, String sha256) {
+            this.digests.put(jarName, sha256.toLowerCase());
+            return this;
+        }
+
+        // sha256sum output: "<hex> <name>" or "<hex> *<name>" per line
+        public Builder withManifest(File manifest) throws IOException {
+            for (String line: FileUtils.readLines(manifest, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String digest = StringUtils.substringBefore(line, " ");
+                String name = StringUtils.removeStart(StringUtils.substringAfter(line, " ").trim(), "*");
+                if (digest.isEmpty() || name.isEmpty()) {
+                    throw new IOException(String.format("Invalid line in digest manifest %s: %s",
+                            manifest.getAbsolutePath(), line));
+                }
+                withDigest(FilenameUtils.getName(name), digest);
+            }
+            return this;
+        }
+
+        public Builder withStrict(boolean strict) {
+            this.strict = strict;
+            return this;
+        }
+
+        public Integrity build() {
+            return new Integrity(this);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.itzap.proxy.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.ProxyVersionedInterface;
+import com.itzap.proxy.maven.Coordinates;
+import com.itzap.proxy.maven.MavenResolver;
+import com.itzap.proxy.utils.ArtifactCache;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Artifact resolved from Maven coordinates. The jar and its runtime dependencies are looked up in the
+ * local repository and downloaded from the remote repositories when missing. The resolved classpath is
+ * kept in the resolution manifest, so repeat loads of a release version skip resolution. The local
+ * repository is shared with Maven by default, so its folders are left to the artifact cache only when
+ * it is marked as owned.
+ */
+public class MavenArtifact extends AbstractArtifact {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenArtifact.class);
+    public static final String MAVEN_CENTRAL = "https://repo.maven.apache.org/maven2/";
+
+    private final Coordinates coordinates;
+    private final List<URI> repositories;
+    private final File localRepository;
+    private final boolean ownedRepository;
+
+    private MavenArtifact(Builder builder) {
+        super(builder);
+        this.coordinates = builder.coordinates;
+        this.repositories = ImmutableList.copyOf(builder.repositories);
+        this.localRepository = builder.localRepository;
+        this.ownedRepository = builder.ownedRepository;
+    }
+
+    @Override
+    public SourceType getSourceType() {
+        return SourceType.MAVEN;
+    }
+
+    @Override
+    public LibCallback getCallback() {
+        return null;
+    }
+
+    @Override
+    public boolean isTemp() {
+        return false;
+    }
+
+    @Override
+    public File toPath() {
+        return new File(localRepository, coordinates.toPath(Coordinates.JAR)).getParentFile();
+    }
+
+    @Override
+    public File toParentPath() {
+        return toPath();
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    public List<URI> getRepositories() {
+        return repositories;
+    }
+
+    public File getLocalRepository() {
+        return localRepository;
+    }
+
+    public boolean isOwnedRepository() {
+        return ownedRepository;
+    }
+
+    @Override
+    public List<URL> load() {
+        LOGGER.debug("Resolving Maven artifact {}", coordinates);
+
+        MavenResolver resolver = new MavenResolver(repositories, localRepository);
+        List<File> files;
+        try {
+            files = resolver.resolve(coordinates);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to resolve {}. Application may not function properly", coordinates, e);
+            return ImmutableList.of();
+        }
+
+        if (ownedRepository) {
+            List<File> versions = Lists.newArrayListWithCapacity(files.size());
+            for (File file: files) {
+                versions.add(file.getParentFile());
+            }
+            ArtifactCache.record(getName(), versions, resolver.getDownloads() == 0);
+        }
+
+        List<URL> urls = Lists.newArrayListWithCapacity(files.size());
+        for (File file: files) {
+            if (predicate != null && !predicate.apply(file.getAbsolutePath())) {
+                continue;
+            }
+            try {
+                urls.add(file.toURI().toURL());
+            } catch (MalformedURLException e) {
+                LOGGER.warn("Failed to convert {} to URL", file, e);
+            }
+        }
+        return ImmutableList.copyOf(urls);
+    }
+
+    @Override
+    public ArtifactInterface fromVersion(ProxyVersionedInterface version) {
+        Builder builder = builder()
+                .withCoordinates(coordinates.withVersion(version.getVersion()))
+                .withLocalRepository(localRepository)
+                .withOwnedRepository(ownedRepository)
+                .withExtensions(getExtensions())
+                .withClazz(clazz)
+                .withDestination(getDestination(null))
+                .withPredicate(predicate)
+                .withLoaderEngine(getLoaderEngine())
+                .withFastJar(isFastJar())
+                .withApiLayer(getApiLayer())
+                .withWarmUp(getWarmUp())
+                .withIntegrity(getIntegrity())
+                .withVersionInfo(version);
+        builder.repositories.clear();
+        builder.repositories.addAll(repositories);
+        return builder.build();
+    }
+
+    @Override
+    public String getLabel() {
+        return getVersion().getLabel();
+    }
+
+    public static class Builder extends AbstractArtifact.Builder<MavenArtifact, Builder> {
+        Coordinates coordinates;
+        final List<URI> repositories = Lists.newArrayList();
+        File localRepository;
+        boolean ownedRepository;
+
+        @Override
+        protected Builder getThis() {
+            return this;
+        }
+
+        // groupId:artifactId[:type[:classifier]][:version]; the version may come from the version info instead
+        public Builder withCoordinates(String coordinates) {
+            return withCoordinates(Coordinates.parse(coordinates));
+        }
+
+        public Builder withCoordinates(Coordinates coordinates) {
+            this.coordinates = coordinates;
+            return this;
+        }
+
+        public Builder withRepository(String repository) {
+            return withRepository(URI.create(repository));
+        }
+
+        public Builder withRepository(URI repository) {
+            this.repositories.add(repository);
+            return this;
+        }
+
+        public Builder withLocalRepository(File localRepository) {
+            this.localRepository = localRepository;
+            return this;
+        }
+
+        // only a local repository that nothing else uses may have its version folders evicted
+        public Builder withOwnedRepository(boolean ownedRepository) {
+            this.ownedRepository = ownedRepository;
+            return this;
+        }
+
+        @Override
+        public MavenArtifact build() {
+            if (this.coordinates == null) {
+                throw new IllegalArgumentException("Maven coordinates are required");
+            }
+
+            this.localRepository = ObjectUtils.defaultIfNull(this.localRepository,
+                    new File(System.getProperty("user.home"), ".m2/repository"));
+            if (this.versionInfo == null) {
+                this.versionInfo = ProxyUtils.newVersionInfo(this.coordinates.getArtifactId(),
+                        this.coordinates.getVersion(), this.localRepository);
+            } else if (StringUtils.isBlank(this.coordinates.getVersion())) {
+                this.coordinates = this.coordinates.withVersion(this.versionInfo.getVersion());
+            }
+            if (StringUtils.isBlank(this.coordinates.getVersion())) {
+                throw new IllegalArgumentException("Maven coordinates " + this.coordinates + " have no version");
+            }
+
+            if (this.repositories.isEmpty()) {
+                this.repositories.add(URI.create(MAVEN_CENTRAL));
+            }
+            this.root = StringUtils.defaultIfBlank(this.root,
+                    this.coordinates.getGroupId() + ":" + this.coordinates.getArtifactId());
+            this.destination = ObjectUtils.defaultIfNull(this.destination,
+                    ObjectUtils.defaultIfNull(this.versionInfo.getDir(), this.localRepository));
+            this.extensions = ObjectUtils.defaultIfNull(this.extensions, ImmutableSet.of("jar"));
+            this.clazz = ObjectUtils.defaultIfNull(this.clazz, MavenArtifact.class);
+
+            return new MavenArtifact(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+}
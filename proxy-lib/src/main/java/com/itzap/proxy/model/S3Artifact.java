@@ -0,0 +1,329 @@
+package com.itzap.proxy.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.ProxyVersionedInterface;
+import com.itzap.proxy.s3.RangedDownload;
+import com.itzap.proxy.s3.S3Client;
+import com.itzap.proxy.s3.S3Object;
+import com.itzap.proxy.s3.S3Signer;
+import com.itzap.proxy.utils.ArtifactCache;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Artifact downloaded from an S3 bucket. Objects under {@code <root>/<label>/<version>/} are fetched
+ * into the destination folder with parallel ranged GETs, and files whose ETag has not changed are reused.
+ */
+public class S3Artifact extends AbstractArtifact {
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3Artifact.class);
+    public static final long DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+    private final String prefix;
+    private final URI endpoint;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final String sessionToken;
+    private final String region;
+    private final long partSize;
+    private final LibCallback callback;
+
+    private S3Artifact(Builder builder) {
+        super(builder);
+        this.prefix = StringUtils.strip(StringUtils.defaultString(builder.root), "/");
+        this.endpoint = builder.endpoint;
+        this.bucket = builder.bucket;
+        this.accessKey = builder.accessKey;
+        this.secretKey = builder.secretKey;
+        this.sessionToken = builder.sessionToken;
+        this.region = builder.region;
+        this.partSize = builder.partSize;
+        this.callback = builder.callback;
+    }
+
+    @Override
+    public SourceType getSourceType() {
+        return SourceType.S3;
+    }
+
+    @Override
+    public LibCallback getCallback() {
+        return callback;
+    }
+
+    @Override
+    public boolean isTemp() {
+        return false;
+    }
+
+    @Override
+    public File toPath() {
+        return new File(getDestination(getKeyPrefix()), getVersionPath());
+    }
+
+    @Override
+    public File toParentPath() {
+        return toPath();
+    }
+
+    public URI getEndpoint() {
+        return endpoint;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getKeyPrefix() {
+        // trailing slash, so label/1.0 does not also match label/1.0.1
+        return (StringUtils.isEmpty(prefix) ? getVersionPath() : prefix + "/" + getVersionPath()) + "/";
+    }
+
+    @Override
+    public List<URL> load() {
+        S3Client client = new S3Client(endpoint, bucket, StringUtils.isBlank(accessKey) ? null :
+                new S3Signer(accessKey, secretKey, sessionToken, region));
+        String keyPrefix = getKeyPrefix();
+        File dir = toPath();
+
+        List<S3Object> objects;
+        try {
+            objects = client.list(keyPrefix);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list s3://{}/{}. Application may not function properly", bucket, keyPrefix, e);
+            return ImmutableList.of();
+        }
+
+        List<File> files = Lists.newArrayList();
+        List<S3Object> missing = Lists.newArrayList();
+        long length = 0;
+        for (S3Object object: objects) {
+            String name = object.getKey().substring(keyPrefix.length());
+            if (!getExtensions().contains(FilenameUtils.getExtension(name).toLowerCase()) ||
+                    (predicate != null && !predicate.apply(object.getKey()))) {
+                continue;
+            }
+
+            File file = localFile(dir, keyPrefix, object);
+            if (file == null) {
+                LOGGER.warn("Skipping s3://{}/{}. It resolves outside of {}", bucket, object.getKey(), dir);
+                continue;
+            }
+            files.add(file);
+            if (!RangedDownload.isCached(object, file)) {
+                missing.add(object);
+                length += object.getSize();
+            }
+        }
+
+        if (files.isEmpty()) {
+            LOGGER.warn("No files found in s3://{}/{}. Application may not function properly", bucket, keyPrefix);
+            return ImmutableList.of();
+        }
+
+        if (!download(client, keyPrefix, dir, missing, length)) {
+            return ImmutableList.of();
+        }
+        ArtifactCache.record(getName(), dir, missing.isEmpty());
+
+        ImmutableList.Builder<URL> urls = ImmutableList.builder();
+        for (File file: files) {
+            try {
+                urls.add(file.toURI().toURL());
+            } catch (MalformedURLException e) {
+                LOGGER.warn("Failed to convert {} to URL", file, e);
+            }
+        }
+        return urls.build();
+    }
+
+    private boolean download(S3Client client, final String keyPrefix, final File dir,
+                             List<S3Object> objects, long length) {
+        if (objects.isEmpty()) {
+            LOGGER.debug("s3://{}/{} is up to date in {}", bucket, keyPrefix, dir);
+            return true;
+        }
+
+        final AtomicLong position = new AtomicLong();
+        RangedDownload.Progress progress = new RangedDownload.Progress() {
+            @Override
+            public void transferred(S3Object object, long bytes) {
+                long pos = position.addAndGet(bytes);
+                if (callback != null) {
+                    synchronized (callback) {
+                        callback.tell(object.getKey(), localFile(dir, keyPrefix, object).getAbsolutePath(), pos);
+                    }
+                }
+            }
+        };
+
+        if (callback != null) {
+            callback.setLength(length);
+            callback.start();
+        }
+        List<ListenableFuture<File>> downloads = Lists.newArrayList();
+        try {
+            for (S3Object object: objects) {
+                File file = localFile(dir, keyPrefix, object);
+                downloads.add(new RangedDownload(client, object, file, partSize, progress).start());
+            }
+            // wait for every download to settle, so nothing is still writing when load returns
+            List<File> done = Futures.successfulAsList(downloads).get();
+            if (done.contains(null)) {
+                Futures.allAsList(downloads).get();
+            }
+            return true;
+        } catch (IOException | ExecutionException e) {
+            // parts already written are kept, the next load resumes from them
+            LOGGER.warn("Failed to download s3://{}/{}. Application may not function properly", bucket, keyPrefix, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (ListenableFuture<File> download: downloads) {
+                download.cancel(false);
+            }
+            return false;
+        } finally {
+            if (callback != null) {
+                callback.stop();
+            }
+        }
+    }
+
+    // keys are remote input, a name like ../x or /x must not write outside of the destination
+    private static File localFile(File dir, String keyPrefix, S3Object object) {
+        String name = object.getKey().substring(keyPrefix.length());
+        if (name.isEmpty() || name.startsWith("/") || name.startsWith("\\")) {
+            return null;
+        }
+        File file = new File(dir, name);
+        try {
+            String root = dir.getCanonicalPath() + File.separator;
+            return file.getCanonicalPath().startsWith(root) ? file : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String getVersionPath() {
+        return StringUtils.strip(ProxyUtils.getS3Path(StringUtils.EMPTY, getVersion()), "/");
+    }
+
+    @Override
+    public ArtifactInterface fromVersion(ProxyVersionedInterface version) {
+        Builder builder = builder()
+                .withEndpoint(endpoint)
+                .withBucket(bucket)
+                .withCredentials(accessKey, secretKey, sessionToken)
+                .withRegion(region)
+                .withPartSize(partSize)
+                .withCallback(callback)
+                .withRoot(prefix)
+                .withExtensions(getExtensions())
+                .withClazz(clazz)
+                .withDestination(getDestination(null))
+                .withPredicate(predicate)
+                .withLoaderEngine(getLoaderEngine())
+                .withFastJar(isFastJar())
+                .withApiLayer(getApiLayer())
+                .withWarmUp(getWarmUp())
+                .withIntegrity(getIntegrity())
+                .withVersionInfo(version);
+        return builder.build();
+    }
+
+    @Override
+    public String getLabel() {
+        return getVersion().getLabel();
+    }
+
+    public static class Builder extends AbstractArtifact.Builder<S3Artifact, Builder> {
+        URI endpoint;
+        String bucket;
+        String accessKey;
+        String secretKey;
+        String sessionToken;
+        String region;
+        long partSize = DEFAULT_PART_SIZE;
+        LibCallback callback;
+
+        @Override
+        protected Builder getThis() {
+            return this;
+        }
+
+        public Builder withEndpoint(URI endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        public Builder withEndpoint(String endpoint) {
+            return withEndpoint(URI.create(endpoint));
+        }
+
+        public Builder withBucket(String bucket) {
+            this.bucket = bucket;
+            return this;
+        }
+
+        public Builder withCredentials(String accessKey, String secretKey) {
+            return withCredentials(accessKey, secretKey, null);
+        }
+
+        public Builder withCredentials(String accessKey, String secretKey, String sessionToken) {
+            this.accessKey = accessKey;
+            this.secretKey = secretKey;
+            this.sessionToken = sessionToken;
+            return this;
+        }
+
+        public Builder withRegion(String region) {
+            this.region = region;
+            return this;
+        }
+
+        public Builder withPartSize(long partSize) {
+            this.partSize = partSize;
+            return this;
+        }
+
+        public Builder withCallback(LibCallback callback) {
+            this.callback = callback;
+            return this;
+        }
+
+        @Override
+        public S3Artifact build() {
+            this.endpoint = ObjectUtils.defaultIfNull(this.endpoint, URI.create("https://s3.amazonaws.com"));
+            this.extensions = ObjectUtils.defaultIfNull(this.extensions, ImmutableSet.of("jar"));
+            this.clazz = ObjectUtils.defaultIfNull(this.clazz, S3Artifact.class);
+
+            if (StringUtils.isBlank(this.bucket)) {
+                throw new IllegalArgumentException("S3 bucket is required");
+            }
+
+            return new S3Artifact(this);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+}
@@ -0,0 +1,111 @@
+package com.itzap.proxy.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.itzap.proxy.MethodDesriptor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Classes to preload and training calls to replay right after an artifact class loader is created.
+ */
+public class WarmUp {
+    private final List<String> classes;
+    private final boolean initialize;
+    private final List<Call> calls;
+
+    private WarmUp(Builder builder) {
+        this.classes = builder.classes.build();
+        this.initialize = builder.initialize;
+        this.calls = builder.calls.build();
+    }
+
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    public boolean isInitialize() {
+        return initialize;
+    }
+
+    public List<Call> getCalls() {
+        return calls;
+    }
+
+    public boolean isEmpty() {
+        return classes.isEmpty() && calls.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("classes", classes.size())
+                .add("initialize", initialize)
+                .add("calls", calls.size())
+                .toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Call {
+        private final String className;
+        private final List<MethodDesriptor> descriptors;
+
+        private Call(String className, List<MethodDesriptor> descriptors) {
+            this.className = className;
+            this.descriptors = descriptors;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public List<MethodDesriptor> getDescriptors() {
+            return descriptors;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("className", className)
+                    .add("descriptors", descriptors.size())
+                    .toString();
+        }
+    }
+
+    public static class Builder {
+        private final ImmutableList.Builder<String> classes = ImmutableList.builder();
+        private final ImmutableList.Builder<Call> calls = ImmutableList.builder();
+        private boolean initialize = true;
+
+        private Builder() {
+        }
+
+        public Builder withClasses(String... classes) {
+            return withClasses(Arrays.asList(classes));
+        }
+
+        public Builder withClasses(Collection<String> classes) {
+            this.classes.addAll(classes);
+            return this;
+        }
+
+        public Builder withInitialize(boolean initialize) {
+            this.initialize = initialize;
+            return this;
+        }
+
+        public Builder withCall(String className, MethodDesriptor... descriptors) {
+            this.calls.add(new Call(className, ImmutableList.copyOf(descriptors)));
+            return this;
+        }
+
+        public WarmUp build() {
+            return new WarmUp(this);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.itzap.proxy.utils.ProxyExecutors;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloads one object as parallel ranged GETs into {@code <file>.part}. Finished parts are recorded
+ * in {@code <file>.part.state}, so an interrupted download resumes with the missing parts only.
+ * The completed file is moved into place and its ETag is kept next to it in {@code <file>.etag}.
+ */
+public class RangedDownload {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RangedDownload.class);
+    private static final int RETRIES = 3;
+    private static final String PART = ".part";
+    private static final String STATE = ".part.state";
+    private static final String ETAG = ".etag";
+
+    public interface Progress {
+        void transferred(S3Object object, long bytes);
+    }
+
+    private final S3Client client;
+    private final S3Object object;
+    private final File target;
+    private final long partSize;
+    private final Progress progress;
+
+    private final File partFile;
+    private final File stateFile;
+    private final BitSet done = new BitSet();
+    private volatile boolean aborted;
+
+    public RangedDownload(S3Client client, S3Object object, File target, long partSize, Progress progress) {
+        this.client = client;
+        this.object = object;
+        this.target = target;
+        this.partSize = Math.max(1, partSize);
+        this.progress = progress;
+        this.partFile = new File(target.getPath() + PART);
+        this.stateFile = new File(target.getPath() + STATE);
+    }
+
+    // true if the target is already on disk with the same size and etag
+    public static boolean isCached(S3Object object, File target) {
+        if (!target.isFile() || target.length() != object.getSize()) {
+            return false;
+        }
+
+        File etag = new File(target.getPath() + ETAG);
+        try {
+            return etag.isFile() &&
+                    StringUtils.equals(object.getEtag(), FileUtils.readFileToString(etag, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int getParts() {
+        return (int) Math.max(1, (object.getSize() + partSize - 1) / partSize);
+    }
+
+    // blocks until the object is on disk; prefer start() to download several objects at once
+    public File download() throws IOException {
+        try {
+            return start().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + object.getKey(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to download " + object.getKey(), e.getCause());
+        }
+    }
+
+    public ListenableFuture<File> start() throws IOException {
+        FileUtils.forceMkdir(target.getParentFile());
+        resume();
+
+        final FileChannel channel = FileChannel.open(partFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        final List<ListenableFuture<Void>> futures = Lists.newArrayList();
+        for (int part = 0; part < getParts(); part++) {
+            if (!isDone(part)) {
+                futures.add(ProxyExecutors.io().submit(new PartTask(part, channel)));
+            }
+        }
+
+        final SettableFuture<File> result = SettableFuture.create();
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                // a cancelled download stops queued parts, written parts are kept for the next attempt
+                if (result.isCancelled()) {
+                    aborted = true;
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(Futures.allAsList(futures), new FutureCallback<List<Void>>() {
+            @Override
+            public void onSuccess(List<Void> parts) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                    finish();
+                    result.set(target);
+                } catch (IOException e) {
+                    result.setException(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                // queued parts skip themselves; running ones finish so their progress is recorded
+                aborted = true;
+                Futures.successfulAsList(futures).addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        IOUtils.closeQuietly(channel);
+                        if (t instanceof S3Exception && ((S3Exception) t).isChanged()) {
+                            // the object was replaced, the parts already written belong to the old version
+                            discard();
+                        }
+                        result.setException(t);
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private void finish() throws IOException {
+        Files.move(partFile.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.writeStringToFile(new File(target.getPath() + ETAG), object.getEtag(), StandardCharsets.UTF_8);
+        FileUtils.deleteQuietly(stateFile);
+    }
+
+    private void resume() throws IOException {
+        if (!stateFile.isFile() || !partFile.isFile()) {
+            discard();
+            return;
+        }
+
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+            state.load(in);
+        }
+
+        if (!StringUtils.equals(object.getEtag(), state.getProperty("etag")) ||
+                !String.valueOf(object.getSize()).equals(state.getProperty("size")) ||
+                !String.valueOf(partSize).equals(state.getProperty("partSize"))) {
+            LOGGER.debug("Partial download of {} is stale, starting over", object.getKey());
+            discard();
+            return;
+        }
+
+        for (String part: Splitter.on(',').omitEmptyStrings().trimResults()
+                .split(state.getProperty("done", StringUtils.EMPTY))) {
+            done.set(Integer.parseInt(part));
+        }
+        LOGGER.debug("Resuming download of {} with {} of {} parts done", object.getKey(),
+                done.cardinality(), getParts());
+    }
+
+    private void discard() {
+        synchronized (done) {
+            done.clear();
+        }
+        FileUtils.deleteQuietly(partFile);
+        FileUtils.deleteQuietly(stateFile);
+    }
+
+    private boolean isDone(int part) {
+        synchronized (done) {
+            return done.get(part);
+        }
+    }
+
+    private void markDone(int part) throws IOException {
+        synchronized (done) {
+            done.set(part);
+
+            List<Integer> parts = Lists.newArrayList();
+            for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+                parts.add(i);
+            }
+
+            Properties state = new Properties();
+            state.setProperty("etag", StringUtils.defaultString(object.getEtag()));
+            state.setProperty("size", String.valueOf(object.getSize()));
+            state.setProperty("partSize", String.valueOf(partSize));
+            state.setProperty("done", Joiner.on(',').join(parts));
+
+            File tmp = new File(stateFile.getPath() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+                state.store(out, null);
+            }
+            Files.move(tmp.toPath(), stateFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private class PartTask implements Callable<Void> {
+        private final int part;
+        private final FileChannel channel;
+
+        private PartTask(int part, FileChannel channel) {
+            this.part = part;
+            this.channel = channel;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            long from = part * partSize;
+            long to = Math.min(object.getSize(), from + partSize) - 1;
+            if (to < from) {
+                markDone(part);
+                return null;
+            }
+
+            IOException failure = null;
+            for (int attempt = 0; attempt < RETRIES && !aborted; attempt++) {
+                try {
+                    long read = client.read(object, from, to, channel);
+                    markDone(part);
+                    if (progress != null) {
+                        progress.transferred(object, read);
+                    }
+                    return null;
+                } catch (S3Exception e) {
+                    if (e.isChanged() || e.getStatus() / 100 == 4) {
+                        throw e;
+                    }
+                    failure = e;
+                } catch (IOException e) {
+                    failure = e;
+                }
+                LOGGER.debug("Part {} of {} failed, attempt {}", part, object.getKey(), attempt + 1, failure);
+            }
+            throw failure != null ? failure : new IOException("Download of " + object.getKey() + " was aborted");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal path-style S3 client: ListObjectsV2 and ranged GetObject over plain HTTP(S).
+ * Requests are signed when a {@link S3Signer} is given, otherwise they are sent anonymously.
+ */
+public class S3Client {
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final URI endpoint;
+    private final String bucket;
+    private final S3Signer signer;
+
+    public S3Client(URI endpoint, String bucket, S3Signer signer) {
+        this.endpoint = endpoint;
+        this.bucket = bucket;
+        this.signer = signer;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public List<S3Object> list(String prefix) throws IOException {
+        ImmutableList.Builder<S3Object> objects = ImmutableList.builder();
+        String token = null;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while listing " + prefix);
+            }
+            Map<String, String> query = Maps.newLinkedHashMap();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (token != null) {
+                query.put("continuation-token", token);
+            }
+
+            HttpURLConnection connection = open("/" + bucket, query, Maps.<String, String>newHashMap());
+            try {
+                check(connection, "list " + prefix);
+                Document document;
+                try (InputStream in = connection.getInputStream()) {
+                    document = parse(in);
+                }
+
+                NodeList contents = document.getElementsByTagName("Contents");
+                for (int i = 0; i < contents.getLength(); i++) {
+                    Element content = (Element) contents.item(i);
+                    String key = text(content, "Key");
+                    if (key.endsWith("/")) {
+                        continue;
+                    }
+                    objects.add(new S3Object(key,
+                            Long.parseLong(text(content, "Size")),
+                            StringUtils.strip(text(content, "ETag"), "\"")));
+                }
+
+                token = Boolean.parseBoolean(text(document.getDocumentElement(), "IsTruncated")) ?
+                        StringUtils.trimToNull(text(document.getDocumentElement(), "NextContinuationToken")) : null;
+            } finally {
+                connection.disconnect();
+            }
+        } while (token != null);
+
+        return objects.build();
+    }
+
+    // copies bytes [from, to] of the object into the channel at the same offset; fails with 412 if the etag changed
+    public long read(S3Object object, long from, long to, FileChannel channel) throws IOException {
+        Map<String, String> headers = Maps.newHashMap();
+        headers.put("Range", "bytes=" + from + "-" + to);
+        if (StringUtils.isNotBlank(object.getEtag())) {
+            headers.put("If-Match", "\"" + object.getEtag() + "\"");
+        }
+
+        HttpURLConnection connection = open("/" + bucket + "/" + object.getKey(),
+                Maps.<String, String>newHashMap(), headers);
+        try {
+            check(connection, object.getKey());
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL && from > 0) {
+                throw new S3Exception(connection.getResponseCode(),
+                        "Range request ignored for " + object.getKey());
+            }
+
+            long position = from;
+            long remaining = to - from + 1;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = connection.getInputStream()) {
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of " + object.getKey() + " at " + position);
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                    remaining -= read;
+                }
+            }
+            return position - from;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String path, Map<String, String> query, Map<String, String> headers)
+            throws IOException {
+        StringBuilder url = new StringBuilder(StringUtils.removeEnd(endpoint.toString(), "/"))
+                .append(S3Signer.encode(path, true));
+        char separator = '?';
+        for (Map.Entry<String, String> parameter: query.entrySet()) {
+            url.append(separator)
+                    .append(S3Signer.encode(parameter.getKey(), false))
+                    .append('=')
+                    .append(S3Signer.encode(parameter.getValue(), false));
+            separator = '&';
+        }
+
+        if (signer != null) {
+            String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+            signer.sign("GET", host, path, query, headers, new Date());
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        for (Map.Entry<String, String> header: headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        return connection;
+    }
+
+    private static void check(HttpURLConnection connection, String what) throws IOException {
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+            String message = StringUtils.EMPTY;
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                try (InputStream in = error) {
+                    message = IOUtils.toString(in, StandardCharsets.UTF_8);
+                }
+            }
+            throw new S3Exception(status, "S3 request for " + what + " failed with " + status + " " + message);
+        }
+    }
+
+    private static Document parse(InputStream in) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(in);
+        } catch (ParserConfigurationException | org.xml.sax.SAXException e) {
+            throw new IOException("Failed to parse S3 listing", e);
+        }
+    }
+
+    private static String text(Element element, String tag) {
+        NodeList nodes = element.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? StringUtils.EMPTY : nodes.item(0).getTextContent();
+    }
+}
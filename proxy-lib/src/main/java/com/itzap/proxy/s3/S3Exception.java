@@ -0,0 +1,23 @@
+package com.itzap.proxy.s3;
+
+import java.io.IOException;
+
+public class S3Exception extends IOException {
+    public static final int PRECONDITION_FAILED = 412;
+
+    private final int status;
+
+    public S3Exception(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // the object changed while it was being downloaded, so the parts already on disk are stale
+    public boolean isChanged() {
+        return status == PRECONDITION_FAILED;
+    }
+}
@@ -0,0 +1,40 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.base.MoreObjects;
+
+public class S3Object {
+    private final String key;
+    private final long size;
+    private final String etag;
+
+    public S3Object(String key, long size, String etag) {
+        this.key = key;
+        this.size = size;
+        this.etag = etag;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getName() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("key", key)
+                .add("size", size)
+                .add("etag", etag)
+                .toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+
+/**
+ * AWS Signature Version 4 for S3 requests. Payloads are not hashed, every request is sent
+ * with {@code UNSIGNED-PAYLOAD}.
+ */
+public class S3Signer {
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String sessionToken;
+    private final String region;
+
+    public S3Signer(String accessKey, String secretKey, String sessionToken, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.sessionToken = sessionToken;
+        this.region = StringUtils.defaultIfBlank(region, "us-east-1");
+    }
+
+    // adds x-amz-date, x-amz-content-sha256, the session token and Authorization to the headers
+    public void sign(String method, String host, String path, Map<String, String> query,
+                     Map<String, String> headers, Date now) {
+        headers.put("x-amz-date", amzDate(now));
+        headers.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        if (StringUtils.isNotBlank(sessionToken)) {
+            headers.put("x-amz-security-token", sessionToken);
+        }
+        headers.put("Authorization", authorization(method, host, path, query, headers, UNSIGNED_PAYLOAD));
+    }
+
+    String authorization(String method, String host, String path, Map<String, String> query,
+                         Map<String, String> headers, String payloadHash) {
+        SortedMap<String, String> signed = Maps.newTreeMap();
+        signed.put("host", host);
+        for (Map.Entry<String, String> header: headers.entrySet()) {
+            signed.put(header.getKey().toLowerCase(Locale.ROOT), header.getValue().trim());
+        }
+        signed.remove("authorization");
+
+        String amzDate = signed.get("x-amz-date");
+        String date = amzDate.substring(0, 8);
+        String scope = Joiner.on('/').join(date, region, SERVICE, "aws4_request");
+
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header: signed.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        String signedHeaders = Joiner.on(';').join(signed.keySet());
+
+        String canonicalRequest = Joiner.on('\n').join(method,
+                canonicalPath(path),
+                canonicalQuery(query),
+                canonicalHeaders.toString(),
+                signedHeaders,
+                payloadHash);
+        String stringToSign = Joiner.on('\n').join(ALGORITHM, amzDate, scope,
+                Hashing.sha256().hashString(canonicalRequest, StandardCharsets.UTF_8).toString());
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, SERVICE);
+        key = hmac(key, "aws4_request");
+        String signature = BaseEncoding.base16().lowerCase().encode(hmac(key, stringToSign));
+
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope +
+                ",SignedHeaders=" + signedHeaders +
+                ",Signature=" + signature;
+    }
+
+    static String amzDate(Date now) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(now);
+    }
+
+    static String encode(String value, boolean path) {
+        try {
+            String encoded = URLEncoder.encode(value, "UTF-8")
+                    .replace("+", "%20")
+                    .replace("*", "%2A")
+                    .replace("%7E", "~");
+            return path ? encoded.replace("%2F", "/") : encoded;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String canonicalPath(String path) {
+        return StringUtils.isEmpty(path) ? "/" : encode(path, true);
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        SortedMap<String, String> sorted = Maps.newTreeMap();
+        for (Map.Entry<String, String> parameter: query.entrySet()) {
+            sorted.put(encode(parameter.getKey(), false), encode(StringUtils.defaultString(parameter.getValue()), false));
+        }
+        return Joiner.on('&').withKeyValueSeparator("=").join(sorted);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.CountingClassLoader;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import com.itzap.proxy.model.WarmUp;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Training pass for dynamic AppCDS archives. The pass loads the classes of an artifact in a private
+ * loader, records the classes it defined into a class list, and writes the JVM options that dump and
+ * map the archive. The loaders other callers use are left alone.
+ * Classes of custom loaders are archived only when they come from plain jar files, which
+ * holds for the URL loader engine. Mapped and pooled loaders define classes from buffers and
+ * are skipped by the JVM.
+ */
+public final class AppCds {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppCds.class);
+    private static final String CDS_DIR = ".cds";
+    private static final String CLASS_LIST = "classes.lst";
+    private static final String ARCHIVE = "app.jsa";
+    private static final String OPTIONS = "jvm.options";
+
+    // keeps the classes of a command line training run loaded until the JVM dumps the archive on exit
+    private static CountingClassLoader mainLoader;
+
+    private AppCds() {}
+
+    public static File getCdsDir(ArtifactInterface artifact) {
+        File destination = artifact.getDestination(CDS_DIR);
+        return new File(new File(destination, CDS_DIR),
+                ProxyUtils.getPath(artifact.getVersion()));
+    }
+
+    public static Config train(ArtifactInterface artifact, String... classes) throws IOException {
+        CountingClassLoader loader = LibLoader.newTrainingLoader(artifact);
+        try {
+            return train(artifact, loader, classes);
+        } finally {
+            IOUtils.closeQuietly(loader);
+        }
+    }
+
+    private static Config train(ArtifactInterface artifact, CountingClassLoader loader, String... classes)
+            throws IOException {
+        Set<String> training = new LinkedHashSet<>(readClassList(artifact));
+        if (artifact.getWarmUp() != null) {
+            training.addAll(artifact.getWarmUp().getClasses());
+        }
+        training.addAll(Arrays.asList(classes));
+
+        loader.startRecording();
+        for (String className: training) {
+            try {
+                Class.forName(className, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOGGER.info("Training class {} is not available in artifact {}", className, artifact.getName());
+            }
+        }
+        return record(artifact, loader);
+    }
+
+    private static Config record(ArtifactInterface artifact, CountingClassLoader loader) throws IOException {
+        File dir = getCdsDir(artifact);
+        DirUtils.forceMkdir(dir, true);
+        Config config = new Config(dir, loader.getDefinedClassNames(), isSupported(artifact, loader));
+        FileUtils.writeLines(config.getClassList(), StandardCharsets.UTF_8.name(), config.getClasses());
+        FileUtils.writeLines(new File(dir, OPTIONS), StandardCharsets.UTF_8.name(), config.getRuntimeOptions());
+
+        LOGGER.info("Recorded {} classes for artifact {} in {}", config.getClasses().size(),
+                artifact.getName(), config.getClassList().getAbsolutePath());
+        if (!config.isSupported()) {
+            LOGGER.warn("Artifact {} uses loader engine {}. Its classes will not be archived. Use the URL engine",
+                    artifact.getName(), artifact.getLoaderEngine());
+        }
+        return config;
+    }
+
+    public static List<String> readClassList(ArtifactInterface artifact) throws IOException {
+        File classList = new File(getCdsDir(artifact), CLASS_LIST);
+        if (!classList.isFile()) {
+            return ImmutableList.of();
+        }
+
+        List<String> classes = Lists.newArrayList();
+        for (String line: FileUtils.readLines(classList, StandardCharsets.UTF_8)) {
+            if (StringUtils.isNotBlank(line) && !line.startsWith("#")) {
+                classes.add(line.trim());
+            }
+        }
+        return classes;
+    }
+
+    public static WarmUp warmUpFor(ArtifactInterface artifact) throws IOException {
+        return WarmUp.builder()
+                .withClasses(readClassList(artifact))
+                .withInitialize(false)
+                .build();
+    }
+
+    private static boolean isSupported(ArtifactInterface artifact, URLClassLoader loader) {
+        // the artifact runs in its own engine, only the URL engine defines classes from jar files
+        if (artifact.getLoaderEngine() != ArtifactInterface.LoaderEngine.URL) {
+            return false;
+        }
+        for (URL url: loader.getURLs()) {
+            if (!"file".equalsIgnoreCase(url.getProtocol())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Usage: {@code java -XX:ArchiveClassesAtExit=<archive> com.itzap.proxy.utils.AppCds <lib dir> [class ...]}.
+     * The JVM dumps the archive on exit. Later starts pass {@code -XX:SharedArchiveFile=<archive>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AppCds <lib dir> [class ...]");
+            System.exit(1);
+        }
+
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(AppCds.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(new File(args[0]).getAbsoluteFile()))
+                .build();
+        mainLoader = LibLoader.newTrainingLoader(artifact);
+        Config config = train(artifact, mainLoader, Arrays.copyOfRange(args, 1, args.length));
+        System.out.println(Joiner.on(' ').join(config.getRuntimeOptions()));
+    }
+
+    public static class Config {
+        private final File dir;
+        private final List<String> classes;
+        private final boolean supported;
+
+        private Config(File dir, List<String> classes, boolean supported) {
+            this.dir = dir;
+            this.classes = classes;
+            this.supported = supported;
+        }
+
+        public File getClassList() {
+            return new File(dir, CLASS_LIST);
+        }
+
+        public File getArchive() {
+            return new File(dir, ARCHIVE);
+        }
+
+        public List<String> getClasses() {
+            return classes;
+        }
+
+        public boolean isSupported() {
+            return supported;
+        }
+
+        public List<String> getTrainingOptions() {
+            return ImmutableList.of("-XX:ArchiveClassesAtExit=" + getArchive().getAbsolutePath());
+        }
+
+        public List<String> getRuntimeOptions() {
+            return ImmutableList.of("-XX:SharedArchiveFile=" + getArchive().getAbsolutePath());
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("dir", dir.getAbsolutePath())
+                    .add("classes", classes.size())
+                    .add("supported", supported)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.itzap.proxy.loader.SharedJarLoaders;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Byte budget for the local copies that artifact sources keep: extracted jars, S3 downloads and
+ * Maven repository versions. Each entry is one artifact version folder, marked with a
+ * {@code .itzap-cache} file whose modification time is the last use, so entries left by earlier runs
+ * are found again. Files are deleted only in folders whose marker says this cache owns them. Over budget, the files of the least recently used folders are deleted unless an
+ * artifact that owns them is loaded or being loaded, or a shared jar loader reads from them. Folders of
+ * temp artifacts have a budget of their own, on by default, so they never pile up on disk.
+ */
+public final class ArtifactCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+    public static final String MARKER = ".itzap-cache";
+    public static final long DEFAULT_TEMP_MAX_BYTES = 512L * 1024 * 1024;
+    private static final String OWNED = "owned";
+    private static final String TEMP = "temp";
+
+    private static final Map<File, Entry> ENTRIES = Maps.newHashMap();
+    private static final Set<File> SCANNED = Sets.newHashSet();
+    private static final Multiset<String> LOADING = ConcurrentHashMultiset.create();
+
+    private static long maxBytes;
+    private static long tempMaxBytes = DEFAULT_TEMP_MAX_BYTES;
+    private static long clock;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+    private static long evictedBytes;
+
+    private ArtifactCache() {}
+
+    // 0 disables eviction
+    public static void setMaxBytes(long maxBytes) {
+        synchronized (ArtifactCache.class) {
+            ArtifactCache.maxBytes = maxBytes;
+        }
+        trim();
+    }
+
+    // budget of the folders of temp artifacts, counted within the overall one; 0 keeps them
+    public static void setTempMaxBytes(long tempMaxBytes) {
+        synchronized (ArtifactCache.class) {
+            ArtifactCache.tempMaxBytes = tempMaxBytes;
+        }
+        trim();
+    }
+
+    public static void record(String owner, File dir, boolean hit) {
+        record(owner, ImmutableList.of(dir), hit, false);
+    }
+
+    public static void record(String owner, File dir, boolean hit, boolean temp) {
+        record(owner, ImmutableList.of(dir), hit, temp);
+    }
+
+    public static void record(String owner, Collection<File> dirs, boolean hit) {
+        record(owner, dirs, hit, false);
+    }
+
+    // one use of an artifact that lives in the given folders; hit means nothing had to be fetched
+    public static void record(String owner, Collection<File> dirs, boolean hit, boolean temp) {
+        synchronized (ArtifactCache.class) {
+            if (hit) {
+                hits++;
+            } else {
+                misses++;
+            }
+
+            // strictly increasing, so uses within the same millisecond keep their order
+            long now = Math.max(System.currentTimeMillis(), clock + 1);
+            clock = now;
+            for (File dir: dirs) {
+                File key = dir.getAbsoluteFile();
+                if (!key.isDirectory()) {
+                    continue;
+                }
+                discover(key.getParentFile());
+                Entry entry = ENTRIES.get(key);
+                if (entry == null) {
+                    entry = new Entry(key);
+                    ENTRIES.put(key, entry);
+                }
+                entry.owners.add(owner);
+                entry.lastUsed = now;
+                entry.bytes = sizeOfFiles(key);
+                entry.temp |= temp;
+                mark(key, now, entry.temp);
+            }
+        }
+        trim();
+    }
+
+    public static void pin(String owner) {
+        LOADING.add(owner);
+    }
+
+    public static void unpin(String owner) {
+        LOADING.remove(owner);
+    }
+
+    public static boolean isPinned(File dir) {
+        Entry entry;
+        synchronized (ArtifactCache.class) {
+            entry = ENTRIES.get(dir.getAbsoluteFile());
+        }
+        return entry != null && entry.isPinned();
+    }
+
+    public static synchronized void trim() {
+        trim(false, maxBytes);
+        trim(true, tempMaxBytes);
+    }
+
+    private static void trim(boolean tempOnly, long budget) {
+        if (budget <= 0) {
+            return;
+        }
+
+        long total = totalBytes(tempOnly);
+        if (total <= budget) {
+            return;
+        }
+
+        List<Entry> candidates = Lists.newArrayList();
+        for (Entry entry: ENTRIES.values()) {
+            if ((!tempOnly || entry.temp) && !entry.isPinned()) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(e -> e.lastUsed));
+
+        for (Entry entry: candidates) {
+            if (total <= budget) {
+                break;
+            }
+            LOGGER.info("Evicting cached artifact version {} ({} bytes)", entry.dir.getAbsolutePath(), entry.bytes);
+            delete(entry.dir);
+            ENTRIES.remove(entry.dir);
+            total -= entry.bytes;
+            evictions++;
+            evictedBytes += entry.bytes;
+        }
+
+        if (total > budget) {
+            LOGGER.warn("Artifact cache uses {} bytes{}, over the {} byte budget, but the rest is in use",
+                    total, tempOnly ? " for temp artifacts" : "", budget);
+        }
+    }
+
+    public static synchronized Stats getStats() {
+        int pinned = 0;
+        for (Entry entry: ENTRIES.values()) {
+            if (entry.isPinned()) {
+                pinned++;
+            }
+        }
+        return new Stats(ENTRIES.size(), pinned, totalBytes(false), maxBytes, hits, misses, evictions, evictedBytes);
+    }
+
+    // forgets entries and counters, files stay on disk
+    public static synchronized void clear() {
+        ENTRIES.clear();
+        SCANNED.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        evictedBytes = 0;
+    }
+
+    private static long totalBytes(boolean tempOnly) {
+        long total = 0;
+        for (Entry entry: ENTRIES.values()) {
+            if (!tempOnly || entry.temp) {
+                total += entry.bytes;
+            }
+        }
+        return total;
+    }
+
+    // only files directly in the folder belong to the entry, nested folders are left alone
+    private static long sizeOfFiles(File dir) {
+        long bytes = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                if (file.isFile()) {
+                    bytes += file.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void delete(File dir) {
+        if (!isOwned(new File(dir, MARKER))) {
+            LOGGER.warn("Kept {}, its marker does not mark it as a cache folder", dir.getAbsolutePath());
+            return;
+        }
+
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                if (file.isFile()) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+        if (!dir.delete()) {
+            LOGGER.debug("Kept {}, it still has nested folders", dir.getAbsolutePath());
+        }
+        DirUtils.invalidate(dir);
+    }
+
+    // sibling versions from earlier runs carry the marker file
+    private static void discover(File parent) {
+        if (parent == null || !SCANNED.add(parent)) {
+            return;
+        }
+
+        File[] versions = parent.listFiles();
+        if (versions == null) {
+            return;
+        }
+        for (File version: versions) {
+            File marker = new File(version, MARKER);
+            // markers of older releases were also left in lib folders, only owned folders are tracked
+            if (!ENTRIES.containsKey(version) && isOwned(marker)) {
+                Entry entry = new Entry(version);
+                entry.lastUsed = marker.lastModified();
+                entry.bytes = sizeOfFiles(version);
+                entry.temp = readMarker(marker).contains(TEMP);
+                ENTRIES.put(version, entry);
+            }
+        }
+    }
+
+    // a temp folder says so in its marker, so a later run keeps it within the temp budget
+    private static void mark(File dir, long now, boolean temp) {
+        File marker = new File(dir, MARKER);
+        String text = temp ? OWNED + " " + TEMP : OWNED;
+        try {
+            if (!text.equals(readMarker(marker))) {
+                FileUtils.write(marker, text, StandardCharsets.UTF_8);
+            }
+            if (!marker.setLastModified(now)) {
+                LOGGER.debug("Failed to touch {}", marker.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to create {}", marker.getAbsolutePath(), e);
+        }
+    }
+
+    private static boolean isOwned(File marker) {
+        return readMarker(marker).startsWith(OWNED);
+    }
+
+    private static String readMarker(File marker) {
+        if (!marker.isFile()) {
+            return StringUtils.EMPTY;
+        }
+        try {
+            return FileUtils.readFileToString(marker, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return StringUtils.EMPTY;
+        }
+    }
+
+    private static class Entry {
+        private final File dir;
+        private final Set<String> owners = Sets.newHashSet();
+        private long lastUsed;
+        private long bytes;
+        private boolean temp;
+
+        private Entry(File dir) {
+            this.dir = dir;
+        }
+
+        private boolean isPinned() {
+            for (String owner: owners) {
+                if (LOADING.contains(owner) || LibLoader.containsLoader(owner) || LibLoader.isRetired(owner)) {
+                    return true;
+                }
+            }
+            return SharedJarLoaders.isInUse(dir);
+        }
+    }
+
+    public static class Stats {
+        private final int entries;
+        private final int pinned;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long evictedBytes;
+
+        private Stats(int entries, int pinned, long bytes, long maxBytes,
+                      long hits, long misses, long evictions, long evictedBytes) {
+            this.entries = entries;
+            this.pinned = pinned;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.evictedBytes = evictedBytes;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public int getPinned() {
+            return pinned;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("entries", entries)
+                    .add("pinned", pinned)
+                    .add("bytes", bytes)
+                    .add("maxBytes", maxBytes)
+                    .add("hits", hits)
+                    .add("misses", misses)
+                    .add("evictions", evictions)
+                    .add("evictedBytes", evictedBytes)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Set;
+
+/**
+ * Compiled form of the artifact path filter. Keeps a path that contains {@code root/lib} and has
+ * one of the extensions, or that contains {@code root/runtime/}. Needles are normalized and
+ * lower cased once, and paths are scanned in place without copying.
+ */
+public class ArtifactFilter implements Predicate<String> {
+    private final char[] libPath;
+    private final char[] runtimePath;
+    private final String[] extensions;
+
+    private ArtifactFilter(String libPath, String runtimePath, Set<String> extensions) {
+        this.libPath = normalize(libPath);
+        this.runtimePath = normalize(runtimePath);
+        this.extensions = ImmutableSet.copyOf(extensions).toArray(new String[0]);
+    }
+
+    public static ArtifactFilter compile(String root, String lib, Set<String> extensions) {
+        String libPath = Joiner.on('/').skipNulls().join(root, lib);
+        String runtimePath = StringUtils.isBlank(root) ? "runtime/" : root + "/runtime/";
+        return new ArtifactFilter(libPath, runtimePath,
+                extensions == null ? ImmutableSet.<String>of() : extensions);
+    }
+
+    @Override
+    public boolean apply(String input) {
+        if (input == null) {
+            return false;
+        }
+        return (hasExtension(input) && contains(input, libPath)) || contains(input, runtimePath);
+    }
+
+    private boolean hasExtension(String input) {
+        int dot = input.lastIndexOf('.');
+        int separator = Math.max(input.lastIndexOf('/'), input.lastIndexOf('\\'));
+        int start = dot > separator ? dot + 1 : input.length();
+        int length = input.length() - start;
+        for (String extension: extensions) {
+            if (extension.length() == length && input.regionMatches(start, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(String input, char[] needle) {
+        int last = input.length() - needle.length;
+        if (needle.length == 0) {
+            return true;
+        }
+
+        char first = needle[0];
+        for (int i = 0; i <= last; i++) {
+            if (normalize(input.charAt(i)) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && normalize(input.charAt(i + j)) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char[] normalize(String value) {
+        char[] chars = FilenameUtils.separatorsToUnix(value).toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = normalize(chars[i]);
+        }
+        return chars;
+    }
+
+    private static char normalize(char c) {
+        if (c == '\\') {
+            return '/';
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("libPath", new String(libPath))
+                .add("runtimePath", new String(runtimePath))
+                .add("extensions", Joiner.on(',').join(extensions))
+                .toString();
+    }
+}
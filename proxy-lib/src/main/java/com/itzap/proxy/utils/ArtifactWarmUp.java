@@ -0,0 +1,235 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.MethodDesriptor;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.metrics.StartupTimeline;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.WarmUp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preloads classes and replays training calls for new artifact class loaders on the background pool.
+ * Tasks never block on each other, so a bounded pool cannot starve itself.
+ */
+public final class ArtifactWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactWarmUp.class);
+    private static final Map<String, ListenableFuture<Report>> WARM_UPS = Maps.newConcurrentMap();
+    private static final ThreadLocal<Boolean> REPLAYING = new ThreadLocal<>();
+
+    private ArtifactWarmUp() {}
+
+    public static ListenableFuture<Report> start(final ArtifactInterface artifact, final ClassLoader loader) {
+        final WarmUp warmUp = artifact.getWarmUp();
+        if (warmUp == null || warmUp.isEmpty()) {
+            return Futures.immediateFuture(new Report(artifact.getName()));
+        }
+
+        final Report report = new Report(artifact.getName());
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final StartupTimeline timeline = StartupTimeline.get(artifact.getName());
+        final long start = System.nanoTime();
+        LOGGER.info("Warming up artifact {} with {}", artifact.getName(), warmUp);
+
+        List<ListenableFuture<?>> batches = Lists.newArrayList();
+        for (final List<String> batch: Lists.partition(warmUp.getClasses(), batchSize(warmUp.getClasses().size()))) {
+            batches.add(ProxyExecutors.background().submit(
+                    () -> loadClasses(batch, warmUp.isInitialize(), loader, report)));
+        }
+
+        ListenableFuture<Report> future = Futures.transform(Futures.successfulAsList(batches),
+                (List<Object> ignored) -> {
+                    replayCalls(artifact, warmUp, report);
+                    report.elapsedMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+                    if (timeline != null) {
+                        timeline.record(StartupTimeline.Phase.WARM_UP, start, report.getLoadedClasses(), 0,
+                                report.getCalls() + " calls");
+                    }
+                    LOGGER.info("Artifact {} is warm: {}", artifact.getName(), report);
+                    return report;
+                }, ProxyExecutors.background());
+        WARM_UPS.put(artifact.getName(), future);
+        return future;
+    }
+
+    public static ListenableFuture<Report> getFuture(String artifact) {
+        ListenableFuture<Report> future = WARM_UPS.get(artifact);
+        return future == null ? Futures.immediateFuture(new Report(artifact)) : future;
+    }
+
+    public static boolean await(String artifact, long timeout, TimeUnit unit) throws InterruptedException {
+        ListenableFuture<Report> future = WARM_UPS.get(artifact);
+        if (future == null) {
+            return true;
+        }
+
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.warn("Warm up of artifact {} failed", artifact, e.getCause());
+            return true;
+        }
+    }
+
+    public static boolean awaitAll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (String artifact: WARM_UPS.keySet()) {
+            long left = deadline - System.nanoTime();
+            if (!await(artifact, Math.max(left, 0), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isReady() {
+        for (ListenableFuture<Report> future: WARM_UPS.values()) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Map<String, Report> getReport() {
+        Map<String, Report> result = Maps.newLinkedHashMap();
+        for (Map.Entry<String, ListenableFuture<Report>> entry: WARM_UPS.entrySet()) {
+            if (entry.getValue().isDone() && !entry.getValue().isCancelled()) {
+                try {
+                    result.put(entry.getKey(), Futures.getDone(entry.getValue()));
+                } catch (ExecutionException e) {
+                    LOGGER.debug("Warm up of artifact {} failed", entry.getKey(), e.getCause());
+                }
+            }
+        }
+        return ImmutableMap.copyOf(result);
+    }
+
+    /**
+     * Whether the current thread replays warm-up calls. Those calls are not real traffic and are kept
+     * out of metrics, accounting, traces and the first call of the startup timeline.
+     */
+    public static boolean isReplaying() {
+        return REPLAYING.get() != null;
+    }
+
+    static void forget(String artifact) {
+        ListenableFuture<Report> future = WARM_UPS.remove(artifact);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    static void clear() {
+        for (String artifact: WARM_UPS.keySet()) {
+            forget(artifact);
+        }
+    }
+
+    private static int batchSize(int classes) {
+        return Math.max(1, (classes + ProxyExecutors.backgroundThreads() - 1) / ProxyExecutors.backgroundThreads());
+    }
+
+    private static void loadClasses(List<String> classes, boolean initialize, ClassLoader loader, Report report) {
+        for (String className: classes) {
+            try {
+                Class.forName(className, initialize, loader);
+                report.loadedClasses.incrementAndGet();
+            } catch (Throwable e) {
+                report.failedClasses.incrementAndGet();
+                LOGGER.warn("Failed to preload class {}", className, e);
+            }
+        }
+    }
+
+    private static void replayCalls(ArtifactInterface artifact, WarmUp warmUp, Report report) {
+        REPLAYING.set(Boolean.TRUE);
+        try {
+            replay(artifact, warmUp, report);
+        } finally {
+            REPLAYING.remove();
+        }
+    }
+
+    private static void replay(ArtifactInterface artifact, WarmUp warmUp, Report report) {
+        for (WarmUp.Call call: warmUp.getCalls()) {
+            try {
+                ObjectBuilder.builder()
+                        .setArtifact(artifact)
+                        .setClassName(call.getClassName())
+                        .setDescriptors(Lists.<MethodDesriptor>newArrayList(call.getDescriptors()))
+                        .build();
+                report.calls.incrementAndGet();
+            } catch (Exception e) {
+                report.failedCalls.incrementAndGet();
+                LOGGER.warn("Training call on {} failed", call.getClassName(), e);
+            }
+        }
+    }
+
+    public static class Report {
+        private final String artifact;
+        private final AtomicInteger loadedClasses = new AtomicInteger();
+        private final AtomicInteger failedClasses = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+        private volatile long elapsedMillis;
+
+        private Report(String artifact) {
+            this.artifact = artifact;
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public int getLoadedClasses() {
+            return loadedClasses.get();
+        }
+
+        public int getFailedClasses() {
+            return failedClasses.get();
+        }
+
+        public int getCalls() {
+            return calls.get();
+        }
+
+        public int getFailedCalls() {
+            return failedCalls.get();
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("artifact", artifact)
+                    .add("loadedClasses", loadedClasses.get())
+                    .add("failedClasses", failedClasses.get())
+                    .add("calls", calls.get())
+                    .add("failedCalls", failedCalls.get())
+                    .add("elapsedMillis", elapsedMillis)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SHA-256 of files, read through memory-mapped chunks. Digests are remembered by path, size and
+ * modification time, so a file is hashed again only after it changes.
+ */
+public final class Digests {
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final ConcurrentMap<String, Digest> CACHE = Maps.newConcurrentMap();
+    private static final AtomicLong HASHED = new AtomicLong();
+
+    private Digests() {}
+
+    public static String sha256(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long modified = Files.getLastModifiedTime(file.toPath()).toMillis();
+
+        Digest cached = CACHE.get(path);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached.sha256;
+        }
+
+        String sha256 = mappedSha256(file);
+        CACHE.put(path, new Digest(size, modified, sha256));
+        return sha256;
+    }
+
+    public static String mappedSha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(CHUNK_SIZE, size - position));
+                digest.update(buffer);
+            }
+        }
+        HASHED.incrementAndGet();
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    // seeds the cache with digests persisted by an earlier run, "size|mtime|sha256" by absolute path
+    public static void remember(Map<String, String> digests) {
+        for (Map.Entry<String, String> entry: digests.entrySet()) {
+            Digest digest = Digest.parse(entry.getValue());
+            if (digest != null) {
+                CACHE.putIfAbsent(entry.getKey(), digest);
+            }
+        }
+    }
+
+    public static String cached(File file) {
+        Digest digest = CACHE.get(file.getAbsolutePath());
+        return digest == null ? null : digest.toString();
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    static long hashed() {
+        return HASHED.get();
+    }
+
+    private static class Digest {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        private Digest(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+
+        private static Digest parse(String value) {
+            String[] parts = value.split("\\|");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new Digest(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + "|" + modified + "|" + sha256;
+        }
+    }
+}
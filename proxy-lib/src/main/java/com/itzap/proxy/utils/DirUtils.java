@@ -1,8 +1,7 @@
 package com.itzap.proxy.utils;
 
-import com.google.common.base.Splitter;
-import com.google.common.collect.FluentIterable;
-import com.google.common.collect.Maps;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -12,13 +11,28 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
 
 public final class DirUtils {
-    private static final Pattern VERSION_SPLITTER = Pattern.compile("\\.|\\-");
     private static final Logger LOGGER = LoggerFactory.getLogger(DirUtils.class);
-    private static final Map<String, Boolean> DIR_CACHE = Maps.newConcurrentMap();
+    private static final int MAX_CACHED = 4096;
+    private static final long UNWATCHED_TTL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int VERSION_PARTS = 3;
+    private static final Cache<Path, Metadata> DIR_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED)
+            .build();
+    private static final DirWatcher.Listener INVALIDATE = (dir, child) -> {
+        if (child != null) {
+            DIR_CACHE.invalidate(child);
+        } else {
+            invalidateChildren(dir);
+        }
+    };
 
     public static final File[] EMPTY_FILE_LIST = new File[0];
 
@@ -30,10 +44,12 @@ public final class DirUtils {
         } else {
             FileUtils.forceMkdir(file.getParentFile());
         }
+        invalidate(file);
     }
 
     public static void forceMkdir(File file, boolean force) throws IOException {
         FileUtils.forceMkdir(file);
+        invalidate(file);
     }
 
     public static boolean isDirectory(File file) {
@@ -41,44 +57,127 @@ public final class DirUtils {
             return false;
         }
 
-        if (DIR_CACHE.containsKey(file.getAbsolutePath())) {
-            return DIR_CACHE.get(file.getAbsolutePath());
+        Path path;
+        try {
+            path = file.toPath().toAbsolutePath();
+        } catch (InvalidPathException e) {
+            return looksLikeDirectory(file.getName());
+        }
+
+        Metadata metadata = DIR_CACHE.getIfPresent(path);
+        if (metadata == null || !metadata.isFresh()) {
+            metadata = readMetadata(path);
+        }
+        if (metadata.exists) {
+            return metadata.directory;
+        }
+
+        // not created yet, so guess from the name and do not cache the guess
+        return looksLikeDirectory(file.getName());
+    }
+
+    public static boolean isDirectory(String file) {
+        if (file == null) {
+            return false;
+        }
+
+        return isDirectory(new File(file));
+    }
+
+    public static void invalidate(File file) {
+        if (file != null) {
+            DIR_CACHE.invalidate(file.toPath().toAbsolutePath());
         }
+    }
 
-        if (file.exists()) {
-            DIR_CACHE.put(file.getAbsolutePath(), file.isDirectory());
-            return file.isDirectory();
+    public static void clearCache() {
+        DIR_CACHE.invalidateAll();
+    }
+
+    public static long getCacheSize() {
+        return DIR_CACHE.size();
+    }
+
+    static boolean isVersion(String name) {
+        // same as splitting on '.' or '-' and checking that the first three parts are digits
+        int parts = 0;
+        int length = 0;
+        for (int i = 0; i < name.length() && parts < VERSION_PARTS; i++) {
+            char c = name.charAt(i);
+            if (c == '.' || c == '-') {
+                if (length == 0) {
+                    return false;
+                }
+                parts++;
+                length = 0;
+            } else if (c >= '0' && c <= '9') {
+                length++;
+            } else {
+                return false;
+            }
         }
+        return parts == VERSION_PARTS || length > 0;
+    }
 
-        boolean isVersion = FluentIterable.from(Splitter.on(VERSION_SPLITTER)
-                .split(file.getName()))
-                .limit(3)
-                .allMatch(input -> NumberUtils.isDigits(input));
-        if (isVersion) {
-            DIR_CACHE.put(file.getAbsolutePath(), true);
+    private static boolean looksLikeDirectory(String name) {
+        if (isVersion(name)) {
             return true;
         }
 
-        if (StringUtils.isBlank(FilenameUtils.getBaseName(file.getName()))) {
+        if (StringUtils.isBlank(FilenameUtils.getBaseName(name))) {
             // special folders that starts with period like .ssh
-            DIR_CACHE.put(file.getAbsolutePath(), true);
             return true;
         }
 
-        DIR_CACHE.put(file.getAbsolutePath(), FilenameUtils.getExtension(file.getName()).isEmpty());
-        return DIR_CACHE.get(file.getAbsolutePath());
+        return FilenameUtils.getExtension(name).isEmpty();
     }
 
-    public static boolean isDirectory(String file) {
-        if (file == null) {
-            return false;
+    private static Metadata readMetadata(Path path) {
+        // watch before reading, so a change right after the read is not missed
+        boolean watched = watch(path);
+        Metadata metadata;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            metadata = new Metadata(true, attributes.isDirectory(), watched);
+        } catch (NoSuchFileException e) {
+            metadata = new Metadata(false, false, watched);
+        } catch (IOException | SecurityException e) {
+            LOGGER.debug("Failed to read attributes of {}", path, e);
+            return new Metadata(false, false, false);
+        }
+
+        DIR_CACHE.put(path, metadata);
+        return metadata;
+    }
+
+    private static boolean watch(Path path) {
+        Path parent = path.getParent();
+        return parent != null && DirWatcher.get().watch(parent, INVALIDATE);
+    }
+
+    private static void invalidateChildren(Path dir) {
+        for (Path path: DIR_CACHE.asMap().keySet()) {
+            if (dir.equals(path.getParent())) {
+                DIR_CACHE.invalidate(path);
+            }
         }
+    }
+
+    private static class Metadata {
+        private final boolean exists;
+        private final boolean directory;
+        private final boolean watched;
+        private final long readAt = System.nanoTime();
 
-        if (DIR_CACHE.containsKey(file)) {
-            return DIR_CACHE.get(file);
+        private Metadata(boolean exists, boolean directory, boolean watched) {
+            this.exists = exists;
+            this.directory = directory;
+            this.watched = watched;
         }
 
-        return isDirectory(new File(file));
+        private boolean isFresh() {
+            return watched || System.nanoTime() - readAt < UNWATCHED_TTL_NANOS;
+        }
     }
 
     public static String getVersion(String path) {
@@ -0,0 +1,200 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared watch service for directories the loader depends on. The number of watched directories
+ * is bounded. The least recently registered directory is dropped first, and its listeners are told
+ * that anything under it may have changed.
+ */
+public final class DirWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirWatcher.class);
+    private static final int DEFAULT_MAX_WATCHED = 256;
+    private static final DirWatcher INSTANCE = new DirWatcher();
+
+    public interface Listener {
+        // child is null when events were lost or the directory is no longer watched
+        void changed(Path dir, Path child);
+    }
+
+    private final WatchService service;
+    private final Map<Path, Registration> registrations;
+    private volatile int maxWatched = DEFAULT_MAX_WATCHED;
+    private Thread thread;
+
+    private DirWatcher() {
+        this.service = newWatchService();
+        this.registrations = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static DirWatcher get() {
+        return INSTANCE;
+    }
+
+    public boolean isAvailable() {
+        return service != null;
+    }
+
+    public void setMaxWatched(int maxWatched) {
+        this.maxWatched = maxWatched;
+        dropEldest();
+    }
+
+    public boolean watch(Path dir, Listener listener) {
+        if (service == null) {
+            return false;
+        }
+
+        Path key = dir.toAbsolutePath();
+        synchronized (registrations) {
+            Registration registration = registrations.get(key);
+            if (registration == null) {
+                try {
+                    registration = new Registration(key, key.register(service,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.debug("Cannot watch directory {}", key, e);
+                    return false;
+                }
+                registrations.put(key, registration);
+                start();
+            }
+            if (!registration.listeners.contains(listener)) {
+                registration.listeners.add(listener);
+            }
+        }
+        dropEldest();
+        return true;
+    }
+
+    public boolean isWatched(Path dir) {
+        synchronized (registrations) {
+            return registrations.containsKey(dir.toAbsolutePath());
+        }
+    }
+
+    public void unwatch(Path dir, Listener listener) {
+        Path key = dir.toAbsolutePath();
+        synchronized (registrations) {
+            Registration registration = registrations.get(key);
+            if (registration != null) {
+                registration.listeners.remove(listener);
+                if (registration.listeners.isEmpty()) {
+                    registrations.remove(key);
+                    registration.key.cancel();
+                }
+            }
+        }
+    }
+
+    private void dropEldest() {
+        List<Registration> dropped = Lists.newArrayList();
+        synchronized (registrations) {
+            while (registrations.size() > Math.max(maxWatched, 0)) {
+                Map.Entry<Path, Registration> eldest = registrations.entrySet().iterator().next();
+                registrations.remove(eldest.getKey());
+                eldest.getValue().key.cancel();
+                dropped.add(eldest.getValue());
+            }
+        }
+        for (Registration registration: dropped) {
+            registration.notify(null);
+        }
+    }
+
+    private synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        thread = new ThreadFactoryBuilder()
+                .setNameFormat("itzap-proxy-dir-watcher")
+                .setDaemon(true)
+                .build()
+                .newThread(this::poll);
+        thread.start();
+    }
+
+    private void poll() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = (Path) key.watchable();
+            Registration registration;
+            synchronized (registrations) {
+                registration = registrations.get(dir);
+            }
+
+            for (WatchEvent<?> event: key.pollEvents()) {
+                if (registration == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    registration.notify(null);
+                } else {
+                    registration.notify(dir.resolve((Path) event.context()));
+                }
+            }
+
+            if (!key.reset() && registration != null) {
+                synchronized (registrations) {
+                    registrations.remove(dir);
+                }
+                registration.notify(null);
+            }
+        }
+    }
+
+    private static WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.info("Watch service is not available. File metadata is refreshed by time only");
+            return null;
+        }
+    }
+
+    private static class Registration {
+        private final Path dir;
+        private final WatchKey key;
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        private Registration(Path dir, WatchKey key) {
+            this.dir = dir;
+            this.key = key;
+        }
+
+        private void notify(Path child) {
+            for (Listener listener: listeners) {
+                try {
+                    listener.changed(dir, child);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Directory listener failed for {}", dir, e);
+                }
+            }
+        }
+    }
+}
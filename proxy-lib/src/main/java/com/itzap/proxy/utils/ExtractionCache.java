@@ -0,0 +1,161 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Striped;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Content addressed cache of jars extracted from the running jar. File names carry the entry
+ * CRC and size, files are written to a temp file and renamed, and a lock file coordinates
+ * JVMs that share the cache directory. Each version extracts into
+ * {@code <destination>/.extracted/<label>/<version>/}, never into the destination itself, which is
+ * often the lib folder.
+ */
+public final class ExtractionCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtractionCache.class);
+    private static final String EXTRACTED_DIR = ".extracted";
+    private static final String LOCK_FILE = ".lock";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Striped<Lock> DIR_LOCKS = Striped.lock(32);
+
+    private ExtractionCache() {}
+
+    public static File getDir(ArtifactInterface artifact, String from) {
+        return new File(new File(artifact.getDestination(from), EXTRACTED_DIR),
+                ProxyUtils.getPath(artifact.getVersion()));
+    }
+
+    public static String cacheName(JarEntry entry) {
+        String name = FilenameUtils.getName(entry.getName());
+        if (entry.getCrc() == -1 || entry.getSize() == -1) {
+            return name;
+        }
+
+        return String.format("%s-%08x-%d.%s", FilenameUtils.getBaseName(name),
+                entry.getCrc(), entry.getSize(), FilenameUtils.getExtension(name));
+    }
+
+    public static boolean isCached(File file, JarEntry entry) {
+        // crc is part of the name, so a matching length is enough to trust the file
+        return file.isFile() && (entry.getSize() == -1 || file.length() == entry.getSize());
+    }
+
+    public static void extract(JarFile jar, File dir, Map<JarEntry, File> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Lock lock = DIR_LOCKS.get(dir.getAbsoluteFile());
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to extract libs into " + dir.getAbsolutePath());
+        }
+        List<ListenableFuture<File>> futures = Lists.newArrayListWithCapacity(entries.size());
+        try (FileChannel channel = FileChannel.open(new File(dir, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock fileLock = channel.lock();
+            try {
+                deleteTempFiles(dir);
+
+                for (Map.Entry<JarEntry, File> entry: entries.entrySet()) {
+                    if (isCached(entry.getValue(), entry.getKey())) {
+                        LOGGER.info("Lib {} was extracted by another process", entry.getValue().getAbsolutePath());
+                        continue;
+                    }
+                    futures.add(ProxyExecutors.io().submit(() -> extract(jar, entry.getKey(), entry.getValue())));
+                }
+
+                Futures.allAsList(futures).get();
+            } finally {
+                fileLock.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // queued entries are skipped, running ones still rename a complete file into place
+            for (ListenableFuture<File> future: futures) {
+                future.cancel(false);
+            }
+            throw new IOException("Interrupted while extracting libs into " + dir.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to extract libs into " + dir.getAbsolutePath(), e.getCause());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static File extract(JarFile jar, JarEntry entry, File target) throws IOException {
+        LOGGER.info("Extracting lib {}", target.getAbsolutePath());
+
+        File temp = new File(target.getParentFile(), target.getName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            CRC32 crc = new CRC32();
+            try (InputStream in = new CheckedInputStream(jar.getInputStream(entry), crc);
+                 OutputStream out = new FileOutputStream(temp)) {
+                IOUtils.copyLarge(in, out);
+            }
+
+            if (entry.getCrc() != -1 && crc.getValue() != entry.getCrc()) {
+                throw new IOException(String.format("CRC mismatch extracting %s", entry.getName()));
+            }
+            move(temp, target);
+            return target;
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTempFiles(File dir) {
+        // only lock holders write temp files, anything left over is from a crashed run
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file: files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                LOGGER.info("Deleting partial lib {}", file.getAbsolutePath());
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+}
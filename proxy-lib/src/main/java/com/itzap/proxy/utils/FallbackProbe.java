@@ -0,0 +1,173 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.metrics.StartupTimeline;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves an artifact through its fallback chain. Candidates can be probed concurrently, and the
+ * first one in chain order that resolves wins. Candidates that resolved to nothing can be skipped
+ * for a while.
+ */
+public final class FallbackProbe {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FallbackProbe.class);
+
+    private static volatile boolean parallel;
+    private static volatile long negativeTtlMillis;
+    private static volatile Cache<String, Boolean> missing = newMissingCache(0);
+
+    private FallbackProbe() {}
+
+    public static void setParallel(boolean parallel) {
+        FallbackProbe.parallel = parallel;
+    }
+
+    public static void setNegativeTtl(long ttl, TimeUnit unit) {
+        negativeTtlMillis = unit.toMillis(ttl);
+        missing = newMissingCache(negativeTtlMillis);
+    }
+
+    public static void clear() {
+        missing.invalidateAll();
+    }
+
+    public static boolean isMissing(ArtifactInterface artifact) {
+        return missing.getIfPresent(artifact.getName()) != null;
+    }
+
+    public static List<URL> load(ArtifactInterface artifact) {
+        long start = System.nanoTime();
+        List<URL> urls = probeChain(artifact);
+        StartupTimeline timeline = StartupTimeline.current();
+        if (timeline != null) {
+            timeline.record(StartupTimeline.Phase.FALLBACK_PROBE, start, urls.size(), 0,
+                    "candidates=" + chain(artifact).size() + (parallel ? ", parallel" : ""));
+        }
+        return urls;
+    }
+
+    private static List<URL> probeChain(ArtifactInterface artifact) {
+        List<ArtifactInterface> chain = chain(artifact);
+        List<ArtifactInterface> candidates = Lists.newArrayListWithCapacity(chain.size());
+        for (ArtifactInterface candidate: chain) {
+            if (isMissing(candidate)) {
+                LOGGER.debug("Skipping {}. It was missing within the last {} ms", candidate.getName(), negativeTtlMillis);
+            } else {
+                candidates.add(candidate);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        // a background thread must not wait on other background tasks
+        if (!parallel || candidates.size() == 1 || ProxyExecutors.isBackgroundThread()) {
+            return loadInOrder(candidates);
+        }
+        return loadConcurrently(candidates);
+    }
+
+    private static List<URL> loadInOrder(List<ArtifactInterface> candidates) {
+        for (int i = 0; i < candidates.size(); i++) {
+            ArtifactInterface candidate = candidates.get(i);
+            if (i > 0) {
+                LOGGER.info("Fallback to {}", candidate);
+            }
+            List<URL> urls = probe(candidate, null);
+            if (!urls.isEmpty()) {
+                return urls;
+            }
+        }
+        return ImmutableList.of();
+    }
+
+    private static List<URL> loadConcurrently(List<ArtifactInterface> candidates) {
+        List<ListenableFuture<List<URL>>> probes = Lists.newArrayListWithCapacity(candidates.size());
+        AtomicBoolean settled = new AtomicBoolean();
+        for (ArtifactInterface candidate: candidates) {
+            probes.add(ProxyExecutors.background().submit(StartupTimeline.propagate(() -> probe(candidate, settled))));
+        }
+
+        try {
+            for (int i = 0; i < probes.size(); i++) {
+                List<URL> urls = getQuietly(candidates.get(i), probes.get(i));
+                if (!urls.isEmpty()) {
+                    if (i > 0) {
+                        LOGGER.info("Fallback to {}", candidates.get(i));
+                    }
+                    return urls;
+                }
+            }
+            return ImmutableList.of();
+        } finally {
+            // losing probes are interrupted, settled keeps them from marking a healthy candidate missing
+            settled.set(true);
+            for (ListenableFuture<List<URL>> probe: probes) {
+                probe.cancel(true);
+            }
+        }
+    }
+
+    private static List<URL> getQuietly(ArtifactInterface candidate, ListenableFuture<List<URL>> probe) {
+        try {
+            return probe.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ImmutableList.of();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Failed to probe artifact {}", candidate.getName(), e.getCause());
+            return ImmutableList.of();
+        }
+    }
+
+    private static List<URL> probe(ArtifactInterface candidate, AtomicBoolean settled) {
+        List<URL> urls;
+        try {
+            urls = candidate.load();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to load artifact {}", candidate.getName(), e);
+            urls = null;
+        }
+
+        if (urls == null || urls.isEmpty()) {
+            boolean abandoned = Thread.currentThread().isInterrupted() || (settled != null && settled.get());
+            if (negativeTtlMillis > 0 && !abandoned) {
+                missing.put(candidate.getName(), Boolean.TRUE);
+            }
+            return ImmutableList.of();
+        }
+        return urls;
+    }
+
+    private static List<ArtifactInterface> chain(ArtifactInterface artifact) {
+        List<ArtifactInterface> chain = Lists.newArrayList();
+        Set<String> seen = Sets.newHashSet();
+        ArtifactInterface current = artifact;
+        while (current != null && seen.add(current.getName())) {
+            chain.add(current);
+            current = current.hasFallback() ? current.getFallback() : null;
+        }
+        return chain;
+    }
+
+    private static Cache<String, Boolean> newMissingCache(long ttlMillis) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(ttlMillis, 1), TimeUnit.MILLISECONDS)
+                .maximumSize(1024)
+                .build();
+    }
+}
@@ -0,0 +1,248 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Repacks artifact jars into a single uncompressed archive with entries sorted by name.
+ * The archive name is a hash of the path, size and modification time of the source jars, so it
+ * is rebuilt only when one of them changes. Archives are written under a cache directory outside
+ * the lib folders, by default {@code itzap-proxy/fastjar} in the system temp directory.
+ */
+public final class FastJar {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastJar.class);
+    private static final File DEFAULT_DIRECTORY = new File(System.getProperty("java.io.tmpdir"),
+            "itzap-proxy" + File.separator + "fastjar");
+    private static final String SERVICES = "META-INF/services/";
+    private static final String INDEX_LIST = "META-INF/INDEX.LIST";
+
+    private static volatile File directory = DEFAULT_DIRECTORY;
+
+    private FastJar() {}
+
+    // null restores the default
+    public static void setDirectory(File directory) {
+        FastJar.directory = directory == null ? DEFAULT_DIRECTORY : directory;
+    }
+
+    public static File getDirectory() {
+        return directory;
+    }
+
+    public static List<URL> repack(ArtifactInterface artifact, List<URL> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return urls;
+        }
+
+        List<File> jars = Lists.newArrayListWithCapacity(urls.size());
+        for (URL url: urls) {
+            if (!"file".equalsIgnoreCase(url.getProtocol()) ||
+                    !"jar".equalsIgnoreCase(FilenameUtils.getExtension(url.getPath()))) {
+                LOGGER.info("Artifact {} has non jar URL {}. Skipping fast jar", artifact.getName(), url);
+                return urls;
+            }
+            jars.add(FileUtils.toFile(url));
+        }
+
+        try {
+            File dir = getFastJarDir(artifact);
+            File fastJar = new File(dir, contentHash(jars) + ".jar");
+            List<URL> built = ImmutableList.of(fastJar.toURI().toURL());
+            // a fast jar is loaded without its own expected digest, so an unknown one is rebuilt
+            if (!fastJar.isFile() || !JarIntegrity.isTrusted(artifact, built)) {
+                DirUtils.forceMkdir(dir, true);
+                write(jars, fastJar);
+                JarIntegrity.trust(artifact, fastJar);
+                deleteStale(dir, fastJar);
+            } else {
+                LOGGER.debug("Fast jar {} is up to date", fastJar.getAbsolutePath());
+            }
+
+            return built;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to repack artifact {}. Loading original jars", artifact, e);
+            return urls;
+        }
+    }
+
+    public static File getFastJarDir(ArtifactInterface artifact) {
+        // artifacts with the same label and version may live in different folders
+        String id = Hashing.sha256().hashString(artifact.toPath().getAbsolutePath(), StandardCharsets.UTF_8)
+                .toString().substring(0, 16);
+        return new File(new File(directory, ProxyUtils.getPath(artifact.getVersion())), id);
+    }
+
+    // the same key the digest cache uses, so a resolve does not read the jars
+    static String contentHash(List<File> jars) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (File jar: jars) {
+            hasher.putString(jar.getAbsolutePath(), StandardCharsets.UTF_8)
+                    .putLong(jar.length())
+                    .putLong(Files.getLastModifiedTime(jar.toPath()).toMillis());
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void write(List<File> jars, File fastJar) throws IOException {
+        List<JarFile> opened = Lists.newArrayListWithCapacity(jars.size());
+        File temp = new File(fastJar.getParentFile(), fastJar.getName() + ".tmp" + System.nanoTime());
+        try {
+            // first jar wins, the same way the class path is searched
+            SortedMap<String, JarEntryRef> entries = new TreeMap<>();
+            Map<String, List<JarEntryRef>> services = Maps.newHashMap();
+            for (File jar: jars) {
+                JarFile jarFile = new JarFile(jar, false);
+                opened.add(jarFile);
+                for (JarEntry entry: Collections.list(jarFile.entries())) {
+                    String name = entry.getName();
+                    if (isSignature(name) || INDEX_LIST.equals(name)) {
+                        continue;
+                    }
+
+                    JarEntryRef ref = new JarEntryRef(jarFile, entry);
+                    if (name.startsWith(SERVICES) && !entry.isDirectory()) {
+                        if (!services.containsKey(name)) {
+                            services.put(name, Lists.<JarEntryRef>newArrayList());
+                        }
+                        services.get(name).add(ref);
+                    }
+                    if (!entries.containsKey(name)) {
+                        entries.put(name, ref);
+                    }
+                }
+            }
+
+            LOGGER.info("Repacking {} jars with {} entries into {}", jars.size(), entries.size(),
+                    fastJar.getAbsolutePath());
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(temp))) {
+                out.setMethod(ZipOutputStream.STORED);
+                for (Map.Entry<String, JarEntryRef> entry: entries.entrySet()) {
+                    List<JarEntryRef> providers = services.get(entry.getKey());
+                    byte[] bytes = providers == null ? entry.getValue().read() : merge(providers);
+                    writeStored(out, entry.getValue().entry, bytes);
+                }
+            }
+
+            move(temp, fastJar);
+        } finally {
+            for (JarFile jarFile: opened) {
+                IOUtils.closeQuietly(jarFile);
+            }
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private static byte[] merge(List<JarEntryRef> providers) throws IOException {
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        for (JarEntryRef provider: providers) {
+            byte[] bytes = provider.read();
+            merged.write(bytes);
+            if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+                merged.write('\n');
+            }
+        }
+        return merged.toByteArray();
+    }
+
+    private static void writeStored(ZipOutputStream out, JarEntry source, byte[] bytes) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ZipEntry entry = new ZipEntry(source.getName());
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        if (source.getTime() != -1) {
+            entry.setTime(source.getTime());
+        }
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteStale(File dir, File current) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file: files) {
+            if (!file.equals(current) && "jar".equalsIgnoreCase(FilenameUtils.getExtension(file.getName()))) {
+                LOGGER.info("Deleting stale fast jar {}", file.getAbsolutePath());
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private static boolean isSignature(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) {
+            return false;
+        }
+
+        String ext = FilenameUtils.getExtension(name);
+        return StringUtils.equalsIgnoreCase(ext, "SF") ||
+                StringUtils.equalsIgnoreCase(ext, "RSA") ||
+                StringUtils.equalsIgnoreCase(ext, "DSA") ||
+                StringUtils.equalsIgnoreCase(ext, "EC");
+    }
+
+    private static class JarEntryRef {
+        private final JarFile jarFile;
+        private final JarEntry entry;
+
+        private JarEntryRef(JarFile jarFile, JarEntry entry) {
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+
+        private byte[] read() throws IOException {
+            if (entry.isDirectory()) {
+                return new byte[0];
+            }
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                return IOUtils.toByteArray(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.ProxyVersionedInterface;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Watches {@code <lib dir>/<label>/} for new or changed version folders. The newest version is
+ * loaded and warmed up in the background, then the current version pointer is switched. The old
+ * loader is unloaded once its leases are released or the drain timeout passes.
+ */
+public class HotDeployer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotDeployer.class);
+    private static final ConcurrentMap<String, HotDeployer> DEPLOYERS = Maps.newConcurrentMap();
+    private static final long DRAIN_CHECK_MILLIS = 100;
+
+    private static volatile long quietPeriodMillis = 1000;
+    private static volatile long drainTimeoutMillis = TimeUnit.MINUTES.toMillis(5);
+
+    private final String label;
+    private final File libDir;
+    private final File labelDir;
+    private final Function<ProxyVersionedInterface, ArtifactInterface> factory;
+    private final AtomicReference<Deployed> current = new AtomicReference<>();
+    private final AtomicReference<Deployed> deploying = new AtomicReference<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final DirWatcher.Listener watchListener = (dir, child) -> changed();
+    private volatile Future<?> pendingScan;
+    private volatile boolean closed;
+
+    public interface Listener {
+        void switched(ArtifactInterface from, ArtifactInterface to);
+    }
+
+    private HotDeployer(String label, File libDir, Function<ProxyVersionedInterface, ArtifactInterface> factory) {
+        this.label = label;
+        this.libDir = libDir;
+        this.labelDir = new File(libDir, label);
+        this.factory = factory;
+    }
+
+    public static HotDeployer watch(String label, File libDir,
+                                    Function<ProxyVersionedInterface, ArtifactInterface> factory) {
+        HotDeployer deployer = new HotDeployer(label, libDir.getAbsoluteFile(), factory);
+        HotDeployer existing = DEPLOYERS.putIfAbsent(label, deployer);
+        if (existing != null) {
+            return existing;
+        }
+
+        Deployed initial = deployer.newest();
+        if (initial != null) {
+            deployer.current.set(initial);
+            LOGGER.info("Current version of {} is {}", label, initial.version);
+        }
+        if (!deployer.watchDirs()) {
+            LOGGER.warn("Cannot watch {}. New versions of {} will not be deployed", deployer.labelDir, label);
+        }
+        return deployer;
+    }
+
+    public static HotDeployer get(String label) {
+        return DEPLOYERS.get(label);
+    }
+
+    public static void setQuietPeriod(long time, TimeUnit unit) {
+        quietPeriodMillis = unit.toMillis(time);
+    }
+
+    public static void setDrainTimeout(long time, TimeUnit unit) {
+        drainTimeoutMillis = unit.toMillis(time);
+    }
+
+    public ArtifactInterface getCurrent() {
+        Deployed deployed = current.get();
+        return deployed == null ? null : deployed.artifact;
+    }
+
+    public String getVersion() {
+        Deployed deployed = current.get();
+        return deployed == null ? null : deployed.version;
+    }
+
+    // the lease keeps the leased version loaded after a switch until it is closed
+    public LoaderUsage.Lease lease() {
+        while (true) {
+            Deployed deployed = current.get();
+            if (deployed == null) {
+                throw new IllegalStateException(String.format("No version of %s is deployed", label));
+            }
+            // a caller that already holds a lease would wait on its own lease, it keeps the old version
+            boolean reentrant = deployed.retired &&
+                    LoaderUsage.of(deployed.artifact.getName()).isLeasedByCurrentThread();
+            if (deployed.retired && !closed && !reentrant) {
+                // a version reloaded in place is draining, new callers wait for its replacement
+                awaitReplacement(deployed);
+                continue;
+            }
+
+            LoaderUsage.Lease lease = LibLoader.lease(deployed.artifact);
+            if (current.get() == deployed && (!deployed.retired || closed || reentrant)) {
+                return lease;
+            }
+            lease.close();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void close() {
+        closed = true;
+        DEPLOYERS.remove(label, this);
+        DirWatcher.get().unwatch(labelDir.toPath(), watchListener);
+        File[] versions = labelDir.listFiles();
+        if (versions != null) {
+            for (File version: versions) {
+                DirWatcher.get().unwatch(version.toPath(), watchListener);
+            }
+        }
+    }
+
+    private boolean watchDirs() {
+        boolean watched = DirWatcher.get().watch(labelDir.toPath(), watchListener);
+        File[] versions = labelDir.listFiles();
+        if (versions != null) {
+            for (File version: versions) {
+                if (version.isDirectory() && DirUtils.isVersion(version.getName())) {
+                    DirWatcher.get().watch(version.toPath(), watchListener);
+                }
+            }
+        }
+        return watched;
+    }
+
+    private synchronized void changed() {
+        if (closed) {
+            return;
+        }
+
+        // copying a version folder fires many events, so scan once it has been quiet for a while
+        Future<?> pending = pendingScan;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pendingScan = ProxyExecutors.scheduler().schedule(
+                () -> ProxyExecutors.background().submit(this::scan),
+                quietPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void scan() {
+        if (closed) {
+            return;
+        }
+
+        watchDirs();
+        Deployed newest = newest();
+        Deployed deployed = current.get();
+        if (newest == null || newest.isSame(deploying.get())) {
+            return;
+        }
+        if (deployed != null && deployed.version.equals(newest.version)) {
+            if (deployed.stamp == newest.stamp) {
+                return;
+            }
+            LOGGER.info("Version {} of {} changed. Reloading after old callers drain", newest.version, label);
+            deploying.set(newest);
+            deployed.retired = true;
+            drain(deployed, () -> deploy(newest));
+            return;
+        }
+        if (deployed != null && compareVersions(newest.version, deployed.version) < 0) {
+            return;
+        }
+
+        deploy(newest);
+    }
+
+    private void deploy(final Deployed next) {
+        LOGGER.info("Deploying version {} of {}", next.version, label);
+        deploying.set(next);
+        try {
+            LibLoader.getLibClassLoader(next.artifact);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to load version {} of {}. Keeping version {}", next.version, label, getVersion(), e);
+            keepCurrent(next);
+            return;
+        }
+
+        ListenableFuture<ArtifactWarmUp.Report> warmUp = ArtifactWarmUp.getFuture(next.artifact.getName());
+        Futures.addCallback(warmUp, new FutureCallback<ArtifactWarmUp.Report>() {
+            @Override
+            public void onSuccess(ArtifactWarmUp.Report report) {
+                switchTo(next);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof CancellationException) {
+                    // the new version was unloaded before it was warm
+                    LOGGER.warn("Warm up of version {} of {} was cancelled. Keeping version {}",
+                            next.version, label, getVersion());
+                    keepCurrent(next);
+                    return;
+                }
+                LOGGER.warn("Warm up of version {} of {} failed. Switching to it cold", next.version, label, t);
+                switchTo(next);
+            }
+        }, ProxyExecutors.background());
+    }
+
+    private void keepCurrent(Deployed next) {
+        deploying.compareAndSet(next, null);
+        Deployed deployed = current.get();
+        if (deployed != null) {
+            deployed.retired = false;
+        }
+    }
+
+    private void switchTo(Deployed next) {
+        Deployed previous = current.getAndSet(next);
+        deploying.compareAndSet(next, null);
+        LOGGER.info("Switched {} from version {} to {}", label,
+                previous == null ? null : previous.version, next.version);
+        for (Listener listener: listeners) {
+            try {
+                listener.switched(previous == null ? null : previous.artifact, next.artifact);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Hot deploy listener failed for {}", label, e);
+            }
+        }
+
+        if (previous != null && !previous.artifact.getName().equals(next.artifact.getName())) {
+            drain(previous, null);
+        }
+    }
+
+    private void drain(final Deployed old, final Runnable then) {
+        final long deadline = System.currentTimeMillis() + drainTimeoutMillis;
+        ProxyExecutors.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                LoaderUsage.Usage usage = LoaderUsage.of(old.artifact.getName());
+                if (usage.isLeased() && System.currentTimeMillis() < deadline) {
+                    ProxyExecutors.scheduler().schedule(this, DRAIN_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (usage.isLeased()) {
+                    LOGGER.warn("Version {} of {} still has {} leases after the drain timeout. Unloading",
+                            old.version, label, usage.getLeases());
+                }
+
+                ProxyExecutors.background().submit(() -> {
+                    LibLoader.unload(old.artifact.getName());
+                    if (then != null) {
+                        then.run();
+                    }
+                });
+            }
+        }, DRAIN_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitReplacement(Deployed deployed) {
+        while (current.get() == deployed && deployed.retired && !closed) {
+            try {
+                Thread.sleep(DRAIN_CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(String.format("Interrupted while %s is reloaded", label), e);
+            }
+        }
+    }
+
+    private Deployed newest() {
+        File[] versions = labelDir.listFiles();
+        if (versions == null) {
+            return null;
+        }
+
+        File newest = null;
+        for (File version: versions) {
+            if (version.isDirectory() && DirUtils.isVersion(version.getName()) &&
+                    (newest == null || compareVersions(version.getName(), newest.getName()) > 0)) {
+                newest = version;
+            }
+        }
+        if (newest == null) {
+            return null;
+        }
+
+        ProxyVersionedInterface versionInfo = ProxyUtils.newVersionInfo(label, newest.getName(), libDir);
+        return new Deployed(newest.getName(), stamp(newest), factory.apply(versionInfo));
+    }
+
+    private static long stamp(File versionDir) {
+        long stamp = versionDir.lastModified();
+        File[] files = versionDir.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                stamp = 31 * stamp + file.getName().hashCode();
+                stamp = 31 * stamp + file.length();
+                stamp = 31 * stamp + file.lastModified();
+            }
+        }
+        return stamp;
+    }
+
+    static int compareVersions(String left, String right) {
+        String[] leftParts = StringUtils.split(left, ".-");
+        String[] rightParts = StringUtils.split(right, ".-");
+        for (int i = 0; i < Math.max(leftParts.length, rightParts.length); i++) {
+            String l = i < leftParts.length ? leftParts[i] : "0";
+            String r = i < rightParts.length ? rightParts[i] : "0";
+            int result = NumberUtils.isDigits(l) && NumberUtils.isDigits(r) ?
+                    Long.compare(NumberUtils.toLong(l), NumberUtils.toLong(r)) : l.compareTo(r);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("label", label)
+                .add("labelDir", labelDir.getAbsolutePath())
+                .add("version", getVersion())
+                .toString();
+    }
+
+    private static class Deployed {
+        private final String version;
+        private final long stamp;
+        private final ArtifactInterface artifact;
+        private volatile boolean retired;
+
+        private Deployed(String version, long stamp, ArtifactInterface artifact) {
+            this.version = version;
+            this.stamp = stamp;
+            this.artifact = artifact;
+        }
+
+        private boolean isSame(Deployed other) {
+            return other != null && version.equals(other.version) && stamp == other.stamp;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.itzap.proxy.IntegrityException;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.Integrity;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Checks the jars of an artifact against its expected SHA-256 digests before a class loader is
+ * created. Jars are hashed in parallel on the IO pool. Verified digests, and those of fast jars
+ * repacked from verified jars, are trusted for the life of the process; with a store directory
+ * set they are kept there too, so a restart hashes only files whose size or modification time
+ * changed. The store directory must not be writable by whoever can write the artifact jars.
+ */
+public final class JarIntegrity {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JarIntegrity.class);
+    private static final String STORE_FILE = "digests.properties";
+    private static final Set<File> LOADED_STORES = Sets.newConcurrentHashSet();
+    // "size|mtime|sha256" by absolute path
+    private static final ConcurrentMap<String, String> TRUSTED = Maps.newConcurrentMap();
+
+    private static volatile File storeDirectory;
+
+    private JarIntegrity() {}
+
+    /**
+     * Directory that keeps verified digests between runs. {@code null}, the default, keeps them in memory only.
+     */
+    public static void setStoreDirectory(File storeDirectory) {
+        JarIntegrity.storeDirectory = storeDirectory;
+    }
+
+    public static File getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    public static File getStoreFile(ArtifactInterface artifact) {
+        File dir = storeDirectory;
+        if (dir == null) {
+            return null;
+        }
+        return new File(new File(dir, ProxyUtils.getPath(artifact.getVersion())), STORE_FILE);
+    }
+
+    public static List<URL> verify(ArtifactInterface artifact, List<URL> urls) {
+        Integrity integrity = artifact.getIntegrity();
+        if (integrity == null || urls == null || urls.isEmpty()) {
+            return urls;
+        }
+
+        File store = loadStore(artifact);
+        List<String> failures = Lists.newArrayList();
+        final List<File> jars = Lists.newArrayList();
+        for (URL url: urls) {
+            File jar = FileUtils.toFile(url);
+            if (jar == null) {
+                if (integrity.isStrict()) {
+                    failures.add(url + " is not a local file and cannot be verified");
+                }
+                continue;
+            }
+            jars.add(jar);
+        }
+
+        List<ListenableFuture<String>> futures = Lists.newArrayListWithCapacity(jars.size());
+        for (final File jar: jars) {
+            futures.add(ProxyExecutors.io().submit(() -> Digests.sha256(jar)));
+        }
+
+        List<String> digests;
+        try {
+            digests = Futures.allAsList(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrityException(artifact, "Interrupted while verifying jars");
+        } catch (ExecutionException e) {
+            throw new IntegrityException(artifact, "Failed to hash jars: " + e.getCause());
+        }
+
+        Map<String, String> verified = Maps.newLinkedHashMap();
+        for (int i = 0; i < jars.size(); i++) {
+            File jar = jars.get(i);
+            String expected = integrity.getDigest(jar.getName());
+            if (expected == null) {
+                if (integrity.isStrict()) {
+                    failures.add(jar.getName() + " has no expected digest");
+                }
+            } else if (!expected.equals(digests.get(i))) {
+                failures.add(String.format("%s expected %s but was %s", jar.getName(), expected, digests.get(i)));
+            } else {
+                verified.put(jar.getAbsolutePath(), Digests.cached(jar));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IntegrityException(artifact, "Integrity check failed: " + Joiner.on("; ").join(failures));
+        }
+
+        trust(store, verified);
+        LOGGER.debug("Verified {} jars of {}", jars.size(), artifact.getName());
+        return urls;
+    }
+
+    /**
+     * Whether the jars still have the digests they had when they were verified, or when they were
+     * repacked from verified jars. Always true for artifacts without expected digests.
+     */
+    public static boolean isTrusted(ArtifactInterface artifact, List<URL> urls) {
+        if (artifact.getIntegrity() == null || urls == null) {
+            return true;
+        }
+
+        loadStore(artifact);
+        for (URL url: urls) {
+            File jar = FileUtils.toFile(url);
+            String trusted = jar == null ? null : TRUSTED.get(jar.getAbsolutePath());
+            if (trusted == null) {
+                return false;
+            }
+            try {
+                if (!trusted.endsWith("|" + Digests.sha256(jar))) {
+                    LOGGER.warn("Jar {} of {} changed after it was verified", jar.getAbsolutePath(), artifact.getName());
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Trusts a jar built by this process from verified jars, such as a fast jar.
+     */
+    public static void trust(ArtifactInterface artifact, File jar) throws IOException {
+        if (artifact.getIntegrity() == null) {
+            return;
+        }
+
+        Digests.sha256(jar);
+        Map<String, String> built = Maps.newHashMap();
+        built.put(jar.getAbsolutePath(), Digests.cached(jar));
+        trust(loadStore(artifact), built);
+    }
+
+    public static void clear() {
+        LOADED_STORES.clear();
+        TRUSTED.clear();
+    }
+
+    private static File loadStore(ArtifactInterface artifact) {
+        File store = getStoreFile(artifact);
+        if (store != null && LOADED_STORES.add(store.getAbsoluteFile())) {
+            Map<String, String> digests = readStore(store);
+            Digests.remember(digests);
+            TRUSTED.putAll(digests);
+        }
+        return store;
+    }
+
+    private static void trust(File store, Map<String, String> verified) {
+        for (Map.Entry<String, String> entry: verified.entrySet()) {
+            if (entry.getValue() != null) {
+                TRUSTED.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (store != null) {
+            writeStore(store, verified);
+        }
+    }
+
+    private static Map<String, String> readStore(File store) {
+        Map<String, String> digests = Maps.newHashMap();
+        if (!store.isFile()) {
+            return digests;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(store)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read digest store {}", store.getAbsolutePath(), e);
+            return digests;
+        }
+        for (String path: properties.stringPropertyNames()) {
+            digests.put(path, properties.getProperty(path));
+        }
+        return digests;
+    }
+
+    private static synchronized void writeStore(File store, Map<String, String> verified) {
+        Map<String, String> current = readStore(store);
+        boolean changed = false;
+        for (Map.Entry<String, String> entry: verified.entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().equals(current.get(entry.getKey()))) {
+                current.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.putAll(current);
+        File temp = new File(store.getParentFile(), store.getName() + ".tmp" + System.nanoTime());
+        try {
+            DirUtils.forceMkdir(store.getParentFile(), true);
+            try (OutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            try {
+                Files.move(temp.toPath(), store.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to write digest store {}", store.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+}
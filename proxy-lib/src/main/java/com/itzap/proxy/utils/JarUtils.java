@@ -1,22 +1,29 @@
 package com.itzap.proxy.utils;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.itzap.proxy.loader.JarHandlePool;
+import com.itzap.proxy.loader.MappedJarSource;
+import com.itzap.proxy.loader.NestedJarHandler;
+import com.itzap.proxy.loader.ZipIndex;
+import com.itzap.proxy.metrics.FlightEvents;
+import com.itzap.proxy.metrics.StartupTimeline;
 import com.itzap.proxy.model.ArtifactInterface;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -64,58 +71,94 @@ public final class JarUtils {
                                                 Predicate<String> filter) {
         LOGGER.debug("Loading JAR artifact {}", artifact);
 
-        File tempLibs = null;
-        List<URL> urls = Lists.newArrayList();
-        FileOutputStream tempStream = null;
         String jarFileName = getJarFile(filter.getClass());
         if (StringUtils.isBlank(jarFileName)) {
             LOGGER.info("Cannot load from jar file. Jar file is null");
-            return urls;
+            return ImmutableList.of();
         }
 
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Loading from jar file {}", jarFileName);
+        }
+        List<URL> urls = Lists.newArrayList();
         try {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Loading from jar file {}", jarFileName);
-            }
-            JarFile thisJar = new JarFile(jarFileName);
-            List<JarEntry> entries = Collections.list(thisJar.entries());
-            for (JarEntry jarItem: entries) {
-                if (filter.apply(jarItem.getName())) {
-                    // extract all libs into a temp folder
-                    if (tempLibs == null) {
-                        tempLibs = artifact.getDestination(jarItem.getName());
-                        FileUtils.forceMkdir(tempLibs);
-                        if (artifact.isTemp()) {
-                            FileUtils.forceDeleteOnExit(tempLibs);
-                        }
-                    }
-                    File tempFile = new File(tempLibs, FilenameUtils.getName(jarItem.getName()));
-                    if (!tempFile.exists()) {
-                        InputStream libFile = thisJar.getInputStream(jarItem);
-                        if (artifact.isTemp()) {
-                            FileUtils.forceDeleteOnExit(tempFile);
-                        }
-                        LOGGER.info("Extracting lib {}", tempFile.getAbsolutePath());
-                        tempStream = new FileOutputStream(tempFile);
-                        IOUtils.copy(libFile, tempStream);
-                        tempStream.close();
-                    } else {
-                        LOGGER.info("Lib {} is loaded", tempFile.getAbsolutePath());
-                    }
-                    urls.add(tempFile.toURI().toURL());
+            return JarHandlePool.get().withJar(new File(jarFileName),
+                    thisJar -> loadArtifactFromJar(artifact, filter, thisJar, urls));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load artifact {} from jar {}. Application may not function properly",
+                    artifact, jarFileName, e);
+            // as before the cache, hand back the libs that made it to disk
+            return onlyPresent(urls);
+        }
+    }
+
+    private static List<URL> loadArtifactFromJar(ArtifactInterface artifact,
+                                                 Predicate<String> filter,
+                                                 JarFile thisJar,
+                                                 List<URL> urls) throws IOException {
+        File tempLibs = null;
+        MappedJarSource outer = artifact.getLoaderEngine() == ArtifactInterface.LoaderEngine.MAPPED ?
+                NestedJarHandler.openOuter(new File(thisJar.getName())) : null;
+        Map<JarEntry, File> missing = Maps.newLinkedHashMap();
+        List<JarEntry> entries = Collections.list(thisJar.entries());
+        for (JarEntry jarItem: entries) {
+            if (filter.apply(jarItem.getName())) {
+                if (outer != null && isStored(outer, jarItem.getName())) {
+                    LOGGER.info("Loading lib {} in place", jarItem.getName());
+                    urls.add(NestedJarHandler.toUrl(outer.getFile(), jarItem.getName()));
+                    continue;
+                }
+
+                // extract all libs into a cache folder of their own, kept across restarts
+                if (tempLibs == null) {
+                    tempLibs = ExtractionCache.getDir(artifact, jarItem.getName());
+                    FileUtils.forceMkdir(tempLibs);
                 }
+                File tempFile = new File(tempLibs, ExtractionCache.cacheName(jarItem));
+                if (ExtractionCache.isCached(tempFile, jarItem)) {
+                    LOGGER.info("Lib {} is loaded", tempFile.getAbsolutePath());
+                } else {
+                    missing.put(jarItem, tempFile);
+                }
+                urls.add(tempFile.toURI().toURL());
             }
+        }
 
-            return urls;
-        } catch (Exception e) {
-            if (tempLibs != null) {
-                FileUtils.deleteQuietly(tempLibs);
+        Object event = FlightEvents.beginExtraction();
+        StartupTimeline timeline = StartupTimeline.current();
+        long start = System.nanoTime();
+        ExtractionCache.extract(thisJar, tempLibs, missing);
+        if (event != null || timeline != null) {
+            long bytes = 0;
+            for (JarEntry entry: missing.keySet()) {
+                bytes += Math.max(0, entry.getSize());
             }
-            LOGGER.warn("Failed to load artifact {} from jar {}. Application may not function properly",
-                    artifact, getJarFile(filter.getClass()), e);
-            return urls;
-        } finally {
-            IOUtils.closeQuietly(tempStream);
+            FlightEvents.endExtraction(event, artifact, missing.size(), bytes);
+            if (timeline != null) {
+                timeline.record(StartupTimeline.Phase.EXTRACTION, start, missing.size(), bytes,
+                        (urls.size() - missing.size()) + " cached");
+            }
+        }
+        if (tempLibs != null) {
+            // kept across restarts, but temp artifacts stay within the temp budget
+            ArtifactCache.record(artifact.getName(), tempLibs, missing.isEmpty(), artifact.isTemp());
         }
+        return urls;
+    }
+
+    private static List<URL> onlyPresent(List<URL> urls) {
+        List<URL> present = Lists.newArrayList();
+        for (URL url: urls) {
+            // extracted libs are renamed into place only once complete
+            if (!"file".equals(url.getProtocol()) || FileUtils.toFile(url).isFile()) {
+                present.add(url);
+            }
+        }
+        return present;
+    }
+
+    private static boolean isStored(MappedJarSource outer, String name) {
+        ZipIndex.Entry entry = outer.getIndex().getEntry(name);
+        return entry != null && entry.isStored() && !entry.isDirectory();
     }
 }
@@ -1,16 +1,35 @@
 package com.itzap.proxy.utils;
 
 import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.itzap.proxy.IntegrityException;
 import com.itzap.proxy.ProxyException;
 import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoader;
+import com.itzap.proxy.loader.CountingClassLoader;
+import com.itzap.proxy.loader.JarSource;
+import com.itzap.proxy.loader.LayerClassLoader;
+import com.itzap.proxy.loader.MappedJarSource;
+import com.itzap.proxy.loader.ModuleLayers;
+import com.itzap.proxy.metrics.FlightEvents;
+import com.itzap.proxy.metrics.ProxyMetrics;
+import com.itzap.proxy.metrics.StartupTimeline;
+import com.itzap.proxy.loader.NestedJarHandler;
+import com.itzap.proxy.loader.PooledJarSource;
+import com.itzap.proxy.loader.SharedJarLoaders;
 import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -18,10 +37,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,7 +53,23 @@ import java.util.Set;
 
 public class LibLoader {
     private static final Map<String, URLClassLoader> LIB_CLASS_LOADER = Maps.newConcurrentMap();
+    // evicted loaders that callers still reference, closed once those callers are collected
+    private static final Map<URLClassLoader, String> RETIRED = Maps.newConcurrentMap();
     private static final Logger LOGGER = LoggerFactory.getLogger(LibLoader.class);
+    private static final ThreadLocal<Set<String>> RESOLVING = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return Sets.newHashSet();
+        }
+    };
+    private static final MemoryPoolMXBean METASPACE = metaspacePool();
+    // filters are compiled once per root, lib and extensions instead of on every lookup
+    private static final Cache<List<Object>, ArtifactFilter> FILTERS = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .build();
+
+    private static volatile int maxLoadedClasses;
+    private static volatile long maxMetaspaceBytes;
 
     public static URLClassLoader getLibClassLoader(ArtifactInterface lib) {
         return getLibClassLoader(lib, jarPredicate(lib.getRoot(),
@@ -46,61 +86,376 @@ public class LibLoader {
 
     public static URLClassLoader getLibClassLoader(ArtifactInterface lib, Predicate<String> filter) {
         String libName = lib.getName();
-        if (!LIB_CLASS_LOADER.containsKey(libName)) {
+        LoaderUsage.touch(libName);
+        URLClassLoader loader = LIB_CLASS_LOADER.get(libName);
+        if (loader == null) {
             synchronized (LibLoader.class) {
-                if (!LIB_CLASS_LOADER.containsKey(libName)) {
-                    LIB_CLASS_LOADER.put(libName, loadLibs(lib,
-                            ObjectUtils.defaultIfNull(filter, lib.getPredicate())));
+                loader = LIB_CLASS_LOADER.get(libName);
+                if (loader == null) {
+                    // the cache must not evict folders of an artifact while it is being loaded
+                    ArtifactCache.pin(libName);
+                    try {
+                        loader = loadLibs(lib, ObjectUtils.defaultIfNull(filter, lib.getPredicate()));
+                        LIB_CLASS_LOADER.put(libName, loader);
+                    } finally {
+                        ArtifactCache.unpin(libName);
+                    }
+                    enforceBudget(libName);
+                    if (lib.getWarmUp() != null) {
+                        ArtifactWarmUp.start(lib, loader);
+                    }
                 }
             }
         }
 
-        return LIB_CLASS_LOADER.get(libName);
+        return loader;
+    }
+
+    public static LoaderUsage.Lease lease(ArtifactInterface lib) {
+        LoaderUsage.Lease lease = LoaderUsage.lease(lib.getName());
+        try {
+            getLibClassLoader(lib);
+            return lease;
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    public static void setLoaderBudget(int maxLoadedClasses, long maxMetaspaceBytes) {
+        LibLoader.maxLoadedClasses = maxLoadedClasses;
+        LibLoader.maxMetaspaceBytes = maxMetaspaceBytes;
+        synchronized (LibLoader.class) {
+            enforceBudget(null);
+        }
+    }
+
+    public static boolean unload(String libName) {
+        URLClassLoader loader;
+        synchronized (LibLoader.class) {
+            loader = LIB_CLASS_LOADER.remove(libName);
+        }
+        if (loader == null) {
+            return false;
+        }
+
+        LOGGER.info("Unloading artifact {}", libName);
+        ArtifactWarmUp.forget(libName);
+        StartupTimeline.settle(libName);
+        ProxyMetrics.forget(libName);
+        // an explicit unload closes loaders held back by eviction as well
+        for (Map.Entry<URLClassLoader, String> retired: RETIRED.entrySet()) {
+            if (retired.getValue().equals(libName)) {
+                RETIRED.remove(retired.getKey());
+                IOUtils.closeQuietly(retired.getKey());
+            }
+        }
+        close(libName, loader);
+        ArtifactCache.trim();
+        return true;
+    }
+
+    static boolean isRetired(String libName) {
+        return RETIRED.containsValue(libName);
+    }
+
+    public static URLClassLoader getApiClassLoader(ArtifactInterface lib) {
+        ArtifactInterface apiLayer = lib.getApiLayer();
+        return apiLayer == null ? null : getLibClassLoader(apiLayer);
+    }
+
+    public static void setSharedJarPolicy(Predicate<String> policy) {
+        SharedJarLoaders.setPolicy(policy);
     }
 
     public static void unloadAll() {
         LIB_CLASS_LOADER.clear();
+        RETIRED.clear();
+        JarIntegrity.clear();
+        ArtifactWarmUp.clear();
+        StartupTimeline.settleAll();
+        FallbackProbe.clear();
+        SharedJarLoaders.clear();
     }
 
-    private static URLClassLoader loadLibs(ArtifactInterface artifact, Predicate<String> filter) {
-        List<URL> urls = null;
-        try {
-            ArtifactInterface currentArtifact = artifact;
-            while(currentArtifact != null) {
-                urls = currentArtifact.load();
-
-                if ((urls == null || urls.isEmpty()) &&
-                        currentArtifact.hasFallback()) {
-                    currentArtifact = currentArtifact.getFallback();
-                    LOGGER.info("Fallback to {}", currentArtifact);
-                } else {
-                    break;
+    private static void enforceBudget(String keep) {
+        closeRetired();
+        int loaded = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        long metaspace = METASPACE == null ? 0 : METASPACE.getUsage().getUsed();
+        long excessClasses = maxLoadedClasses > 0 ? loaded - maxLoadedClasses : 0;
+        long excessBytes = maxMetaspaceBytes > 0 && metaspace > 0 ? metaspace - maxMetaspaceBytes : 0;
+        if (excessClasses <= 0 && excessBytes <= 0) {
+            return;
+        }
+
+        // freed metaspace shows up only after a collection, so estimate it from the class count
+        double bytesPerClass = loaded > 0 ? (double) metaspace / loaded : 0;
+        List<LoaderUsage.Usage> candidates = Lists.newArrayList();
+        for (String libName: LIB_CLASS_LOADER.keySet()) {
+            LoaderUsage.Usage usage = LoaderUsage.of(libName);
+            if (!libName.equals(keep) && !usage.isLeased() && !isParentLoader(LIB_CLASS_LOADER.get(libName))) {
+                candidates.add(usage);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(LoaderUsage.Usage::getLastUsed));
+
+        for (LoaderUsage.Usage usage: candidates) {
+            if (excessClasses <= 0 && excessBytes <= 0) {
+                break;
+            }
+
+            URLClassLoader loader = LIB_CLASS_LOADER.get(usage.getArtifact());
+            int classes = loader instanceof CountingClassLoader ?
+                    ((CountingClassLoader) loader).getDefinedClasses() : 0;
+            LOGGER.info("Loader budget exceeded by {} classes and {} bytes. Evicting idle artifact {} with {} classes",
+                    Math.max(excessClasses, 0), Math.max(excessBytes, 0), usage.getArtifact(), classes);
+            evict(usage, loader);
+            excessClasses -= classes;
+            excessBytes -= (long) (classes * bytesPerClass);
+        }
+    }
+
+    private static void evict(LoaderUsage.Usage usage, URLClassLoader loader) {
+        String libName = usage.getArtifact();
+        if (!usage.hasCallers(loader)) {
+            unload(libName);
+            return;
+        }
+
+        // callers built on this loader would fail on classes they have not loaded yet
+        LOGGER.info("Artifact {} still has callers, its loader is closed once they are gone", libName);
+        LIB_CLASS_LOADER.remove(libName);
+        RETIRED.put(loader, libName);
+        ArtifactWarmUp.forget(libName);
+        StartupTimeline.settle(libName);
+    }
+
+    private static void closeRetired() {
+        for (Map.Entry<URLClassLoader, String> retired: RETIRED.entrySet()) {
+            if (!LoaderUsage.of(retired.getValue()).hasCallers(retired.getKey())) {
+                RETIRED.remove(retired.getKey());
+                close(retired.getValue(), retired.getKey());
+            }
+        }
+    }
+
+    private static void close(String libName, URLClassLoader loader) {
+        IOUtils.closeQuietly(loader);
+        // shared jars are released by name, keep them while another loader of the artifact is open
+        if (!LIB_CLASS_LOADER.containsKey(libName) && !RETIRED.containsValue(libName)) {
+            SharedJarLoaders.release(libName);
+        }
+    }
+
+    private static boolean isParentLoader(ClassLoader loader) {
+        for (URLClassLoader other: Iterables.concat(LIB_CLASS_LOADER.values(), RETIRED.keySet())) {
+            // shared jar views sit between a loader and its API layer, so walk the whole chain
+            for (ClassLoader parent = other.getParent(); other != loader && parent != null;
+                 parent = parent.getParent()) {
+                if (parent == loader) {
+                    return true;
                 }
             }
+        }
+        return false;
+    }
 
-            if (!artifact.forClasses().isEmpty()) {
-                List<URL> tempUrls = urls != null ?
-                        Lists.newArrayList(urls) : new ArrayList<URL>();
-                tempUrls.addAll(loadForClasses(artifact.getClass(), artifact.forClasses()));
-                urls = tempUrls;
+    private static MemoryPoolMXBean metaspacePool() {
+        for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool;
             }
+        }
+        return null;
+    }
+
+    private static URLClassLoader loadLibs(ArtifactInterface artifact, Predicate<String> filter) {
+        Object event = FlightEvents.beginLoader();
+        StartupTimeline previous = StartupTimeline.begin(artifact);
+        URLClassLoader loader = null;
+        try {
+            loader = createLoader(artifact);
+            return loader;
+        } finally {
+            StartupTimeline.end(previous);
+            FlightEvents.endLoader(event, artifact, loader, loader == null ? 0 : loader.getURLs().length);
+        }
+    }
 
+    private static URLClassLoader createLoader(ArtifactInterface artifact) {
+        // a cyclic API layer fails the load instead of caching an empty loader
+        ClassLoader parent = parentLoader(artifact);
+        try {
+            List<URL> urls = discover(artifact);
             if (urls == null || urls.isEmpty()) {
                 LOGGER.warn("Did not find any lib URLs for lib={}. Application may not function properly", artifact.getName());
                 return new URLClassLoader(new URL[]{});
             }
 
-            if (artifact.isUseSystemLoader()) {
-                return URLClassLoader.newInstance(urls.toArray(new URL[0]));
-            } else {
-                return URLClassLoader.newInstance(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+            StartupTimeline timeline = StartupTimeline.current();
+            long creation = System.nanoTime();
+            URLClassLoader loader = newClassLoader(artifact, urls, parent);
+            if (timeline != null) {
+                timeline.record(StartupTimeline.Phase.LOADER_CREATION, creation, urls.size(), 0,
+                        loader.getClass().getSimpleName());
             }
+            return loader;
+        } catch (IntegrityException ex) {
+            throw ex;
         } catch (Exception ex) {
             LOGGER.warn("Failed to load libraries. Application may not function properly", ex);
             return new URLClassLoader(new URL[]{});
         }
     }
 
+    /**
+     * A plain loader over the jars of the artifact for training runs. It is not cached, shares no jars
+     * with other loaders and is closed by the caller.
+     */
+    static CountingClassLoader newTrainingLoader(ArtifactInterface artifact) throws IOException {
+        ClassLoader parent = parentLoader(artifact);
+        List<URL> urls = discover(artifact);
+        return new CountingClassLoader(urls == null ? new URL[0] : urls.toArray(new URL[0]), parent);
+    }
+
+    private static List<URL> discover(ArtifactInterface artifact) throws IOException {
+        long discovery = System.nanoTime();
+        List<URL> urls = ResolutionManifest.read(artifact);
+        String source = "manifest";
+        if (urls == null) {
+            urls = resolve(artifact);
+            source = "resolved";
+        } else if (!artifact.isFastJar()) {
+            urls = JarIntegrity.verify(artifact, urls);
+        } else if (!JarIntegrity.isTrusted(artifact, urls)) {
+            // a fast jar has no expected digest of its own, it is rebuilt from verified jars
+            urls = resolve(artifact);
+            source = "resolved";
+        }
+        StartupTimeline timeline = StartupTimeline.current();
+        if (timeline != null) {
+            timeline.record(StartupTimeline.Phase.DISCOVERY, discovery, urls == null ? 0 : urls.size(), 0, source);
+        }
+
+        if (!artifact.forClasses().isEmpty()) {
+            List<URL> tempUrls = urls != null ?
+                    Lists.newArrayList(urls) : new ArrayList<URL>();
+            tempUrls.addAll(loadForClasses(artifact.getClass(), artifact.forClasses()));
+            urls = tempUrls;
+        }
+        return urls;
+    }
+
+    private static List<URL> resolve(ArtifactInterface artifact) {
+        Object event = FlightEvents.beginResolutionMiss();
+        List<URL> urls = null;
+        try {
+            Map<String, Long> dirs = ResolutionManifest.stamp(artifact);
+            List<URL> sources = JarIntegrity.verify(artifact, FallbackProbe.load(artifact));
+            urls = sources;
+
+            if (artifact.isFastJar()) {
+                urls = FastJar.repack(artifact, sources);
+            }
+
+            ResolutionManifest.write(artifact, dirs, sources, urls);
+            return urls;
+        } finally {
+            FlightEvents.endResolutionMiss(event, artifact, urls == null ? 0 : urls.size());
+        }
+    }
+
+    private static ClassLoader parentLoader(ArtifactInterface artifact) {
+        ArtifactInterface apiLayer = artifact.getApiLayer();
+        if (apiLayer == null) {
+            return artifact.isUseSystemLoader() ?
+                    ClassLoader.getSystemClassLoader() : ClassLoader.getSystemClassLoader().getParent();
+        }
+
+        Set<String> resolving = RESOLVING.get();
+        if (!resolving.add(artifact.getName())) {
+            throw new ProxyException(artifact, String.format("Cyclic API layer %s", apiLayer.getName()));
+        }
+        try {
+            LOGGER.debug("Artifact {} delegates to API layer {}", artifact.getName(), apiLayer.getName());
+            return getLibClassLoader(apiLayer);
+        } finally {
+            resolving.remove(artifact.getName());
+        }
+    }
+
+    private static URLClassLoader newClassLoader(ArtifactInterface artifact, List<URL> libUrls,
+                                                 ClassLoader parent) throws IOException {
+
+        List<URL> urls = libUrls;
+        if (SharedJarLoaders.isEnabled()) {
+            urls = Lists.newArrayList(libUrls);
+            parent = SharedJarLoaders.share(artifact.getName(), urls, parent);
+        }
+
+        if (artifact.getLoaderEngine() == ArtifactInterface.LoaderEngine.MAPPED || hasNested(urls)) {
+            List<JarSource> sources = openMappedSources(urls);
+            if (sources != null) {
+                return new ArtifactClassLoader(sources, parent);
+            }
+            LOGGER.info("Artifact {} has non jar URLs. Falling back to URL class loader", artifact.getName());
+        } else if (artifact.getLoaderEngine() == ArtifactInterface.LoaderEngine.POOLED) {
+            List<JarSource> sources = openPooledSources(urls);
+            if (sources != null) {
+                return new ArtifactClassLoader(sources, parent);
+            }
+            LOGGER.info("Artifact {} has non jar URLs. Falling back to URL class loader", artifact.getName());
+        } else if (artifact.getLoaderEngine() == ArtifactInterface.LoaderEngine.MODULE) {
+            LayerClassLoader loader = ModuleLayers.newClassLoader(artifact.getName(), urls, parent);
+            if (loader != null) {
+                return loader;
+            }
+            LOGGER.info("Artifact {} cannot use a module layer. Falling back to URL class loader", artifact.getName());
+        }
+
+        return new CountingClassLoader(urls.toArray(new URL[0]), parent);
+    }
+
+    private static boolean hasNested(List<URL> urls) {
+        for (URL url: urls) {
+            if (NestedJarHandler.isNested(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<JarSource> openMappedSources(List<URL> urls) throws IOException {
+        List<JarSource> sources = Lists.newArrayListWithCapacity(urls.size());
+        for (URL url: urls) {
+            if (NestedJarHandler.isNested(url)) {
+                sources.add(NestedJarHandler.open(url));
+                continue;
+            }
+            if (!isJarFile(url)) {
+                return null;
+            }
+            sources.add(MappedJarSource.open(FileUtils.toFile(url)));
+        }
+        return sources;
+    }
+
+    private static List<JarSource> openPooledSources(List<URL> urls) throws IOException {
+        List<JarSource> sources = Lists.newArrayListWithCapacity(urls.size());
+        for (URL url: urls) {
+            if (!isJarFile(url)) {
+                return null;
+            }
+            sources.add(PooledJarSource.open(FileUtils.toFile(url)));
+        }
+        return sources;
+    }
+
+    private static boolean isJarFile(URL url) {
+        return "file".equalsIgnoreCase(url.getProtocol()) &&
+                "jar".equalsIgnoreCase(FilenameUtils.getExtension(url.getPath()));
+    }
+
     private static List<URL> loadForClasses(final Class clazz, List<String> classes) {
         return FluentIterable.from(classes)
                 .transform(new Function<String, Class>() {
@@ -143,36 +498,30 @@ public class LibLoader {
             return defaultPredicate;
         }
 
-        return new Predicate<String>() {
-            @Override
-            public boolean apply(String input) {
-                return isKeepArtifact(root, lib, input, extentions);
-            }
-        };
+        return compiledFilter(root, lib, extentions);
     }
 
     public static boolean isKeepArtifact(String root,
                                          String lib,
                                          String input,
                                          Set<String> extentions) {
-        String testInput = FilenameUtils.separatorsToUnix(input);
-        String testPath = FilenameUtils.separatorsToUnix(Joiner.on('/')
-                .skipNulls().join(root, lib));
-        String testRuntime = StringUtils.isBlank(root) ? FilenameUtils.separatorsToUnix("runtime/") :
-                FilenameUtils.separatorsToUnix(root + "/runtime/");
-
-
-        LOGGER.debug("Testing input {} for {} or runtime {}",
-                    testInput, testPath, testRuntime);
+        return compiledFilter(root, lib, extentions).apply(input);
+    }
 
-        String ext = FilenameUtils.getExtension(input);
-        return (StringUtils.containsIgnoreCase(testInput, testPath) &&
-                extentions.contains(ext)) ||
-                StringUtils.containsIgnoreCase(testInput, testRuntime);
+    private static ArtifactFilter compiledFilter(String root, String lib, Set<String> extentions) {
+        List<Object> key = Arrays.<Object>asList(root, lib,
+                extentions == null ? null : ImmutableSet.copyOf(extentions));
+        ArtifactFilter filter = FILTERS.getIfPresent(key);
+        if (filter == null) {
+            filter = ArtifactFilter.compile(root, lib, extentions);
+            FILTERS.put(key, filter);
+        }
+        return filter;
     }
 
     public static List<URL> loadArtifactFromDir(final ArtifactInterface artifact, final Predicate<String> filter) {
         LOGGER.debug("Loading DIR artifact {}", artifact);
+        long scan = System.nanoTime();
 
         File libDir = artifact.toPath();
         File targetLibDir = artifact.toParentPath();
@@ -193,7 +542,7 @@ public class LibLoader {
 
         File[] allFiles = ArrayUtils.addAll(libJarFiles, targetLibJars);
         try {
-            return FluentIterable.of(allFiles)
+            List<URL> urls = FluentIterable.of(allFiles)
                     .filter(new Predicate<File>() {
                         @Override
                         public boolean apply(File input) {
@@ -215,6 +564,15 @@ public class LibLoader {
                             }
                         }
                     }).toList();
+            StartupTimeline timeline = StartupTimeline.current();
+            if (timeline != null) {
+                long bytes = 0;
+                for (URL url: urls) {
+                    bytes += FileUtils.toFile(url).length();
+                }
+                timeline.record(StartupTimeline.Phase.DIRECTORY_SCAN, scan, urls.size(), bytes, libDir.getAbsolutePath());
+            }
+            return urls;
         } catch (Exception e) {
             LOGGER.warn("Failed to load artifacts from dir {}. Application may not function properly",
                     libDir.getAbsolutePath(), e);
@@ -0,0 +1,137 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks when each artifact loader was last used, how many leases pin it in memory and which
+ * callers still reference its classes. Entries are kept by artifact name, so they survive a loader
+ * being unloaded and created again.
+ */
+public final class LoaderUsage {
+    private static final ConcurrentMap<String, Usage> USAGE = Maps.newConcurrentMap();
+
+    private LoaderUsage() {}
+
+    public static Usage of(String artifact) {
+        Usage usage = USAGE.get(artifact);
+        if (usage == null) {
+            Usage created = new Usage(artifact);
+            usage = MoreObjects.firstNonNull(USAGE.putIfAbsent(artifact, created), created);
+        }
+        return usage;
+    }
+
+    public static void touch(String artifact) {
+        of(artifact).touch();
+    }
+
+    public static Lease lease(String artifact) {
+        Usage usage = of(artifact);
+        usage.leases.incrementAndGet();
+        usage.holders.add(Thread.currentThread());
+        usage.touch();
+        return new Lease(usage, Thread.currentThread());
+    }
+
+    public static class Usage {
+        private final String artifact;
+        private final AtomicInteger leases = new AtomicInteger();
+        private final Multiset<Thread> holders = ConcurrentHashMultiset.create();
+        // callers are held weakly, an entry goes away once its caller is collected
+        private final Map<Object, ClassLoader> callers = new WeakHashMap<>();
+        private volatile long lastUsed = System.nanoTime();
+
+        private Usage(String artifact) {
+            this.artifact = artifact;
+        }
+
+        public void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        public String getArtifact() {
+            return artifact;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        public int getLeases() {
+            return leases.get();
+        }
+
+        public boolean isLeased() {
+            return leases.get() > 0;
+        }
+
+        public boolean isLeasedByCurrentThread() {
+            return holders.contains(Thread.currentThread());
+        }
+
+        public void addCaller(Object caller, ClassLoader loader) {
+            synchronized (callers) {
+                callers.put(caller, loader);
+            }
+        }
+
+        /**
+         * Whether a caller that is still reachable uses a class of the loader or of one of its children.
+         */
+        public boolean hasCallers(ClassLoader loader) {
+            synchronized (callers) {
+                for (ClassLoader used: callers.values()) {
+                    for (ClassLoader current = used; current != null; current = current.getParent()) {
+                        if (current == loader) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("artifact", artifact)
+                    .add("leases", leases.get())
+                    .add("lastUsed", lastUsed)
+                    .toString();
+        }
+    }
+
+    public static class Lease implements Closeable {
+        private final Usage usage;
+        private final Thread holder;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Usage usage, Thread holder) {
+            this.usage = usage;
+            this.holder = holder;
+        }
+
+        public String getArtifact() {
+            return usage.getArtifact();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                usage.touch();
+                usage.leases.decrementAndGet();
+                usage.holders.remove(holder);
+            }
+        }
+    }
+}
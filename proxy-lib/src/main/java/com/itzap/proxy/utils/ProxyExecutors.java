@@ -0,0 +1,74 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared bounded pools. Leaf work (extraction, hashing, downloads) runs on the IO pool and
+ * must never wait on another IO task. Background work (warm-up, probing) runs on its own pool,
+ * so it may wait on IO tasks but never blocks on another background task.
+ */
+public final class ProxyExecutors {
+    private static final int IO_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() * 2));
+    private static final String BACKGROUND_PREFIX = "itzap-proxy-background-";
+    private static final int BACKGROUND_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private ProxyExecutors() {}
+
+    private static class IoHolder {
+        private static final ListeningExecutorService IO = newPool("itzap-proxy-io-%d", IO_THREADS);
+    }
+
+    private static class BackgroundHolder {
+        private static final ListeningExecutorService BACKGROUND =
+                newPool(BACKGROUND_PREFIX + "%d", BACKGROUND_THREADS);
+    }
+
+    private static class SchedulerHolder {
+        private static final ListeningScheduledExecutorService SCHEDULER = MoreExecutors.listeningDecorator(
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("itzap-proxy-scheduler-%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    public static ListeningExecutorService io() {
+        return IoHolder.IO;
+    }
+
+    public static ListeningExecutorService background() {
+        return BackgroundHolder.BACKGROUND;
+    }
+
+    // timers only; scheduled work hands off to the background pool
+    public static ListeningScheduledExecutorService scheduler() {
+        return SchedulerHolder.SCHEDULER;
+    }
+
+    public static boolean isBackgroundThread() {
+        return Thread.currentThread().getName().startsWith(BACKGROUND_PREFIX);
+    }
+
+    public static int backgroundThreads() {
+        return BACKGROUND_THREADS;
+    }
+
+    static ListeningExecutorService newPool(String nameFormat, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat(nameFormat)
+                        .setDaemon(true)
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(executor);
+    }
+}
@@ -0,0 +1,273 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.model.ArtifactInterface;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persists the resolved URL list of a directory or released Maven artifact. The manifest is valid
+ * while the directories of the artifact and its fallbacks keep their modification times and the
+ * resolved jars keep their size and modification time, so a restart skips listing and filtering.
+ * Manifests are written only when a manifest directory is set, never into artifact folders.
+ */
+public final class ResolutionManifest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolutionManifest.class);
+    private static final String FORMAT = "2";
+    private static final long MISSING = -1;
+
+    private static volatile File directory;
+
+    private ResolutionManifest() {}
+
+    /**
+     * Directory that keeps the manifests. {@code null}, the default, turns the manifest off.
+     */
+    public static void setDirectory(File directory) {
+        ResolutionManifest.directory = directory;
+    }
+
+    public static File getDirectory() {
+        return directory;
+    }
+
+    public static boolean isEnabled() {
+        return directory != null;
+    }
+
+    public static File getManifestFile(ArtifactInterface artifact) {
+        File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        // artifacts with the same label and version may live in different folders
+        String id = Hashing.sha256().hashString(key(artifact) + '|' + artifact.toPath().getAbsolutePath(),
+                StandardCharsets.UTF_8).toString();
+        return new File(new File(dir, ProxyUtils.getPath(artifact.getVersion())), id + ".properties");
+    }
+
+    public static boolean isSupported(ArtifactInterface artifact) {
+        ArtifactInterface current = artifact;
+        while (current != null) {
+            if (current.getSourceType() != ArtifactInterface.SourceType.DIR && !isRelease(current)) {
+                return false;
+            }
+            if (!hasStableText(current.getPredicate())) {
+                LOGGER.debug("Predicate of artifact {} has no toString of its own. Resolution manifest is skipped",
+                        current.getName());
+                return false;
+            }
+            current = current.hasFallback() ? current.getFallback() : null;
+        }
+        return true;
+    }
+
+    public static Map<String, Long> stamp(ArtifactInterface artifact) {
+        if (!isEnabled() || !isSupported(artifact)) {
+            return null;
+        }
+
+        // taken before scanning, so a change during the scan invalidates the manifest
+
+        Map<String, Long> dirs = Maps.newLinkedHashMap();
+        ArtifactInterface current = artifact;
+        while (current != null) {
+            // released Maven versions never change, only their files are checked
+            if (current.getSourceType() == ArtifactInterface.SourceType.DIR) {
+                for (File dir: new File[]{current.toPath(), current.toParentPath()}) {
+                    dirs.put(dir.getAbsolutePath(), lastModified(dir));
+                }
+            }
+            current = current.hasFallback() ? current.getFallback() : null;
+        }
+        return dirs;
+    }
+
+    public static List<URL> read(ArtifactInterface artifact) {
+        if (!isEnabled() || !isSupported(artifact)) {
+            return null;
+        }
+
+        File manifest = getManifestFile(artifact);
+        if (manifest == null || !manifest.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(manifest)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to read resolution manifest {}", manifest.getAbsolutePath(), e);
+            return null;
+        }
+
+        if (!FORMAT.equals(properties.getProperty("format")) ||
+                !key(artifact).equals(properties.getProperty("key"))) {
+            return null;
+        }
+
+        for (int i = 0; properties.containsKey("dir." + i); i++) {
+            List<String> parts = Splitter.on('|').limit(2).splitToList(properties.getProperty("dir." + i));
+            if (parts.size() != 2 || lastModified(new File(parts.get(1))) != NumberUtils.toLong(parts.get(0), Long.MIN_VALUE)) {
+                LOGGER.info("Resolution manifest for {} is stale", artifact.getName());
+                return null;
+            }
+        }
+
+        // a fast jar is valid only while the jars it was repacked from are unchanged
+        if (readFiles(artifact, properties, "source.") == null) {
+            return null;
+        }
+        List<URL> urls = readFiles(artifact, properties, "url.");
+        if (urls == null) {
+            return null;
+        }
+
+        LOGGER.info("Resolved artifact {} from manifest {}", artifact.getName(), manifest.getAbsolutePath());
+        return ImmutableList.copyOf(urls);
+    }
+
+    public static void write(ArtifactInterface artifact, Map<String, Long> dirs, List<URL> urls) {
+        write(artifact, dirs, urls, urls);
+    }
+
+    /**
+     * Writes the manifest of an artifact whose loaded URLs were built from other jars, as a fast
+     * jar is. The sources are stamped too, so a source jar replaced in place invalidates the manifest.
+     */
+    public static void write(ArtifactInterface artifact, Map<String, Long> dirs, List<URL> sources, List<URL> urls) {
+        File manifest = getManifestFile(artifact);
+        if (manifest == null || dirs == null || urls == null || urls.isEmpty()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("format", FORMAT);
+        properties.setProperty("key", key(artifact));
+        int i = 0;
+        for (Map.Entry<String, Long> dir: dirs.entrySet()) {
+            properties.setProperty("dir." + i++, dir.getValue() + "|" + dir.getKey());
+        }
+        if (sources != urls && !writeFiles(artifact, properties, "source.", sources)) {
+            return;
+        }
+        if (!writeFiles(artifact, properties, "url.", urls)) {
+            return;
+        }
+
+        File temp = new File(manifest.getParentFile(), manifest.getName() + ".tmp" + System.nanoTime());
+        try {
+            DirUtils.forceMkdir(manifest.getParentFile(), true);
+            try (OutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, artifact.getName());
+            }
+            try {
+                Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to write resolution manifest {}", manifest.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    public static void invalidate(ArtifactInterface artifact) {
+        File manifest = getManifestFile(artifact);
+        if (manifest != null) {
+            FileUtils.deleteQuietly(manifest);
+        }
+    }
+
+    private static boolean writeFiles(ArtifactInterface artifact, Properties properties, String prefix, List<URL> urls) {
+        int i = 0;
+        for (URL url: urls) {
+            File file = FileUtils.toFile(url);
+            if (file == null || !file.isFile()) {
+                LOGGER.debug("Artifact {} resolved to non file URL {}. Manifest is not written", artifact.getName(), url);
+                return false;
+            }
+            properties.setProperty(prefix + i++, file.length() + "|" + lastModified(file) + "|" + url);
+        }
+        return true;
+    }
+
+    private static List<URL> readFiles(ArtifactInterface artifact, Properties properties, String prefix) {
+        List<URL> urls = Lists.newArrayList();
+        for (int i = 0; properties.containsKey(prefix + i); i++) {
+            List<String> parts = Splitter.on('|').limit(3).splitToList(properties.getProperty(prefix + i));
+            if (parts.size() != 3) {
+                return null;
+            }
+            try {
+                URL url = new URL(parts.get(2));
+                File file = FileUtils.toFile(url);
+                if (file == null || file.length() != NumberUtils.toLong(parts.get(0), MISSING) ||
+                        lastModified(file) != NumberUtils.toLong(parts.get(1), MISSING)) {
+                    LOGGER.info("Resolution manifest for {} is stale", artifact.getName());
+                    return null;
+                }
+                urls.add(url);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return urls;
+    }
+
+    private static boolean isRelease(ArtifactInterface artifact) {
+        return artifact.getSourceType() == ArtifactInterface.SourceType.MAVEN &&
+                !StringUtils.endsWith(artifact.getVersion().getVersion(), "-SNAPSHOT");
+    }
+
+    private static String key(ArtifactInterface artifact) {
+        return Joiner.on('|').useForNull(StringUtils.EMPTY).join(artifact.getName(), artifact.getRoot(),
+                artifact.getExtensions(), artifact.isFastJar(), artifact.getPredicate());
+    }
+
+    // the predicate is part of the key, so it must describe itself the same way in every run
+    private static boolean hasStableText(Predicate<String> predicate) {
+        if (predicate == null || predicate instanceof ArtifactFilter) {
+            return true;
+        }
+        try {
+            return predicate.getClass().getMethod("toString").getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static long lastModified(File file) {
+        try {
+            return Files.getLastModifiedTime(file.toPath()).toMillis();
+        } catch (IOException e) {
+            return MISSING;
+        }
+    }
+}
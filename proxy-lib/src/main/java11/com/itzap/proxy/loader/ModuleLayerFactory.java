@@ -0,0 +1,238 @@
+package com.itzap.proxy.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.Configuration;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds one module layer per artifact. Plain jars become automatic modules, all of them are roots,
+ * and the layer is defined with a single loader whose parent is the artifact parent loader. Jars
+ * whose file name does not give a valid automatic module name get a sanitized name instead.
+ */
+class ModuleLayerFactory implements LayerFactory {
+    private static final String SERVICES = "META-INF/services/";
+
+    @Override
+    public LayerClassLoader newClassLoader(String name, List<URL> urls, ClassLoader parent) throws Exception {
+        List<Path> named = new ArrayList<>();
+        Map<String, ModuleReference> renamed = new LinkedHashMap<>();
+        for (URL url: urls) {
+            if (!"file".equals(url.getProtocol())) {
+                throw new IllegalArgumentException(url + " is not a local jar");
+            }
+
+            Path path = Paths.get(url.toURI());
+            try {
+                ModuleFinder.of(path).findAll();
+                named.add(path);
+            } catch (FindException e) {
+                ModuleReference reference = automaticModule(path);
+                renamed.put(reference.descriptor().name(), reference);
+            }
+        }
+
+        // every reader the layer opens is closed with the class loader
+        Collection<Closeable> readers = new ConcurrentLinkedQueue<>();
+        Map<String, ModuleReference> references = new LinkedHashMap<>();
+        for (ModuleReference reference: ModuleFinder.of(named.toArray(new Path[0])).findAll()) {
+            references.put(reference.descriptor().name(), tracked(reference, readers));
+        }
+        for (ModuleReference reference: renamed.values()) {
+            references.put(reference.descriptor().name(), tracked(reference, readers));
+        }
+
+        ModuleFinder finder = new ModuleFinder() {
+            @Override
+            public Optional<ModuleReference> find(String moduleName) {
+                return Optional.ofNullable(references.get(moduleName));
+            }
+
+            @Override
+            public Set<ModuleReference> findAll() {
+                return new HashSet<>(references.values());
+            }
+        };
+        Set<String> roots = new HashSet<>();
+        for (ModuleReference reference: finder.findAll()) {
+            roots.add(reference.descriptor().name());
+        }
+
+        ModuleLayer boot = ModuleLayer.boot();
+        Configuration configuration = boot.configuration().resolve(finder, ModuleFinder.of(), roots);
+        ModuleLayer layer = ModuleLayer.defineModulesWithOneLoader(configuration, List.of(boot), parent).layer();
+
+        ClassLoader loader = null;
+        Map<String, ClassLoader> packages = new HashMap<>();
+        for (Module module: layer.modules()) {
+            loader = module.getClassLoader();
+            for (String pkg: module.getPackages()) {
+                packages.put(pkg, loader);
+            }
+        }
+        if (loader == null) {
+            throw new IllegalArgumentException("No modules found for " + name);
+        }
+
+        return new LayerClassLoader(urls, parent, packages, loader, readers);
+    }
+
+    private static ModuleReference tracked(ModuleReference reference, Collection<Closeable> readers) {
+        return new ModuleReference(reference.descriptor(), reference.location().orElse(null)) {
+            @Override
+            public ModuleReader open() throws IOException {
+                ModuleReader reader = reference.open();
+                readers.add(reader);
+                return reader;
+            }
+        };
+    }
+
+    private static ModuleReference automaticModule(Path path) throws IOException {
+        Set<String> packages = new HashSet<>();
+        Map<String, List<String>> services = new HashMap<>();
+        try (JarFile jar = new JarFile(path.toFile())) {
+            for (JarEntry entry: Collections.list(jar.entries())) {
+                String entryName = entry.getName();
+                if (entryName.startsWith(SERVICES) && !entry.isDirectory() && entryName.length() > SERVICES.length()) {
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        services.put(entryName.substring(SERVICES.length()), providers(in));
+                    }
+                } else if (entryName.endsWith(".class") && !entryName.startsWith("META-INF/") &&
+                        !entryName.equals("module-info.class") && entryName.indexOf('/') > 0) {
+                    packages.add(entryName.substring(0, entryName.lastIndexOf('/')).replace('/', '.'));
+                }
+            }
+        }
+
+        ModuleDescriptor.Builder builder = ModuleDescriptor.newAutomaticModule(moduleName(path))
+                .packages(packages);
+        for (Map.Entry<String, List<String>> service: services.entrySet()) {
+            List<String> providers = service.getValue().stream()
+                    .filter(provider -> packages.contains(packageOf(provider)))
+                    .collect(Collectors.toList());
+            if (!providers.isEmpty()) {
+                builder.provides(service.getKey(), providers);
+            }
+        }
+
+        ModuleDescriptor descriptor = builder.build();
+        URI location = path.toUri();
+        return new ModuleReference(descriptor, location) {
+            @Override
+            public ModuleReader open() throws IOException {
+                return new JarModuleReader(new JarFile(path.toFile()), location);
+            }
+        };
+    }
+
+    // same idea as the JDK derivation, but every part is made a valid identifier
+    static String moduleName(Path path) {
+        String fileName = path.getFileName().toString();
+        String base = fileName.endsWith(".jar") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        String[] parts = base.replaceAll("[^A-Za-z0-9]", ".").split("\\.");
+        StringBuilder name = new StringBuilder();
+        for (String part: parts) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            if (!Character.isJavaIdentifierStart(part.charAt(0))) {
+                name.append('_');
+            }
+            name.append(part);
+        }
+        return name.length() == 0 ? "unnamed.jar" : name.toString();
+    }
+
+    private static List<String> providers(InputStream in) throws IOException {
+        List<String> providers = new ArrayList<>();
+        for (String line: new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+            int comment = line.indexOf('#');
+            String provider = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (!provider.isEmpty()) {
+                providers.add(provider);
+            }
+        }
+        return providers;
+    }
+
+    private static String packageOf(String className) {
+        int dot = className.lastIndexOf('.');
+        return dot < 0 ? "" : className.substring(0, dot);
+    }
+
+    private static class JarModuleReader implements ModuleReader {
+        private final JarFile jar;
+        private final URI location;
+        private volatile boolean closed;
+
+        private JarModuleReader(JarFile jar, URI location) {
+            this.jar = jar;
+            this.location = location;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException {
+            JarEntry entry = entry(name);
+            return entry == null ? Optional.empty() : Optional.of(URI.create("jar:" + location + "!/" + name));
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException {
+            JarEntry entry = entry(name);
+            return entry == null ? Optional.empty() : Optional.of(jar.getInputStream(entry));
+        }
+
+        @Override
+        public Stream<String> list() throws IOException {
+            ensureOpen();
+            return jar.stream().map(JarEntry::getName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            jar.close();
+        }
+
+        // the same contract as the JDK readers, which the layer loader expects
+        private JarEntry entry(String name) throws IOException {
+            ensureOpen();
+            return jar.getJarEntry(name);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("ModuleReader is closed");
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.model.ArtifactInterface;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder implementation of {@link EventSink}. The enabled state of each event type is
+ * checked before an event is created, so nothing is allocated while JFR is not recording it.
+ */
+class JfrEventSink implements EventSink {
+    private static final String CATEGORY = "itzap proxy";
+    private static final EventType CALL = EventType.getEventType(CallEvent.class);
+    private static final EventType LOADER = EventType.getEventType(LoaderEvent.class);
+    private static final EventType EXTRACTION = EventType.getEventType(ExtractionEvent.class);
+    private static final EventType RESOLUTION_MISS = EventType.getEventType(ResolutionMissEvent.class);
+
+    @Override
+    public Object beginCall() {
+        return begin(CALL, new CallEvent());
+    }
+
+    @Override
+    public void endCall(Object event, ArtifactInterface artifact, Class<?> type, String method, boolean failed) {
+        CallEvent call = (CallEvent) event;
+        call.end();
+        if (call.shouldCommit()) {
+            call.artifact = name(artifact);
+            call.version = version(artifact);
+            call.className = type == null ? null : type.getName();
+            call.method = method;
+            call.failed = failed;
+            call.commit();
+        }
+    }
+
+    @Override
+    public Object beginLoader() {
+        return begin(LOADER, new LoaderEvent());
+    }
+
+    @Override
+    public void endLoader(Object event, ArtifactInterface artifact, ClassLoader loader, int urls) {
+        LoaderEvent created = (LoaderEvent) event;
+        created.end();
+        if (created.shouldCommit()) {
+            created.artifact = name(artifact);
+            created.version = version(artifact);
+            created.engine = artifact == null ? null : String.valueOf(artifact.getLoaderEngine());
+            created.loaderClass = loader == null ? null : loader.getClass().getName();
+            created.urls = urls;
+            created.commit();
+        }
+    }
+
+    @Override
+    public Object beginExtraction() {
+        return begin(EXTRACTION, new ExtractionEvent());
+    }
+
+    @Override
+    public void endExtraction(Object event, ArtifactInterface artifact, int jars, long bytes) {
+        ExtractionEvent extraction = (ExtractionEvent) event;
+        extraction.end();
+        if (extraction.shouldCommit()) {
+            extraction.artifact = name(artifact);
+            extraction.version = version(artifact);
+            extraction.jars = jars;
+            extraction.bytes = bytes;
+            extraction.commit();
+        }
+    }
+
+    @Override
+    public Object beginResolutionMiss() {
+        return begin(RESOLUTION_MISS, new ResolutionMissEvent());
+    }
+
+    @Override
+    public void endResolutionMiss(Object event, ArtifactInterface artifact, int urls) {
+        ResolutionMissEvent miss = (ResolutionMissEvent) event;
+        miss.end();
+        if (miss.shouldCommit()) {
+            miss.artifact = name(artifact);
+            miss.version = version(artifact);
+            miss.sourceType = artifact == null ? null : String.valueOf(artifact.getSourceType());
+            miss.urls = urls;
+            miss.commit();
+        }
+    }
+
+    private static Event begin(EventType type, Event event) {
+        if (!type.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    private static String name(ArtifactInterface artifact) {
+        return artifact == null ? null : artifact.getName();
+    }
+
+    private static String version(ArtifactInterface artifact) {
+        return artifact == null || artifact.getVersion() == null ? null : artifact.getVersion().getVersion();
+    }
+
+    @Name("com.itzap.proxy.Call")
+    @Label("Proxied Call")
+    @Category(CATEGORY)
+    @Threshold("20 ms")
+    static class CallEvent extends Event {
+        @Label("Artifact")
+        String artifact;
+
+        @Label("Version")
+        String version;
+
+        @Label("Class")
+        String className;
+
+        @Label("Method")
+        String method;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.itzap.proxy.LoaderCreation")
+    @Label("Artifact Loader Creation")
+    @Category(CATEGORY)
+    @Threshold("0 ms")
+    static class LoaderEvent extends Event {
+        @Label("Artifact")
+        String artifact;
+
+        @Label("Version")
+        String version;
+
+        @Label("Engine")
+        String engine;
+
+        @Label("Loader Class")
+        String loaderClass;
+
+        @Label("URLs")
+        int urls;
+    }
+
+    @Name("com.itzap.proxy.Extraction")
+    @Label("Jar Extraction")
+    @Description("Nested jars extracted from the application jar")
+    @Category(CATEGORY)
+    @Threshold("0 ms")
+    static class ExtractionEvent extends Event {
+        @Label("Artifact")
+        String artifact;
+
+        @Label("Version")
+        String version;
+
+        @Label("Jars")
+        int jars;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.itzap.proxy.ResolutionMiss")
+    @Label("Resolution Miss")
+    @Description("Artifact URLs resolved from their source because no valid resolution manifest was found")
+    @Category(CATEGORY)
+    @Threshold("0 ms")
+    @StackTrace(false)
+    static class ResolutionMissEvent extends Event {
+        @Label("Artifact")
+        String artifact;
+
+        @Label("Version")
+        String version;
+
+        @Label("Source Type")
+        String sourceType;
+
+        @Label("URLs")
+        int urls;
+    }
+}
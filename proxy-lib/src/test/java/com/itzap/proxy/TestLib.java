@@ -0,0 +1,36 @@
+package com.itzap.proxy;
+
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.DirArtifact;
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Copies of the test library, each in its own temporary folder, so tests never load the shared
+ * build output and never see each other's caches.
+ */
+public final class TestLib {
+    public static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    private TestLib() {}
+
+    // <folder>/<name>/1.0/<test lib jar>
+    public static File copy(TemporaryFolder folder, String name) throws IOException {
+        File libDir = folder.newFolder(name, "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+        return libDir;
+    }
+
+    public static File jar(File libDir) {
+        return new File(libDir, ArtifactClassLoaderTest.testLibJar().getName());
+    }
+
+    public static DirArtifact.Builder artifact(TemporaryFolder folder, String name, Class<?> clazz) throws IOException {
+        return DirArtifact.builder()
+                .withClazz(clazz)
+                .withVersionInfo(ProxyUtils.newVersionInfo(copy(folder, name)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ArtifactClassLoaderTest {
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public static File testLibJar() {
+        String libPath = ArtifactClassLoaderTest.class.getResource("/").getPath();
+        File libDir = new File(libPath + "../../../test-lib/target/1.0");
+        return FileUtils.listFiles(libDir, new String[]{"jar"}, false).iterator().next();
+    }
+
+    @Test
+    public void loadDeflatedJar() throws Exception {
+        assertLoads(testLibJar());
+    }
+
+    @Test
+    public void loadStoredJar() throws Exception {
+        File stored = folder.newFile("stored.jar");
+        try (JarFile jar = new JarFile(testLibJar());
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(stored))) {
+            for (JarEntry entry: Collections.list(jar.entries())) {
+                byte[] bytes = IOUtils.toByteArray(jar.getInputStream(entry));
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+
+                ZipEntry copy = new ZipEntry(entry.getName());
+                copy.setMethod(ZipEntry.STORED);
+                copy.setSize(bytes.length);
+                copy.setCompressedSize(bytes.length);
+                copy.setCrc(crc.getValue());
+                out.putNextEntry(copy);
+                out.write(bytes);
+                out.closeEntry();
+            }
+        }
+
+        MappedJarSource source = MappedJarSource.open(stored);
+        assertThat(source.getIndex().getEntry("com/itzap/proxy/test/LibClass.class").isStored(), is(true));
+        assertLoads(stored);
+    }
+
+    private static void assertLoads(File jar) throws Exception {
+        try (ArtifactClassLoader loader = new ArtifactClassLoader(
+                ImmutableList.of(MappedJarSource.open(jar)), ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> clazz = loader.loadClass(LIB_CLASS);
+
+            assertThat(clazz.getClassLoader() == loader, is(true));
+            assertThat(clazz.getMethod("getLibVersion").invoke(clazz.newInstance()), is((Object) "1.0"));
+            assertThat(clazz.getPackage(), notNullValue());
+            assertThat(clazz.getProtectionDomain().getCodeSource().getLocation(), is(jar.toURI().toURL()));
+
+            try (InputStream manifest = loader.getResourceAsStream(JarFile.MANIFEST_NAME)) {
+                assertThat(manifest, notNullValue());
+            }
+        }
+    }
+}
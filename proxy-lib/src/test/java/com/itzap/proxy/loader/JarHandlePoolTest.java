@@ -0,0 +1,49 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+
+public class JarHandlePoolTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final int maxOpen = JarHandlePool.get().getMaxOpen();
+
+    @After
+    public void restore() {
+        JarHandlePool.get().setMaxOpen(maxOpen);
+    }
+
+    @Test
+    public void boundedOpenJars() throws Exception {
+        File first = ArtifactClassLoaderTest.testLibJar();
+        File second = folder.newFile("copy.jar");
+        Files.copy(first, second);
+
+        JarHandlePool pool = JarHandlePool.get();
+        pool.setMaxOpen(1);
+        long evictions = pool.getStats().getEvictions();
+
+        try (ArtifactClassLoader loader = new ArtifactClassLoader(
+                ImmutableList.of(PooledJarSource.open(second), PooledJarSource.open(first)),
+                ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> clazz = loader.loadClass("com.itzap.proxy.test.LibClass");
+            assertThat(clazz.getMethod("getLibVersion").invoke(clazz.newInstance()), is((Object) "1.0"));
+            assertThat(loader.getResource("META-INF/MANIFEST.MF").openStream().read() > 0, is(true));
+
+            assertThat(pool.getStats().getOpen(), lessThanOrEqualTo(1));
+            assertThat(pool.getStats().getEvictions() > evictions, is(true));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Startup benchmark on a synthetic 50 jar artifact: time to open the jars and load every class
+ * with the URL loader and with the memory-mapped loader, for deflated and stored jars.
+ * Run from the proxy-lib test class path on a JDK (the classes are compiled on the fly).
+ */
+public class MappedLoaderBenchmark {
+    private static final int JARS = 50;
+    private static final int CLASSES_PER_JAR = 40;
+    private static final int WARM_UP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.out.println("A JDK is required to compile the synthetic classes");
+            return;
+        }
+
+        File work = Files.createTempDirectory("mapped").toFile();
+        try {
+            File classes = compile(compiler, new File(work, "src"), new File(work, "classes"));
+            for (boolean stored: new boolean[]{false, true}) {
+                File dir = new File(work, stored ? "stored" : "deflated");
+                List<File> jars = jar(classes, dir, stored);
+                long url = best(jars, false);
+                long mapped = best(jars, true);
+                System.out.printf("%d %s jars, %d classes: URL %.2f ms, MAPPED %.2f ms (best of %d)%n",
+                        JARS, stored ? "stored" : "deflated", JARS * CLASSES_PER_JAR,
+                        url / 1e6, mapped / 1e6, RUNS);
+            }
+        } finally {
+            FileUtils.deleteQuietly(work);
+        }
+    }
+
+    private static long best(List<File> jars, boolean mapped) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARM_UP + RUNS; i++) {
+            long run = run(jars, mapped);
+            if (i >= WARM_UP) {
+                best = Math.min(best, run);
+            }
+        }
+        return best;
+    }
+
+    private static long run(List<File> jars, boolean mapped) throws Exception {
+        ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        URLClassLoader loader;
+        if (mapped) {
+            List<JarSource> sources = Lists.newArrayList();
+            for (File jar: jars) {
+                sources.add(MappedJarSource.open(jar));
+            }
+            loader = new ArtifactClassLoader(sources, parent);
+        } else {
+            List<URL> urls = Lists.newArrayList();
+            for (File jar: jars) {
+                urls.add(jar.toURI().toURL());
+            }
+            loader = new URLClassLoader(urls.toArray(new URL[0]), parent);
+        }
+        try {
+            for (int jar = 0; jar < JARS; jar++) {
+                for (int clazz = 0; clazz < CLASSES_PER_JAR; clazz++) {
+                    loader.loadClass(className(jar, clazz));
+                }
+            }
+            return stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        } finally {
+            loader.close();
+        }
+    }
+
+    private static File compile(JavaCompiler compiler, File src, File classes) throws Exception {
+        List<String> arguments = Lists.newArrayList("-d", classes.getAbsolutePath());
+        for (int jar = 0; jar < JARS; jar++) {
+            for (int clazz = 0; clazz < CLASSES_PER_JAR; clazz++) {
+                String name = className(jar, clazz);
+                File source = new File(src, name.replace('.', '/') + ".java");
+                StringBuilder body = new StringBuilder();
+                for (int method = 0; method < 10; method++) {
+                    body.append("    public String method").append(method).append("(String value) {\n")
+                            .append("        return value + \"").append(name).append(method).append("\";\n")
+                            .append("    }\n");
+                }
+                FileUtils.write(source, "package " + name.substring(0, name.lastIndexOf('.')) + ";\n" +
+                        "public class " + name.substring(name.lastIndexOf('.') + 1) + " {\n" + body + "}\n",
+                        StandardCharsets.UTF_8);
+                arguments.add(source.getAbsolutePath());
+            }
+        }
+        FileUtils.forceMkdir(classes);
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Failed to compile synthetic classes");
+        }
+        return classes;
+    }
+
+    private static List<File> jar(File classes, File dir, boolean stored) throws Exception {
+        FileUtils.forceMkdir(dir);
+        List<File> jars = Lists.newArrayList();
+        for (int jar = 0; jar < JARS; jar++) {
+            File file = new File(dir, "lib" + jar + ".jar");
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+                for (int clazz = 0; clazz < CLASSES_PER_JAR; clazz++) {
+                    String name = className(jar, clazz).replace('.', '/') + ".class";
+                    byte[] bytes = FileUtils.readFileToByteArray(new File(classes, name));
+                    ZipEntry entry = new ZipEntry(name);
+                    if (stored) {
+                        CRC32 crc = new CRC32();
+                        crc.update(bytes);
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(bytes.length);
+                        entry.setCompressedSize(bytes.length);
+                        entry.setCrc(crc.getValue());
+                    }
+                    out.putNextEntry(entry);
+                    out.write(bytes);
+                    out.closeEntry();
+                }
+            }
+            jars.add(file);
+        }
+        return jars;
+    }
+
+    private static String className(int jar, int clazz) {
+        return "bench.lib" + jar + ".Class" + clazz;
+    }
+}
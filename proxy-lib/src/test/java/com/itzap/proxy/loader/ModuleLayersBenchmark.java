@@ -0,0 +1,75 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.Stopwatch;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import com.itzap.proxy.utils.LibLoader;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the URL and module layer engines on the test-lib artifact: time to create the loader
+ * and load the library class, and time to build an object and make the first call.
+ * Run from the proxy-lib test class path on JDK 11 or later.
+ */
+public class ModuleLayersBenchmark {
+    private static final int WARM_UP = 20;
+    private static final int RUNS = 50;
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    public static void main(String[] args) throws Exception {
+        if (!ModuleLayers.isSupported()) {
+            System.out.println("Module layers are not supported by this JVM");
+            return;
+        }
+
+        File work = Files.createTempDirectory("layers").toFile();
+        try {
+            File libDir = new File(work, "bench/1.0");
+            FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+
+            for (ArtifactInterface.LoaderEngine engine: new ArtifactInterface.LoaderEngine[]{
+                    ArtifactInterface.LoaderEngine.URL, ArtifactInterface.LoaderEngine.MODULE}) {
+                long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+                for (int i = 0; i < WARM_UP + RUNS; i++) {
+                    long[] run = run(libDir, engine);
+                    if (i >= WARM_UP) {
+                        best[0] = Math.min(best[0], run[0]);
+                        best[1] = Math.min(best[1], run[1]);
+                    }
+                }
+                System.out.printf("%s engine: class load %.2f ms, first call %.2f ms (best of %d)%n",
+                        engine, best[0] / 1e6, best[1] / 1e6, RUNS);
+            }
+        } finally {
+            LibLoader.unloadAll();
+            FileUtils.deleteQuietly(work);
+        }
+    }
+
+    private static long[] run(File libDir, ArtifactInterface.LoaderEngine engine) throws Exception {
+        LibLoader.unloadAll();
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(ModuleLayersBenchmark.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .withLoaderEngine(engine)
+                .build();
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        LibLoader.getLibClassLoader(artifact).loadClass(LIB_CLASS);
+        long classLoad = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+        stopwatch.reset().start();
+        ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build()
+                .call("getLibVersion");
+        return new long[]{classLoad, stopwatch.elapsed(TimeUnit.NANOSECONDS)};
+    }
+}
@@ -0,0 +1,67 @@
+package com.itzap.proxy.loader;
+
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LibLoader;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URLClassLoader;
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ModuleLayersTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void loadThroughModuleLayer() throws Exception {
+        Assume.assumeTrue(ModuleLayers.isSupported());
+
+        ArtifactInterface artifact = TestLib.artifact(folder, "layered", ModuleLayersTest.class)
+                .withLoaderEngine(ArtifactInterface.LoaderEngine.MODULE)
+                .build();
+
+        URLClassLoader loader = LibLoader.getLibClassLoader(artifact);
+        assertThat(loader, instanceOf(LayerClassLoader.class));
+        LayerClassLoader layered = (LayerClassLoader) loader;
+        assertThat(loader.loadClass(LIB_CLASS).getClassLoader() == layered.getLayerLoader(), is(true));
+        assertThat(layered.getDefinedClasses(), is(1));
+
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        assertThat(caller.call("getLibVersion").asString(), is("1.0"));
+    }
+
+    @Test
+    public void closeModuleReaders() throws Exception {
+        Assume.assumeTrue(ModuleLayers.isSupported());
+
+        ArtifactInterface artifact = TestLib.artifact(folder, "closed", ModuleLayersTest.class)
+                .withLoaderEngine(ArtifactInterface.LoaderEngine.MODULE)
+                .build();
+
+        LayerClassLoader loader = (LayerClassLoader) LibLoader.getLibClassLoader(artifact);
+        String resource = LIB_CLASS.replace('.', '/') + ".class";
+        assertThat(loader.getResource(resource) != null, is(true));
+
+        loader.close();
+        assertThat(loader.getResource(resource), nullValue());
+    }
+}
@@ -0,0 +1,64 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class NestedJarHandlerTest {
+    private static final String NESTED = "lib/test/1.0/test-lib.jar";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadNestedInPlace() throws Exception {
+        byte[] bytes = Files.toByteArray(ArtifactClassLoaderTest.testLibJar());
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        File outer = folder.newFile("outer.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(outer))) {
+            ZipEntry entry = new ZipEntry(NESTED);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(bytes);
+            out.closeEntry();
+        }
+
+        URL url = NestedJarHandler.toUrl(outer, NESTED);
+        assertThat(NestedJarHandler.parse(url.toExternalForm()), is(url));
+
+        try (ArtifactClassLoader loader = new ArtifactClassLoader(
+                ImmutableList.of(NestedJarHandler.open(url)), ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> clazz = loader.loadClass("com.itzap.proxy.test.LibClass");
+            assertThat(clazz.getMethod("getLibVersion").invoke(clazz.newInstance()), is((Object) "1.0"));
+
+            URL manifest = loader.getResource(JarFile.MANIFEST_NAME);
+            assertThat(NestedJarHandler.isNested(manifest), is(true));
+            try (InputStream in = manifest.openStream()) {
+                assertThat(IOUtils.toString(in, "UTF-8").contains("Manifest-Version"), is(true));
+            }
+            assertThat(clazz.getPackage(), notNullValue());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.itzap.proxy.loader;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SharedJarLoadersTest {
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        SharedJarLoaders.clear();
+        SharedJarLoaders.setPolicy(null);
+    }
+
+    @Test
+    public void shareIdenticalSets() throws Exception {
+        SharedJarLoaders.setPolicy(Predicates.<String>alwaysTrue());
+        ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+
+        List<URL> first = artifactJars("first", "same");
+        List<URL> second = artifactJars("second", "same");
+        List<URL> third = artifactJars("third", "diff");
+        long secondBytes = 0;
+        for (URL url: second) {
+            secondBytes += FileUtils.toFile(url).length();
+        }
+        ClassLoader firstView = SharedJarLoaders.share("first", first, parent);
+        ClassLoader secondView = SharedJarLoaders.share("second", second, parent);
+        ClassLoader thirdView = SharedJarLoaders.share("third", third, parent);
+
+        assertThat(first.isEmpty(), is(true));
+        assertThat(secondView, sameInstance(firstView));
+        assertThat(read(secondView, "extra.txt"), is("same"));
+
+        // one jar differs, so the common jar must not link against another artifact's copy
+        assertThat(thirdView, not(sameInstance(firstView)));
+        assertThat(thirdView.loadClass(LIB_CLASS), not(sameInstance(firstView.loadClass(LIB_CLASS))));
+        assertThat(read(thirdView, "extra.txt"), is("diff"));
+
+        SharedJarLoaders.ArtifactShare share = SharedJarLoaders.getReport().get("second");
+        assertThat(share.getSharedJars(), is(2));
+        assertThat(share.getSavedBytes(), is(secondBytes));
+        assertThat(SharedJarLoaders.getLoaders().size(), is(2));
+
+        SharedJarLoaders.release("first");
+        assertThat(SharedJarLoaders.getLoaders().size(), is(2));
+        assertThat(secondView.loadClass(LIB_CLASS).getName(), is(LIB_CLASS));
+
+        SharedJarLoaders.release("second");
+        SharedJarLoaders.release("third");
+        assertThat(SharedJarLoaders.getLoaders().isEmpty(), is(true));
+    }
+
+    private List<URL> artifactJars(String name, String extraText) throws Exception {
+        File dir = folder.newFolder(name);
+        File common = new File(dir, "common.jar");
+        FileUtils.copyFile(ArtifactClassLoaderTest.testLibJar(), common);
+        File extra = new File(dir, "extra.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(extra))) {
+            out.putNextEntry(new ZipEntry("extra.txt"));
+            out.write(extraText.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return Lists.newArrayList(common.toURI().toURL(), extra.toURI().toURL());
+    }
+
+    private static String read(ClassLoader loader, String resource) throws Exception {
+        try (InputStream in = loader.getResourceAsStream(resource)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.itzap.proxy.maven;
+
+import com.google.common.collect.ImmutableList;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.MavenArtifact;
+import com.itzap.proxy.utils.LibLoader;
+import com.itzap.proxy.utils.ResolutionManifest;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MavenArtifactTest {
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File remote;
+    private File local;
+
+    @Before
+    public void setUp() throws Exception {
+        remote = folder.newFolder("remote");
+        local = folder.newFolder("local");
+        ResolutionManifest.setDirectory(folder.newFolder("manifests"));
+
+        pom("com.example", "parent", "1.0", "<packaging>pom</packaging>" +
+                "<properties><lib.version>2.0</lib.version></properties>" +
+                "<dependencyManagement><dependencies>" +
+                dependency("com.example", "lib-b", "1.1", null) +
+                "</dependencies></dependencyManagement>");
+        module("app", "1.0", "<parent><groupId>com.example</groupId><artifactId>parent</artifactId>" +
+                "<version>1.0</version></parent>" +
+                "<dependencies>" +
+                "<dependency><groupId>com.example</groupId><artifactId>lib-a</artifactId>" +
+                "<version>${lib.version}</version>" +
+                "<exclusions><exclusion><groupId>com.example</groupId><artifactId>lib-d</artifactId></exclusion>" +
+                "</exclusions></dependency>" +
+                "<dependency><groupId>com.example</groupId><artifactId>lib-b</artifactId></dependency>" +
+                dependency("junit", "junit", "4.12", "test") +
+                "</dependencies>");
+        module("lib-a", "2.0", "<dependencies>" +
+                dependency("com.example", "lib-b", "1.0", null) +
+                dependency("com.example", "lib-c", "1.0", "runtime") +
+                "<dependency><groupId>com.example</groupId><artifactId>lib-opt</artifactId>" +
+                "<version>1.0</version><optional>true</optional></dependency>" +
+                "</dependencies>");
+        module("lib-b", "1.1", "");
+        module("lib-c", "1.0", "<dependencies>" + dependency("com.example", "lib-d", "1.0", null) + "</dependencies>");
+    }
+
+    @After
+    public void restore() {
+        ResolutionManifest.setDirectory(null);
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void resolveRuntimeClasspath() throws Exception {
+        MavenResolver resolver = new MavenResolver(ImmutableList.of(remote.toURI()), local);
+
+        List<Coordinates> classpath = resolver.resolveGraph(new Coordinates("com.example", "app", "1.0"));
+
+        assertThat(classpath, is((List<Coordinates>) ImmutableList.of(
+                new Coordinates("com.example", "app", "1.0"),
+                new Coordinates("com.example", "lib-a", "2.0"),
+                new Coordinates("com.example", "lib-b", "1.1"),
+                new Coordinates("com.example", "lib-c", "1.0"))));
+    }
+
+    @Test
+    public void loadFromRepositoryAndReuseManifest() throws Exception {
+        MavenArtifact artifact = MavenArtifact.builder()
+                .withCoordinates("com.example:app:1.0")
+                .withRepository(remote.toURI())
+                .withLocalRepository(local)
+                .build();
+
+        URLClassLoader loader = LibLoader.getLibClassLoader(artifact);
+        assertThat(loader.loadClass(LIB_CLASS), notNullValue());
+        assertThat(loader.getURLs().length, is(4));
+        assertThat(new File(local, "com/example/lib-c/1.0/lib-c-1.0.jar").isFile(), is(true));
+
+        // repeat loads take the classpath from the manifest, without the remote repository or any POM
+        FileUtils.deleteDirectory(remote);
+        for (File pom: FileUtils.listFiles(local, new String[]{"pom"}, true)) {
+            FileUtils.forceDelete(pom);
+        }
+        assertThat(ResolutionManifest.read(artifact), is(Arrays.asList(loader.getURLs())));
+        LibLoader.unloadAll();
+        assertThat(LibLoader.getLibClassLoader(artifact).getURLs(), is(loader.getURLs()));
+        assertThat(FileUtils.listFiles(local, new String[]{"pom"}, true).isEmpty(), is(true));
+    }
+
+    @Test
+    public void fetchSnapshotAgain() throws Exception {
+        Coordinates snapshot = new Coordinates("com.example", "lib-s", "1.0-SNAPSHOT");
+        deploySnapshot("20260101.120000", 1, "first");
+        MavenResolver resolver = new MavenResolver(ImmutableList.of(remote.toURI()), local);
+        File jar = resolver.fetch(snapshot, Coordinates.JAR);
+        assertThat(FileUtils.readFileToString(jar, "UTF-8"), is("first"));
+
+        deploySnapshot("20260102.120000", 2, "second");
+        resolver = new MavenResolver(ImmutableList.of(remote.toURI()), local);
+        assertThat(FileUtils.readFileToString(resolver.fetch(snapshot, Coordinates.JAR), "UTF-8"), is("second"));
+        assertThat(resolver.getDownloads(), is(1));
+
+        // without a repository that has it, the local copy is used
+        FileUtils.deleteDirectory(remote);
+        assertThat(FileUtils.readFileToString(resolver.fetch(snapshot, Coordinates.JAR), "UTF-8"), is("second"));
+    }
+
+    private void deploySnapshot(String timestamp, int buildNumber, String content) throws IOException {
+        File dir = new File(remote, "com/example/lib-s/1.0-SNAPSHOT");
+        String value = "1.0-" + timestamp + "-" + buildNumber;
+        FileUtils.write(new File(dir, "lib-s-" + value + ".jar"), content, "UTF-8");
+        FileUtils.write(new File(dir, "maven-metadata.xml"), "<metadata><groupId>com.example</groupId>" +
+                "<artifactId>lib-s</artifactId><version>1.0-SNAPSHOT</version><versioning><snapshot>" +
+                "<timestamp>" + timestamp + "</timestamp><buildNumber>" + buildNumber + "</buildNumber>" +
+                "</snapshot><snapshotVersions><snapshotVersion><extension>jar</extension>" +
+                "<value>" + value + "</value></snapshotVersion></snapshotVersions></versioning></metadata>", "UTF-8");
+    }
+
+    private void module(String artifactId, String version, String body) throws IOException {
+        pom("com.example", artifactId, version, body);
+        FileUtils.copyFile(ArtifactClassLoaderTest.testLibJar(), new File(remote,
+                new Coordinates("com.example", artifactId, version).toPath("jar")));
+    }
+
+    private void pom(String groupId, String artifactId, String version, String body) throws IOException {
+        String project = "<project><modelVersion>4.0.0</modelVersion>" +
+                "<groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>" +
+                "<version>" + version + "</version>" + body + "</project>";
+        FileUtils.write(new File(remote, new Coordinates(groupId, artifactId, version).toPath("pom")),
+                project, "UTF-8");
+    }
+
+    private static String dependency(String groupId, String artifactId, String version, String scope) {
+        return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>" +
+                "<version>" + version + "</version>" +
+                (scope == null ? "" : "<scope>" + scope + "</scope>") + "</dependency>";
+    }
+}
@@ -0,0 +1,80 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.MethodDesriptor;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LibLoader;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ArtifactAccountingTest {
+    private static final int ALLOCATION = 16 * 1024 * 1024;
+
+    private static volatile byte[] sink;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void enable() {
+        ArtifactAccounting.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        ArtifactAccounting.setEnabled(false);
+        ArtifactAccounting.reset();
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void chargeNestedCallsToTheirArtifact() throws Exception {
+        Assume.assumeTrue(ArtifactAccounting.isAllocationSupported());
+
+        ArtifactInterface outer = artifact("outer");
+        final ArtifactInterface inner = artifact("inner");
+        final ProxyCallerInterface lib = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(inner)
+                .setStaticObject(true)
+                .build();
+        ProxyCallerInterface callback = ObjectBuilder.builder()
+                .setInterfaceName(Runnable.class.getName())
+                .setArtifact(outer)
+                .setHandler((proxy, method, params) -> {
+                    sink = new byte[ALLOCATION];
+                    return lib.call(MethodDesriptor.method("sayHi", "accounting")).getResult();
+                })
+                .build();
+
+        ArtifactAccounting.reset();
+        callback.call("run");
+
+        ArtifactCost outerCost = ArtifactAccounting.getCost(outer);
+        ArtifactCost innerCost = ArtifactAccounting.getCost(inner);
+        assertThat(outerCost.getCalls(), is(1L));
+        assertThat(innerCost.getCalls(), is(1L));
+        assertThat(outerCost.getAllocatedBytes(), greaterThanOrEqualTo((long) ALLOCATION));
+        assertThat(innerCost.getAllocatedBytes(), lessThan((long) ALLOCATION));
+        assertThat(outerCost.getElapsedNanos(), greaterThan(0L));
+        assertThat(ArtifactAccounting.getSnapshot().size(), is(2));
+    }
+
+    private ArtifactInterface artifact(String name) throws Exception {
+        return TestLib.artifact(folder, name, ArtifactAccountingTest.class).build();
+    }
+}
@@ -0,0 +1,162 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.MethodDesriptor;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LibLoader;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.rules.TemporaryFolder;
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CallTracerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ArtifactInterface artifact;
+
+    @Before
+    public void setUp() throws Exception {
+        CallTracer.setCapacity(16);
+        CallTracer.setMaxValueLength(16);
+        artifact = TestLib.artifact(folder, "traced", CallTracerTest.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        CallTracer.setSampleRate(0);
+        CallTracer.setSlowThreshold(0, TimeUnit.NANOSECONDS);
+        CallTracer.clear();
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void sampleCallsWithArguments() {
+        ProxyCallerInterface lib = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .setStaticObject(true)
+                .build();
+
+        lib.call(MethodDesriptor.method("sayHi", "nobody"));
+        assertThat(CallTracer.getTraces().isEmpty(), is(true));
+
+        CallTracer.setSampleRate(1);
+        lib.call(MethodDesriptor.builder()
+                .setName("sayHi")
+                .setStatic(true)
+                .setParams(StringUtils.repeat('x', 100))
+                .build());
+
+        List<CallTrace> traces = CallTracer.getTraces();
+        assertThat(traces.size(), is(1));
+        CallTrace trace = traces.get(0);
+        assertThat(trace.getDescriptor(), is("sayHi(String)"));
+        assertThat(trace.getArgumentTypes().get(0), is(String.class.getName()));
+        assertThat(trace.getArguments().get(0), is(StringUtils.repeat('x', 13) + "..."));
+        assertThat(trace.getVersion(), is("1.0"));
+        assertThat(trace.getDepth(), is(0));
+        assertThat(trace.isSlow(), is(false));
+    }
+
+    @Test
+    public void summarizeLargeAndFailingValues() throws Exception {
+        CallTracer.setMaxValueLength(32);
+        CallTracer.setSampleRate(1);
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new StackOverflowError();
+            }
+        };
+        CallTracer.exit(CallTracer.enter(), artifact, CallTracerTest.class,
+                Object.class.getMethod("equals", Object.class),
+                new Object[]{new ArrayList<>(Collections.nCopies(1000, 1)), new int[]{1, 2}, failing}, false);
+
+        List<String> values = CallTracer.getTraces().get(0).getArguments();
+        assertThat(values.get(0), is("ArrayList<size=1000>"));
+        assertThat(values.get(1), is("{1,2}"));
+        assertThat(values.get(2), is("<StackOverflowError>"));
+    }
+
+    @Test
+    public void captureSlowAndNestedCalls() {
+        final ProxyCallerInterface lib = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        ProxyCallerInterface callback = ObjectBuilder.builder()
+                .setInterfaceName(Runnable.class.getName())
+                .setArtifact(artifact)
+                .setHandler((proxy, method, params) -> lib.call("getLibVersion").getResult())
+                .build();
+
+        CallTracer.setSlowThreshold(1, TimeUnit.NANOSECONDS);
+        callback.call("run");
+
+        List<CallTrace> traces = CallTracer.getTraces();
+        assertThat(traces.size(), is(2));
+        // the nested call finishes first
+        CallTrace nested = traces.get(0);
+        CallTrace outer = traces.get(1);
+        assertThat(nested.getDescriptor(), is("getLibVersion()"));
+        assertThat(nested.getDepth(), is(1));
+        assertThat(nested.getParentId(), is(outer.getId()));
+        assertThat(outer.getDepth(), is(0));
+        assertThat(outer.getParentId(), is(0L));
+        assertThat(outer.isSlow(), is(true));
+    }
+
+    @Test
+    public void keepNewestCalls() {
+        ProxyCallerInterface lib = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        CallTracer.setCapacity(4);
+        CallTracer.setSampleRate(1);
+        for (int i = 0; i < 10; i++) {
+            lib.call("getLibVersion");
+        }
+
+        List<CallTrace> traces = CallTracer.getTraces();
+        assertThat(traces.size(), is(4));
+        for (int i = 1; i < traces.size(); i++) {
+            assertThat(traces.get(i).getId() > traces.get(i - 1).getId(), is(true));
+        }
+    }
+
+    @Test
+    public void takeIdsOnlyForCapturedCalls() {
+        ProxyCallerInterface lib = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        CallTracer.setSampleRate(1);
+        lib.call("getLibVersion");
+        CallTracer.setSampleRate(0);
+        CallTracer.setSlowThreshold(1, TimeUnit.HOURS);
+        for (int i = 0; i < 10; i++) {
+            lib.call("getLibVersion");
+        }
+        CallTracer.setSampleRate(1);
+        lib.call("getLibVersion");
+
+        List<CallTrace> traces = CallTracer.getTraces();
+        assertThat(traces.size(), is(2));
+        assertThat(traces.get(1).getId(), is(traces.get(0).getId() + 1));
+    }
+}
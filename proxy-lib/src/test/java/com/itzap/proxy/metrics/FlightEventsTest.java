@@ -0,0 +1,107 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LibLoader;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FlightEventsTest {
+    private static final String CALL = "com.itzap.proxy.Call";
+    private static final String LOADER = "com.itzap.proxy.LoaderCreation";
+    private static final String MISS = "com.itzap.proxy.ResolutionMiss";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void recordEvents() throws Exception {
+        Assume.assumeTrue(FlightEvents.isSupported());
+
+        ArtifactInterface artifact = TestLib.artifact(folder, "recorded", FlightEventsTest.class).build();
+
+        List<RecordedEvent> events;
+        File dump = folder.newFile("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CALL).withThreshold(Duration.ZERO);
+            recording.enable(LOADER);
+            recording.enable(MISS);
+            recording.start();
+
+            ProxyCallerInterface caller = ObjectBuilder.builder()
+                    .setClassName(LIB_CLASS)
+                    .setArtifact(artifact)
+                    .build();
+            caller.call("getLibVersion");
+
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+        events = RecordingFile.readAllEvents(dump.toPath());
+
+        List<RecordedEvent> calls = named(events, CALL);
+        assertThat(calls.size(), is(1));
+        assertThat(calls.get(0).getString("artifact"), is(artifact.getName()));
+        assertThat(calls.get(0).getString("version"), is("1.0"));
+        assertThat(calls.get(0).getString("className"), is(LIB_CLASS));
+        assertThat(calls.get(0).getString("method"), is("getLibVersion"));
+        assertThat(calls.get(0).getBoolean("failed"), is(false));
+        assertThat(calls.get(0).getThread() != null, is(true));
+
+        List<RecordedEvent> loaders = named(events, LOADER);
+        assertThat(loaders.size(), is(1));
+        assertThat(loaders.get(0).getInt("urls"), is(1));
+        assertThat(named(events, MISS).size(), is(1));
+    }
+
+    @Test
+    public void fastCallsAreBelowDefaultThreshold() throws Exception {
+        Assume.assumeTrue(FlightEvents.isSupported());
+
+        ArtifactInterface artifact = TestLib.artifact(folder, "fast", FlightEventsTest.class).build();
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+
+        File dump = folder.newFile("default.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CALL);
+            recording.start();
+            for (int i = 0; i < 100; i++) {
+                caller.call("getLibVersion");
+            }
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+        assertThat(named(RecordingFile.readAllEvents(dump.toPath()), CALL).isEmpty(), is(true));
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> name.equals(event.getEventType().getName()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,58 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+
+import java.lang.reflect.Method;
+
+/**
+ * Measures the cost of call metrics: one clock read, the metrics lookup plus recording on its own,
+ * and proxied calls to the test-lib artifact with metrics disabled and enabled. Run from the proxy-lib test
+ * class path.
+ */
+public class ProxyMetricsBenchmark {
+    private static final int CALLS = 1_000_000;
+    private static final int RUNS = 10;
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(ProxyMetricsBenchmark.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(ArtifactClassLoaderTest.testLibJar().getParentFile()))
+                .build();
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        Method method = caller.myClass().getMethod("getLibVersion");
+
+        double clock = best(() -> sink += System.nanoTime());
+        double record = best(() -> ProxyMetrics.forMethod(artifact, caller.myClass(), method)
+                .record(System.nanoTime(), false));
+        ProxyMetrics.setEnabled(false);
+        double disabled = best(() -> caller.call("getLibVersion"));
+        ProxyMetrics.setEnabled(true);
+        double enabled = best(() -> caller.call("getLibVersion"));
+
+        System.out.printf("clock read %.1f ns; lookup and record %.1f ns (two clock reads included); " +
+                "proxied call %.1f ns disabled, %.1f ns enabled%n", clock, record, disabled, enabled);
+    }
+
+    private static double best(Runnable call) {
+        double best = Double.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                call.run();
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / CALLS);
+        }
+        return best;
+    }
+}
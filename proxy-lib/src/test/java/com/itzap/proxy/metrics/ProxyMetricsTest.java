@@ -0,0 +1,102 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.ProxyException;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.utils.LibLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import org.junit.rules.TemporaryFolder;
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ProxyMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void enable() {
+        ProxyMetrics.setEnabled(true);
+        ProxyMetrics.reset();
+    }
+
+    @After
+    public void disable() {
+        ProxyMetrics.setEnabled(false);
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void recordCallsAndBuilds() throws Exception {
+        ArtifactInterface artifact = TestLib.artifact(folder, "metrics", ProxyMetricsTest.class).build();
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            assertThat(caller.call("getLibVersion").asString(), is("1.0"));
+        }
+        try {
+            ObjectBuilder.builder()
+                    .setClassName(LIB_CLASS + "Missing")
+                    .setArtifact(artifact)
+                    .build();
+        } catch (ProxyException e) {
+            // expected
+        }
+
+        MethodStats calls = ProxyMetrics.getStats(artifact, LIB_CLASS, "getLibVersion");
+        assertThat(calls, notNullValue());
+        assertThat(calls.getCalls(), is(100L));
+        assertThat(calls.getErrors(), is(0L));
+        assertThat(calls.getP50(), lessThanOrEqualTo(calls.getP99()));
+        assertThat(calls.getP99(), lessThanOrEqualTo(calls.getMax()));
+
+        MethodStats builds = ProxyMetrics.getStats(artifact, LIB_CLASS, MethodMetrics.BUILD);
+        assertThat(builds.getCalls(), is(1L));
+        MethodStats failed = ProxyMetrics.getStats(artifact, LIB_CLASS + "Missing", MethodMetrics.BUILD);
+        assertThat(failed.getErrors(), is(1L));
+
+        Object tracked = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("com.itzap.proxy:type=ProxyMetrics"), "TrackedMethods");
+        assertThat((Integer) tracked, greaterThanOrEqualTo(3));
+
+        ProxyMetrics.reset();
+        assertThat(ProxyMetrics.getStats(artifact, LIB_CLASS, "getLibVersion").getCalls(), is(0L));
+
+        // unloading drops the metrics, a caller that outlives the loader starts a fresh entry
+        LibLoader.unload(artifact.getName());
+        assertThat(ProxyMetrics.getStats(artifact, LIB_CLASS, "getLibVersion"), nullValue());
+        caller.call("getLibVersion");
+        assertThat(ProxyMetrics.getStats(artifact, LIB_CLASS, "getLibVersion").getCalls(), is(1L));
+    }
+
+    @Test
+    public void histogramBuckets() {
+        long previous = -1;
+        for (long value: new long[]{0, 1, 31, 32, 34, 100, 1000, 123456, 1L << 36, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertThat(index, lessThanOrEqualTo(LatencyHistogram.BUCKETS - 1));
+            assertThat(LatencyHistogram.highestValue(index), greaterThanOrEqualTo(Math.min(value, (1L << 37) - 1)));
+            assertThat(LatencyHistogram.highestValue(index), greaterThan(previous));
+            previous = LatencyHistogram.highestValue(index);
+            // within 1/16 of the value
+            assertThat(LatencyHistogram.highestValue(index) - Math.min(value, LatencyHistogram.highestValue(index)),
+                    lessThanOrEqualTo(Math.max(1, value / 16)));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.itzap.proxy.metrics;
+
+import com.itzap.proxy.MethodDesriptor;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.WarmUp;
+import com.itzap.proxy.utils.ArtifactWarmUp;
+import com.itzap.proxy.utils.LibLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.itzap.proxy.TestLib.LIB_CLASS;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StartupTimelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void enable() {
+        StartupTimeline.setEnabled(true);
+    }
+
+    @After
+    public void restore() {
+        StartupTimeline.setEnabled(false);
+        LibLoader.unloadAll();
+        StartupTimeline.clear();
+    }
+
+    @Test
+    public void recordLoadingSteps() throws Exception {
+        ArtifactInterface artifact = TestLib.artifact(folder, "timed", StartupTimelineTest.class).build();
+
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+        caller.call("getLibVersion");
+        caller.call("getLibVersion");
+
+        StartupTimeline timeline = StartupTimeline.get(artifact.getName());
+        assertThat(timeline, notNullValue());
+        Map<StartupTimeline.Phase, Integer> phases = new EnumMap<>(StartupTimeline.Phase.class);
+        for (StartupTimeline.Step step: timeline.getSteps()) {
+            phases.merge(step.getPhase(), 1, Integer::sum);
+            if (step.getPhase() == StartupTimeline.Phase.DIRECTORY_SCAN) {
+                assertThat(step.getFiles(), is(1));
+                assertThat(step.getBytes(), is(ArtifactClassLoaderTest.testLibJar().length()));
+            }
+        }
+        assertThat(phases.get(StartupTimeline.Phase.DISCOVERY), is(1));
+        assertThat(phases.get(StartupTimeline.Phase.FALLBACK_PROBE), is(1));
+        assertThat(phases.get(StartupTimeline.Phase.DIRECTORY_SCAN), is(1));
+        assertThat(phases.get(StartupTimeline.Phase.LOADER_CREATION), is(1));
+        assertThat(phases.get(StartupTimeline.Phase.FIRST_CLASS_LOAD), is(1));
+        assertThat(phases.get(StartupTimeline.Phase.FIRST_CALL), is(1));
+        assertThat(StartupTimeline.isFirstCallPending(), is(false));
+
+        assertThat(timeline.toJson(), containsString("\"phase\":\"FIRST_CALL\",\"detail\":\"getLibVersion\""));
+        assertThat(timeline.toString(), containsString("Startup timeline of " + artifact.getName() + "@1.0"));
+    }
+
+    @Test
+    public void settleUnloadedArtifacts() throws Exception {
+        ArtifactInterface artifact = TestLib.artifact(folder, "unloaded", StartupTimelineTest.class).build();
+        LibLoader.getLibClassLoader(artifact);
+        assertThat(StartupTimeline.isFirstCallPending(), is(true));
+
+        LibLoader.unload(artifact.getName());
+        assertThat(StartupTimeline.isFirstCallPending(), is(false));
+        assertThat(StartupTimeline.get(artifact.getName()), notNullValue());
+    }
+
+    @Test
+    public void skipReplayedWarmUpCalls() throws Exception {
+        ArtifactInterface artifact = TestLib.artifact(folder, "replayed", StartupTimelineTest.class)
+                .withWarmUp(WarmUp.builder()
+                        .withCall(LIB_CLASS, MethodDesriptor.method("getLibVersion"))
+                        .build())
+                .build();
+        LibLoader.getLibClassLoader(artifact);
+        assertThat(ArtifactWarmUp.await(artifact.getName(), 30, TimeUnit.SECONDS), is(true));
+        assertThat(ArtifactWarmUp.getReport().get(artifact.getName()).getCalls(), is(1));
+
+        // the replayed call is not the first call of the artifact
+        assertThat(StartupTimeline.isFirstCallPending(), is(true));
+        for (StartupTimeline.Step step: StartupTimeline.get(artifact.getName()).getSteps()) {
+            assertThat(step.getPhase() == StartupTimeline.Phase.FIRST_CALL, is(false));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filesystem backed stand-in for S3: {@code <root>/<bucket>/<key>}, ListObjectsV2 with paging,
+ * ranged GETs with If-Match, and injectable failures for ranges past a given offset.
+ */
+class FakeS3Server implements HttpHandler, AutoCloseable {
+    private static final int PAGE_SIZE = 2;
+
+    private final File root;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final AtomicInteger objectRequests = new AtomicInteger();
+    final AtomicLong failFrom = new AtomicLong(Long.MAX_VALUE);
+    // listed under keys that do not match their path, such as keys with ../
+    final Map<String, File> aliases = Maps.newConcurrentMap();
+
+    FakeS3Server(File root) throws IOException {
+        this.root = root;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    URI getEndpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = StringUtils.removeStart(exchange.getRequestURI().getPath(), "/");
+            String bucket = StringUtils.substringBefore(path, "/");
+            String key = StringUtils.substringAfter(path, "/");
+            if (key.isEmpty()) {
+                list(exchange, new File(root, bucket), query(exchange.getRequestURI()));
+            } else {
+                get(exchange, new File(new File(root, bucket), key));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void list(HttpExchange exchange, File bucket, Map<String, String> query) throws IOException {
+        TreeMap<String, File> objects = Maps.newTreeMap();
+        Collection<File> files = bucket.isDirectory() ?
+                FileUtils.listFiles(bucket, null, true) : Collections.<File>emptyList();
+        String prefix = StringUtils.defaultString(query.get("prefix"));
+        for (File file: files) {
+            String key = bucket.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            if (key.startsWith(prefix)) {
+                objects.put(key, file);
+            }
+        }
+        for (Map.Entry<String, File> alias: aliases.entrySet()) {
+            if (alias.getKey().startsWith(prefix)) {
+                objects.put(alias.getKey(), alias.getValue());
+            }
+        }
+
+        String token = query.get("continuation-token");
+        Map<String, File> page = token == null ? objects : objects.tailMap(token, false);
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><ListBucketResult>");
+        int count = 0;
+        String last = null;
+        for (Map.Entry<String, File> object: page.entrySet()) {
+            if (count++ == PAGE_SIZE) {
+                break;
+            }
+            last = object.getKey();
+            xml.append("<Contents><Key>").append(last).append("</Key>")
+                    .append("<Size>").append(object.getValue().length()).append("</Size>")
+                    .append("<ETag>&quot;").append(etag(object.getValue())).append("&quot;</ETag></Contents>");
+        }
+        boolean truncated = count > PAGE_SIZE;
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(last).append("</NextContinuationToken>");
+        }
+        xml.append("</ListBucketResult>");
+        send(exchange, 200, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void get(HttpExchange exchange, File file) throws IOException {
+        objectRequests.incrementAndGet();
+        if (!file.isFile()) {
+            send(exchange, 404, new byte[0]);
+            return;
+        }
+
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !StringUtils.strip(ifMatch, "\"").equals(etag(file))) {
+            send(exchange, 412, new byte[0]);
+            return;
+        }
+
+        long from = 0;
+        long to = file.length() - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            String[] bounds = StringUtils.removeStart(range, "bytes=").split("-");
+            from = Long.parseLong(bounds[0]);
+            to = Math.min(to, Long.parseLong(bounds[1]));
+        }
+        if (from >= failFrom.get()) {
+            send(exchange, 500, new byte[0]);
+            return;
+        }
+
+        byte[] bytes = new byte[(int) (to - from + 1)];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(from);
+            in.readFully(bytes);
+        }
+        exchange.getResponseHeaders().add("ETag", "\"" + etag(file) + "\"");
+        send(exchange, range == null ? 200 : 206, bytes);
+    }
+
+    private static String etag(File file) throws IOException {
+        return Files.hash(file, Hashing.md5()).toString();
+    }
+
+    private static Map<String, String> query(URI uri) throws IOException {
+        Map<String, String> query = Maps.newHashMap();
+        for (String parameter: StringUtils.split(StringUtils.defaultString(uri.getRawQuery()), '&')) {
+            query.put(URLDecoder.decode(StringUtils.substringBefore(parameter, "="), "UTF-8"),
+                    URLDecoder.decode(StringUtils.substringAfter(parameter, "="), "UTF-8"));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,170 @@
+package com.itzap.proxy.s3;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.LibCallback;
+import com.itzap.proxy.model.S3Artifact;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class S3ArtifactTest {
+    private static final int PART_SIZE = 16 * 1024;
+
+    private File folder;
+    private File bucket;
+    private File destination;
+    private FakeS3Server server;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDir();
+        bucket = new File(folder, "s3/libs");
+        destination = new File(folder, "local");
+
+        File version = new File(bucket, "releases/test-lib/1.0");
+        FileUtils.copyFile(ArtifactClassLoaderTest.testLibJar(), new File(version, "test-lib.jar"));
+        byte[] big = new byte[100 * 1024];
+        new Random(42).nextBytes(big);
+        FileUtils.writeByteArrayToFile(new File(version, "big.jar"), big);
+        FileUtils.write(new File(version, "notes.txt"), "not a jar", "UTF-8");
+        FileUtils.write(new File(bucket, "releases/test-lib/1.0.1/other.jar"), "newer", "UTF-8");
+
+        server = new FakeS3Server(new File(folder, "s3"));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        FileUtils.deleteQuietly(folder);
+    }
+
+    @Test
+    public void downloadVersionFolder() throws Exception {
+        Progress callback = new Progress();
+        List<URL> urls = artifact(callback).load();
+
+        assertThat(urls.size(), is(2));
+        for (URL url: urls) {
+            File local = new File(url.toURI());
+            File remote = new File(bucket, "releases/test-lib/1.0/" + local.getName());
+            assertThat(FileUtils.contentEquals(local, remote), is(true));
+        }
+        long total = new File(bucket, "releases/test-lib/1.0/big.jar").length() +
+                new File(bucket, "releases/test-lib/1.0/test-lib.jar").length();
+        assertThat(callback.length, is(total));
+        assertThat(callback.position.get(), is(total));
+        assertThat(callback.starts.get(), is(1));
+        assertThat(callback.stops.get(), is(1));
+
+        // unchanged etags, so nothing is fetched again
+        int requests = server.objectRequests.get();
+        assertThat(artifact(new Progress()).load().size(), is(2));
+        assertThat(server.objectRequests.get(), is(requests));
+    }
+
+    @Test
+    public void skipKeysOutsideDestination() throws Exception {
+        server.aliases.put("releases/test-lib/1.0/../../../escaped.jar",
+                new File(bucket, "releases/test-lib/1.0/test-lib.jar"));
+
+        assertThat(artifact(new Progress()).load().size(), is(2));
+        for (File file: FileUtils.listFiles(folder, null, true)) {
+            assertThat(file.getName().startsWith("escaped"), is(false));
+        }
+    }
+
+    @Test
+    public void resumePartialDownload() throws Exception {
+        File big = new File(destination, "test-lib/1.0/big.jar");
+        server.failFrom.set(3 * PART_SIZE);
+
+        assertThat(artifact(null).load().isEmpty(), is(true));
+        assertThat(big.exists(), is(false));
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(big.getPath() + ".part.state")) {
+            state.load(in);
+        }
+        int done = StringUtils.split(state.getProperty("done"), ',').length;
+
+        server.failFrom.set(Long.MAX_VALUE);
+        server.objectRequests.set(0);
+        assertThat(artifact(null).load().size(), is(2));
+
+        // only the parts of big.jar missing from the state file, test-lib.jar is cached
+        assertThat(server.objectRequests.get(), is(7 - done));
+        assertThat(FileUtils.contentEquals(big, new File(bucket, "releases/test-lib/1.0/big.jar")), is(true));
+        assertThat(new File(big.getPath() + ".part.state").exists(), is(false));
+    }
+
+    private S3Artifact artifact(LibCallback callback) {
+        return S3Artifact.builder()
+                .withEndpoint(server.getEndpoint())
+                .withBucket("libs")
+                .withRoot("releases")
+                .withPartSize(PART_SIZE)
+                .withCallback(callback)
+                .withExtensions(ImmutableSet.of("jar"))
+                .withVersionInfo(ProxyUtils.newVersionInfo("test-lib", "1.0", destination))
+                .build();
+    }
+
+    private static class Progress implements LibCallback {
+        private volatile long length;
+        private final AtomicLong position = new AtomicLong();
+        private final AtomicInteger starts = new AtomicInteger();
+        private final AtomicInteger stops = new AtomicInteger();
+
+        @Override
+        public String getLibVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public File getLibFolder() {
+            return null;
+        }
+
+        @Override
+        public void setLength(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public void start() {
+            starts.incrementAndGet();
+        }
+
+        @Override
+        public void stop() {
+            stops.incrementAndGet();
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public void tell(String origin, String destination, long pos) {
+            position.set(pos);
+        }
+    }
+}
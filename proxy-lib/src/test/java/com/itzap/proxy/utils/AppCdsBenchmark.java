@@ -0,0 +1,104 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Startup benchmark for the test-lib artifact. Runs the AppCds training pass in a child JVM that
+ * dumps a dynamic archive, then compares cold starts with and without the archive.
+ * Run from the proxy-lib test class path; requires JDK 13 or later.
+ */
+public class AppCdsBenchmark {
+    private static final int RUNS = 5;
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    public static void main(String[] args) throws Exception {
+        File work = Files.createTempDirectory("appcds").toFile();
+        try {
+            File libDir = new File(work, "bench/1.0");
+            FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+            File archive = new File(work, "app.jsa");
+            // CDS accepts only jar files on the class path
+            String classPath = jarClassPath(new File(work, "cp"));
+
+            run(classPath, libDir, "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+            if (!archive.isFile()) {
+                System.out.println("JVM did not produce a dynamic archive. JDK 13 or later is required");
+                return;
+            }
+
+            long baseline = best(classPath, libDir, "-Xshare:auto");
+            long archived = best(classPath, libDir, "-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            System.out.printf("test-lib startup: baseline %d ms, with AppCDS %d ms (best of %d)%n",
+                    baseline, archived, RUNS);
+        } finally {
+            FileUtils.deleteQuietly(work);
+        }
+    }
+
+    private static long best(String classPath, File libDir, String option) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            best = Math.min(best, run(classPath, libDir, option));
+        }
+        return best;
+    }
+
+    private static String jarClassPath(File dir) throws Exception {
+        List<String> entries = Lists.newArrayList();
+        for (String entry: System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(entry);
+            if (file.isDirectory()) {
+                File jar = new File(dir, entries.size() + ".jar");
+                FileUtils.forceMkdir(dir);
+                jar(file, jar);
+                entries.add(jar.getAbsolutePath());
+            } else if (file.isFile()) {
+                entries.add(file.getAbsolutePath());
+            }
+        }
+        return Joiner.on(File.pathSeparator).join(entries);
+    }
+
+    private static void jar(File dir, File jar) throws Exception {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (File file: FileUtils.listFiles(dir, null, true)) {
+                String name = dir.toURI().relativize(file.toURI()).getPath();
+                out.putNextEntry(new JarEntry(name));
+                FileUtils.copyFile(file, out);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static long run(String classPath, File libDir, String option) throws Exception {
+        List<String> command = Lists.newArrayList(
+                new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(),
+                option,
+                "-cp", classPath,
+                AppCds.class.getName(),
+                libDir.getAbsolutePath(),
+                LIB_CLASS);
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Training run failed with " + option);
+        }
+        return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    }
+}
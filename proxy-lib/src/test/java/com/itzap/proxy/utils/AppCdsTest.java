@@ -0,0 +1,56 @@
+package com.itzap.proxy.utils;
+
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.loader.CountingClassLoader;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URLClassLoader;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class AppCdsTest {
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void recordClassList() throws Exception {
+        File libDir = folder.newFolder("cds", "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(AppCdsTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .build();
+
+        URLClassLoader live = LibLoader.getLibClassLoader(artifact);
+        AppCds.Config config = AppCds.train(artifact, LIB_CLASS);
+
+        // training runs in a private loader, the live one is neither replaced nor recording
+        assertThat(LibLoader.getLibClassLoader(artifact), sameInstance(live));
+        assertThat(((CountingClassLoader) live).isRecording(), is(false));
+
+        assertThat(config.isSupported(), is(true));
+        assertThat(config.getClasses(), hasItem(LIB_CLASS));
+        assertThat(config.getClassList().isFile(), is(true));
+        assertThat(AppCds.readClassList(artifact), hasItem(LIB_CLASS));
+        assertThat(AppCds.warmUpFor(artifact).getClasses(), hasItem(LIB_CLASS));
+    }
+}
@@ -0,0 +1,131 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.itzap.proxy.loader.SharedJarLoaders;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ArtifactCacheTest {
+    private static final int SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        ArtifactCache.clear();
+    }
+
+    @After
+    public void restore() {
+        ArtifactCache.setMaxBytes(0);
+        ArtifactCache.setTempMaxBytes(ArtifactCache.DEFAULT_TEMP_MAX_BYTES);
+        ArtifactCache.clear();
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedUnpinned() throws Exception {
+        File v1 = version("1.0");
+        File v2 = version("2.0");
+        File v3 = version("3.0");
+        ArtifactCache.record("cache-1", v1, false);
+        ArtifactCache.record("cache-2", v2, false);
+        ArtifactCache.record("cache-3", v3, true);
+
+        ArtifactCache.pin("cache-1");
+        try {
+            ArtifactCache.setMaxBytes(2 * SIZE + SIZE / 2);
+        } finally {
+            ArtifactCache.unpin("cache-1");
+        }
+
+        assertThat(v1.isDirectory(), is(true));
+        assertThat(v2.exists(), is(false));
+        assertThat(v3.isDirectory(), is(true));
+
+        ArtifactCache.Stats stats = ArtifactCache.getStats();
+        assertThat(stats.getEntries(), is(2));
+        assertThat(stats.getEvictions(), is(1L));
+        assertThat(stats.getHits(), is(1L));
+        assertThat(stats.getMisses(), is(2L));
+
+        // a new run finds the versions from their marker files
+        ArtifactCache.clear();
+        ArtifactCache.setMaxBytes(SIZE + SIZE / 2);
+        ArtifactCache.record("cache-3", v3, true);
+        assertThat(v1.exists(), is(false));
+        assertThat(v3.isDirectory(), is(true));
+    }
+
+    @Test
+    public void boundTempFolders() throws Exception {
+        File v1 = version("1.0");
+        File v2 = version("2.0");
+        File v3 = version("3.0");
+        ArtifactCache.setTempMaxBytes(SIZE + SIZE / 2);
+        ArtifactCache.record("temp-1", v1, false, true);
+        ArtifactCache.record("temp-2", v2, false, true);
+        ArtifactCache.record("kept", v3, false);
+
+        // no overall budget is set, only temp folders are bounded
+        assertThat(v1.exists(), is(false));
+        assertThat(v2.isDirectory(), is(true));
+        assertThat(v3.isDirectory(), is(true));
+    }
+
+    @Test
+    public void keepFoldersOfSharedJars() throws Exception {
+        File v1 = version("1.0");
+        File v2 = version("2.0");
+        ArtifactCache.record("shared-1", v1, false);
+        ArtifactCache.record("shared-2", v2, false);
+
+        // the first owner is gone, but another artifact still reads the jar through the shared loader
+        SharedJarLoaders.setPolicy(Predicates.<String>alwaysTrue());
+        try {
+            SharedJarLoaders.share("shared-other", Lists.newArrayList(new File(v1, "lib.jar").toURI().toURL()),
+                    ClassLoader.getSystemClassLoader().getParent());
+            ArtifactCache.setMaxBytes(SIZE + SIZE / 2);
+        } finally {
+            SharedJarLoaders.clear();
+            SharedJarLoaders.setPolicy(null);
+        }
+
+        assertThat(v1.isDirectory(), is(true));
+        assertThat(v2.exists(), is(false));
+    }
+
+    @Test
+    public void keepFoldersWithForeignMarkers() throws Exception {
+        // older releases also marked lib folders, which hold jars the cache cannot fetch again
+        File lib = version("0.9");
+        FileUtils.touch(new File(lib, ArtifactCache.MARKER));
+        File v1 = version("1.0");
+        File v2 = version("2.0");
+        ArtifactCache.record("owned-1", v1, false);
+        ArtifactCache.record("owned-2", v2, false);
+
+        ArtifactCache.setMaxBytes(SIZE + SIZE / 2);
+        assertThat(new File(lib, "lib.jar").isFile(), is(true));
+        assertThat(v1.exists(), is(false));
+        assertThat(ArtifactCache.getStats().getEntries(), is(1));
+    }
+
+    private File version(String version) throws IOException {
+        File dir = folder.newFolder("cache", version);
+        FileUtils.writeByteArrayToFile(new File(dir, "lib.jar"), new byte[SIZE]);
+        return dir;
+    }
+}
@@ -0,0 +1,83 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled artifact filter with the original per-call string matching over the entry
+ * names of a 50k entry fat jar. Run from the proxy-lib test class path.
+ */
+public class ArtifactFilterBenchmark {
+    private static final int ENTRIES = 50000;
+    private static final int WARM_UP = 20;
+    private static final int RUNS = 20;
+    private static final String ROOT = "lib";
+    private static final String LIB = "myLib/2.0";
+    private static final Set<String> EXTENSIONS = ImmutableSet.of("jar");
+
+    public static void main(String[] args) {
+        List<String> entries = entries();
+        Predicate<String> compiled = LibLoader.jarPredicate(ROOT, LIB, EXTENSIONS);
+        Predicate<String> original = input -> original(ROOT, LIB, input, EXTENSIONS);
+
+        long originalNanos = best(original, entries);
+        long compiledNanos = best(compiled, entries);
+        System.out.printf("%d entries: original %.2f ms, compiled %.2f ms (%.1fx)%n", ENTRIES,
+                originalNanos / 1e6, compiledNanos / 1e6, (double) originalNanos / compiledNanos);
+    }
+
+    private static long best(Predicate<String> filter, List<String> entries) {
+        long best = Long.MAX_VALUE;
+        int kept = 0;
+        for (int i = 0; i < WARM_UP + RUNS; i++) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            for (String entry: entries) {
+                if (filter.apply(entry)) {
+                    kept++;
+                }
+            }
+            if (i >= WARM_UP) {
+                best = Math.min(best, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+            }
+        }
+        if (kept == 0) {
+            throw new IllegalStateException("Filter kept no entries");
+        }
+        return best;
+    }
+
+    private static List<String> entries() {
+        List<String> entries = Lists.newArrayListWithCapacity(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            if (i % 500 == 0) {
+                entries.add("lib/myLib/2.0/dependency-" + i + ".jar");
+            } else {
+                entries.add("BOOT-INF/classes/com/example/service/package" + (i % 97) + "/Class" + i + ".class");
+            }
+        }
+        return entries;
+    }
+
+    // matching as it was done before the filter was compiled
+    private static boolean original(String root, String lib, String input, Set<String> extentions) {
+        String testInput = FilenameUtils.separatorsToUnix(input);
+        String testPath = FilenameUtils.separatorsToUnix(Joiner.on('/')
+                .skipNulls().join(root, lib));
+        String testRuntime = StringUtils.isBlank(root) ? FilenameUtils.separatorsToUnix("runtime/") :
+                FilenameUtils.separatorsToUnix(root + "/runtime/");
+
+        String ext = FilenameUtils.getExtension(input);
+        return (StringUtils.containsIgnoreCase(testInput, testPath) &&
+                extentions.contains(ext)) ||
+                StringUtils.containsIgnoreCase(testInput, testRuntime);
+    }
+}
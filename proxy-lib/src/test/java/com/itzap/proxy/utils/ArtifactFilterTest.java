@@ -0,0 +1,32 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ArtifactFilterTest {
+    @Test
+    public void matchesLibAndRuntimePaths() {
+        Predicate<String> filter = LibLoader.jarPredicate("lib", "myLib/2.0", ImmutableSet.of("jar"));
+
+        assertThat(filter.apply("lib/myLib/2.0/a.jar"), is(true));
+        assertThat(filter.apply("/opt/app/LIB/MyLib/2.0/a.jar"), is(true));
+        assertThat(filter.apply("C:\\app\\lib\\myLib\\2.0\\a.jar"), is(true));
+        assertThat(filter.apply("lib/myLib/2.0/a.txt"), is(false));
+        assertThat(filter.apply("lib/myLib/2.0/a.JAR"), is(false));
+        assertThat(filter.apply("lib/myLib/2.0.jar/readme"), is(false));
+        assertThat(filter.apply("lib/myLib/1.0/a.jar"), is(false));
+        assertThat(filter.apply("lib/runtime/any.txt"), is(true));
+        assertThat(filter.apply("other/runtime/any.txt"), is(false));
+        assertThat(filter.apply("lib/myLib"), is(false));
+
+        assertThat(LibLoader.jarPredicate(null, "myLib", ImmutableSet.of("jar")).apply("runtime/x"), is(true));
+        assertThat(LibLoader.isKeepArtifact("lib", "myLib/2.0", "lib/mylib/2.0/a.jar", ImmutableSet.of("jar")), is(true));
+        assertThat(LibLoader.jarPredicate("lib", "myLib/2.0", ImmutableSet.of("jar")), sameInstance(filter));
+    }
+}
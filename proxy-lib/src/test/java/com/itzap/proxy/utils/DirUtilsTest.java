@@ -0,0 +1,51 @@
+package com.itzap.proxy.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class DirUtilsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        DirUtils.clearCache();
+    }
+
+    @Test
+    public void versionNames() {
+        assertThat(DirUtils.isVersion("1.0"), is(true));
+        assertThat(DirUtils.isVersion("2"), is(true));
+        assertThat(DirUtils.isVersion("1.2.3-SNAPSHOT"), is(true));
+        assertThat(DirUtils.isVersion("1.2-3"), is(true));
+        assertThat(DirUtils.isVersion("1.x"), is(false));
+        assertThat(DirUtils.isVersion("1..2"), is(false));
+        assertThat(DirUtils.isVersion("1."), is(false));
+        assertThat(DirUtils.isVersion(""), is(false));
+    }
+
+    @Test
+    public void refreshChangedPaths() throws Exception {
+        File path = new File(folder.getRoot(), "lib.jar");
+        // missing paths are guessed from the name
+        assertThat(DirUtils.isDirectory(path), is(false));
+
+        assertThat(path.mkdir(), is(true));
+        DirUtils.invalidate(path);
+        assertThat(DirUtils.isDirectory(path), is(true));
+
+        assertThat(path.delete(), is(true));
+        assertThat(path.createNewFile(), is(true));
+        DirUtils.invalidate(path);
+        assertThat(DirUtils.isDirectory(path), is(false));
+        assertThat(DirUtils.isDirectory(new File(folder.getRoot(), "2.0")), is(true));
+    }
+}
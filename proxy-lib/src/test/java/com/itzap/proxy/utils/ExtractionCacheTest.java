@@ -0,0 +1,54 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ExtractionCacheTest {
+    private static final String NESTED = "lib/test/1.0/test-lib.jar";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void extractAndReuse() throws Exception {
+        byte[] bytes = Files.toByteArray(ArtifactClassLoaderTest.testLibJar());
+        File outer = folder.newFile("outer.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(outer))) {
+            out.putNextEntry(new JarEntry(NESTED));
+            out.write(bytes);
+            out.closeEntry();
+        }
+
+        File cache = folder.newFolder("cache");
+        try (JarFile jar = new JarFile(outer)) {
+            JarEntry entry = jar.getJarEntry(NESTED);
+            File target = new File(cache, ExtractionCache.cacheName(entry));
+            assertThat(target.getName().startsWith("test-lib-"), is(true));
+
+            // leftovers of a crashed run
+            Files.write(new byte[10], target);
+            Files.write(new byte[10], new File(cache, target.getName() + ".abc.tmp"));
+            assertThat(ExtractionCache.isCached(target, entry), is(false));
+
+            ExtractionCache.extract(jar, cache, ImmutableMap.of(entry, target));
+
+            assertThat(ExtractionCache.isCached(target, entry), is(true));
+            assertThat(Files.equal(target, ArtifactClassLoaderTest.testLibJar()), is(true));
+            assertThat(new File(cache, target.getName() + ".abc.tmp").exists(), is(false));
+        }
+    }
+}
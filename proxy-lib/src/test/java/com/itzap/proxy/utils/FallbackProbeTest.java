@@ -0,0 +1,139 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.ProxyVersionedInterface;
+import com.itzap.proxy.model.AbstractArtifact;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.LibCallback;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+
+public class FallbackProbeTest {
+    private static final long DELAY_MILLIS = 300;
+
+    @After
+    public void restore() {
+        FallbackProbe.setParallel(false);
+        FallbackProbe.setNegativeTtl(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void probeConcurrentlyInChainOrder() throws Exception {
+        URL second = new URL("file:/lib/second.jar");
+        URL third = new URL("file:/lib/third.jar");
+        ProbedArtifact chain = new ProbedArtifact("primary", null,
+                new ProbedArtifact("second", second,
+                        new ProbedArtifact("third", third, null)));
+        FallbackProbe.setParallel(true);
+
+        long start = System.nanoTime();
+        List<URL> urls = FallbackProbe.load(chain);
+
+        assertThat(urls, is((List<URL>) ImmutableList.of(second)));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(2 * DELAY_MILLIS));
+    }
+
+    @Test
+    public void skipMissingWithinTtl() throws Exception {
+        URL fallback = new URL("file:/lib/fallback.jar");
+        ProbedArtifact secondary = new ProbedArtifact("ttl-fallback", fallback, null);
+        ProbedArtifact primary = new ProbedArtifact("ttl-primary", null, secondary);
+        FallbackProbe.setNegativeTtl(1, TimeUnit.MINUTES);
+
+        assertThat(FallbackProbe.load(primary), is((List<URL>) ImmutableList.of(fallback)));
+        assertThat(FallbackProbe.load(primary), is((List<URL>) ImmutableList.of(fallback)));
+        assertThat(primary.loads.get(), is(1));
+        assertThat(secondary.loads.get(), is(2));
+        assertThat(FallbackProbe.isMissing(primary), is(true));
+    }
+
+    @Test
+    public void keepLosingProbesOutOfNegativeCache() throws Exception {
+        URL first = new URL("file:/lib/first.jar");
+        ProbedArtifact secondary = new ProbedArtifact("losing-second", new URL("file:/lib/second.jar"), null);
+        ProbedArtifact primary = new ProbedArtifact("losing-first", first, secondary);
+        secondary.delayMillis = 2 * DELAY_MILLIS;
+        FallbackProbe.setParallel(true);
+        FallbackProbe.setNegativeTtl(1, TimeUnit.MINUTES);
+
+        assertThat(FallbackProbe.load(primary), is((List<URL>) ImmutableList.of(first)));
+
+        // the losing probe is interrupted, but its healthy candidate is not marked missing
+        Thread.sleep(3 * DELAY_MILLIS);
+        assertThat(secondary.loads.get(), is(1));
+        assertThat(secondary.interrupted, is(true));
+        assertThat(FallbackProbe.isMissing(secondary), is(false));
+    }
+
+    private static class ProbedArtifact extends AbstractArtifact {
+        private final URL url;
+        private final ArtifactInterface fallback;
+        private final AtomicInteger loads = new AtomicInteger();
+        private long delayMillis = DELAY_MILLIS;
+        private volatile boolean interrupted;
+
+        private ProbedArtifact(String name, URL url, ArtifactInterface fallback) {
+            super("/", name, ImmutableSet.of("jar"), FallbackProbeTest.class, new File("."), null,
+                    ProxyUtils.newVersionInfo(name, "1.0", new File(".")));
+            this.url = url;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public SourceType getSourceType() {
+            return SourceType.UNKNOWN;
+        }
+
+        @Override
+        public LibCallback getCallback() {
+            return null;
+        }
+
+        @Override
+        public boolean hasFallback() {
+            return fallback != null;
+        }
+
+        @Override
+        public ArtifactInterface getFallback() {
+            return fallback;
+        }
+
+        @Override
+        public List<URL> load() {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                // an interrupted download resolves nothing
+                interrupted = true;
+                Thread.currentThread().interrupt();
+                return ImmutableList.of();
+            }
+            return url == null ? ImmutableList.<URL>of() : ImmutableList.of(url);
+        }
+
+        @Override
+        public ArtifactInterface fromVersion(ProxyVersionedInterface version) {
+            return this;
+        }
+
+        @Override
+        public String getLabel() {
+            return getName();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.loader.MappedJarSource;
+import com.itzap.proxy.loader.ZipIndex;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class FastJarTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        FastJar.setDirectory(folder.newFolder("fastjar"));
+    }
+
+    @After
+    public void restore() {
+        FastJar.setDirectory(null);
+    }
+
+    @Test
+    public void repackOnce() throws Exception {
+        File jar = ArtifactClassLoaderTest.testLibJar();
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(FastJarTest.class)
+                .withDestination(folder.getRoot())
+                .withVersionInfo(ProxyUtils.newVersionInfo("fast", "1.0", folder.getRoot()))
+                .withFastJar(true)
+                .build();
+
+        List<URL> urls = FastJar.repack(artifact, ImmutableList.of(jar.toURI().toURL()));
+        assertThat(urls.size(), is(1));
+
+        File fastJar = FileUtils.toFile(urls.get(0));
+        for (ZipIndex.Entry entry: MappedJarSource.open(fastJar).getIndex().getEntries()) {
+            assertThat(entry.getName(), entry.isStored(), is(true));
+        }
+
+        assertThat(fastJar.getAbsolutePath().startsWith(FastJar.getDirectory().getAbsolutePath()), is(true));
+
+        // an unchanged source is not read again
+        long modified = fastJar.lastModified();
+        long hashed = Digests.hashed();
+        assertThat(FastJar.repack(artifact, ImmutableList.of(jar.toURI().toURL())), is(urls));
+        assertThat(fastJar.lastModified(), is(modified));
+        assertThat(Digests.hashed(), is(hashed));
+    }
+}
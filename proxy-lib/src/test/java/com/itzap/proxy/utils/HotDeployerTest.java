@@ -0,0 +1,119 @@
+package com.itzap.proxy.utils;
+
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+
+public class HotDeployerTest {
+    private static final long TIMEOUT_MILLIS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HotDeployer deployer;
+
+    @After
+    public void restore() {
+        if (deployer != null) {
+            deployer.close();
+        }
+        HotDeployer.setQuietPeriod(1, TimeUnit.SECONDS);
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void switchToNewVersion() throws Exception {
+        File libDir = folder.getRoot();
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), new File(libDir, "hot/1.0"));
+        HotDeployer.setQuietPeriod(100, TimeUnit.MILLISECONDS);
+        deployer = HotDeployer.watch("hot", libDir, versionInfo -> DirArtifact.builder()
+                .withClazz(HotDeployerTest.class)
+                .withVersionInfo(versionInfo)
+                .build());
+        assertThat(deployer.getVersion(), is("1.0"));
+
+        ArtifactInterface old = deployer.getCurrent();
+        try (LoaderUsage.Lease lease = deployer.lease()) {
+            FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), new File(libDir, "hot/2.0"));
+            waitFor(() -> "2.0".equals(deployer.getVersion()));
+
+            // the old version stays loaded while it is leased
+            Thread.sleep(300);
+            assertThat(LibLoader.containsLoader(old.getName()), is(true));
+        }
+        waitFor(() -> !LibLoader.containsLoader(old.getName()));
+        assertThat(LibLoader.containsLoader(deployer.getCurrent().getName()), is(true));
+    }
+
+    @Test
+    public void stopLeasingVersionReloadedInPlace() throws Exception {
+        File libDir = folder.getRoot();
+        File versionDir = new File(libDir, "reload/1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), versionDir);
+        HotDeployer.setQuietPeriod(100, TimeUnit.MILLISECONDS);
+        deployer = HotDeployer.watch("reload", libDir, versionInfo -> DirArtifact.builder()
+                .withClazz(HotDeployerTest.class)
+                .withVersionInfo(versionInfo)
+                .build());
+
+        URLClassLoader old = LibLoader.getLibClassLoader(deployer.getCurrent());
+        Future<URLClassLoader> next;
+        try (LoaderUsage.Lease lease = deployer.lease()) {
+            FileUtils.copyFile(ArtifactClassLoaderTest.testLibJar(), new File(versionDir, "extra.jar"));
+            Thread.sleep(1000);
+
+            // a caller that holds a lease keeps the old version instead of waiting on itself
+            try (LoaderUsage.Lease again = deployer.lease()) {
+                assertThat(LibLoader.getLibClassLoader(deployer.getCurrent()), sameInstance(old));
+            }
+
+            // the draining version is not leased again by other callers
+            next = Executors.newSingleThreadExecutor().submit(() -> {
+                try (LoaderUsage.Lease nextLease = deployer.lease()) {
+                    return LibLoader.getLibClassLoader(deployer.getCurrent());
+                }
+            });
+            Thread.sleep(300);
+            assertThat(next.isDone(), is(false));
+        }
+        assertThat(next.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), not(sameInstance(old)));
+    }
+
+    @Test
+    public void compareVersions() {
+        assertThat(HotDeployer.compareVersions("1.10", "1.9"), greaterThan(0));
+        assertThat(HotDeployer.compareVersions("1.0", "1.0.1"), lessThan(0));
+        assertThat(HotDeployer.compareVersions("2.0", "2"), is(0));
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.met()) {
+            assertThat("Timed out", System.currentTimeMillis() < deadline, is(true));
+            Thread.sleep(50);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+}
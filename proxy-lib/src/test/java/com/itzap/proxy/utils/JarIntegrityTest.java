@@ -0,0 +1,101 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.itzap.proxy.IntegrityException;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import com.itzap.proxy.model.Integrity;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JarIntegrityTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        LibLoader.unloadAll();
+        JarIntegrity.setStoreDirectory(null);
+        ResolutionManifest.setDirectory(null);
+    }
+
+    @Test
+    public void verifyAndReuseDigests() throws Exception {
+        File libDir = TestLib.copy(folder, "integrity");
+        File jar = TestLib.jar(libDir);
+        String sha256 = Files.hash(jar, Hashing.sha256()).toString();
+
+        JarIntegrity.setStoreDirectory(folder.newFolder("store"));
+        File manifest = folder.newFile("SHA256SUMS");
+        FileUtils.write(manifest, sha256 + "  " + jar.getName() + "\n", "UTF-8");
+        ArtifactInterface artifact = artifact(libDir, Integrity.builder().withManifest(manifest).build());
+
+        assertThat(Digests.mappedSha256(jar), is(sha256));
+        assertThat(LibLoader.getLibClassLoader(artifact).getURLs().length, is(1));
+        assertThat(JarIntegrity.getStoreFile(artifact).isFile(), is(true));
+
+        // a restart takes the digest from the store instead of hashing again
+        LibLoader.unloadAll();
+        Digests.clearCache();
+        long hashed = Digests.hashed();
+        assertThat(LibLoader.getLibClassLoader(artifact).getURLs().length, is(1));
+        assertThat(Digests.hashed(), is(hashed));
+    }
+
+    @Test
+    public void rebuildTamperedFastJar() throws Exception {
+        ResolutionManifest.setDirectory(folder.newFolder("manifest"));
+        File libDir = TestLib.copy(folder, "fast");
+        File jar = TestLib.jar(libDir);
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(JarIntegrityTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .withIntegrity(Integrity.builder().withDigest(jar.getName(), Digests.mappedSha256(jar)).build())
+                .withFastJar(true)
+                .build();
+
+        File fastJar = FileUtils.toFile(LibLoader.getLibClassLoader(artifact).getURLs()[0]);
+        String sha256 = Digests.mappedSha256(fastJar);
+        LibLoader.unloadAll();
+        Digests.clearCache();
+
+        // same size and modification time, so the resolution manifest still points at the fast jar
+        byte[] bytes = FileUtils.readFileToByteArray(fastJar);
+        bytes[bytes.length / 2] ^= 1;
+        long modified = fastJar.lastModified();
+        FileUtils.writeByteArrayToFile(fastJar, bytes);
+        assertThat(fastJar.setLastModified(modified), is(true));
+        assertThat(FileUtils.toFile(LibLoader.getLibClassLoader(artifact).getURLs()[0]), is(fastJar));
+        assertThat(Digests.mappedSha256(fastJar), is(sha256));
+    }
+
+    @Test(expected = IntegrityException.class)
+    public void rejectTamperedJar() throws Exception {
+        File libDir = TestLib.copy(folder, "tampered");
+
+        LibLoader.getLibClassLoader(artifact(libDir, Integrity.builder()
+                .withDigest(TestLib.jar(libDir).getName(),
+                        Hashing.sha256().hashString("other", StandardCharsets.UTF_8).toString())
+                .build()));
+    }
+
+    private static ArtifactInterface artifact(File libDir, Integrity integrity) {
+        return DirArtifact.builder()
+                .withClazz(JarIntegrityTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .withIntegrity(integrity)
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Predicates;
+import com.itzap.proxy.MethodDesriptor;
+import com.itzap.proxy.ObjectBuilder;
+import com.itzap.proxy.ProxyCallerInterface;
+import com.itzap.proxy.ProxyException;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import com.itzap.proxy.model.WarmUp;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+
+public class LibLoaderTest {
+    private static final String LIB_CLASS = "com.itzap.proxy.test.LibClass";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        LibLoader.setLoaderBudget(0, 0);
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void evictIdleLoaders() throws Exception {
+        ArtifactInterface leased = artifact("budget-leased");
+        ArtifactInterface idle = artifact("budget-idle");
+        ArtifactInterface hot = artifact("budget-hot");
+
+        try (LoaderUsage.Lease lease = LibLoader.lease(leased)) {
+            URLClassLoader idleLoader = LibLoader.getLibClassLoader(idle);
+            idleLoader.loadClass(LIB_CLASS);
+
+            // any class count is over budget, so every idle loader is evicted
+            LibLoader.setLoaderBudget(1, 0);
+            assertThat(LibLoader.containsLoader(leased.getName()), is(true));
+            assertThat(LibLoader.containsLoader(idle.getName()), is(false));
+
+            URLClassLoader hotLoader = LibLoader.getLibClassLoader(hot);
+            assertThat(LibLoader.containsLoader(hot.getName()), is(true));
+            assertThat(hotLoader.loadClass(LIB_CLASS).getName(), is(LIB_CLASS));
+
+            URLClassLoader reloaded = LibLoader.getLibClassLoader(idle);
+            assertThat(reloaded, not(sameInstance(idleLoader)));
+            assertThat(reloaded.loadClass(LIB_CLASS).getName(), is(LIB_CLASS));
+        }
+    }
+
+    @Test
+    public void keepEvictedLoaderOpenForCallers() throws Exception {
+        String resource = "META-INF/maven/com.itzap/test-lib/pom.properties";
+        ArtifactInterface artifact = artifact("budget-caller");
+        URLClassLoader loader = LibLoader.getLibClassLoader(artifact);
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact)
+                .build();
+
+        LibLoader.setLoaderBudget(1, 0);
+        assertThat(LibLoader.containsLoader(artifact.getName()), is(false));
+        assertThat(loader.getResource(resource) != null, is(true));
+        assertThat(caller.call("getLibVersion").getResult() != null, is(true));
+
+        caller = null;
+        for (int i = 0; i < 50 && loader.getResource(resource) != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+            LibLoader.setLoaderBudget(1, 0);
+        }
+        assertThat(loader.getResource(resource) == null, is(true));
+    }
+
+    @Test
+    public void warmUpAfterLoad() throws Exception {
+        ArtifactInterface artifact = artifact("warm", WarmUp.builder()
+                .withClasses(LIB_CLASS, "com.itzap.proxy.test.Missing")
+                .withCall(LIB_CLASS, MethodDesriptor.method("getLibVersion"))
+                .build());
+
+        LibLoader.getLibClassLoader(artifact);
+        assertThat(ArtifactWarmUp.awaitAll(30, TimeUnit.SECONDS), is(true));
+        assertThat(ArtifactWarmUp.isReady(), is(true));
+
+        ArtifactWarmUp.Report report = ArtifactWarmUp.getReport().get(artifact.getName());
+        assertThat(report.getLoadedClasses(), is(1));
+        assertThat(report.getFailedClasses(), is(1));
+        assertThat(report.getCalls(), is(1));
+        assertThat(report.getFailedCalls(), is(0));
+    }
+
+    @Test
+    public void shareApiLayer() throws Exception {
+        ArtifactInterface api = artifact("layer-api");
+        File implDir = folder.newFolder("layer-impl", "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), implDir);
+        ArtifactInterface impl = DirArtifact.builder()
+                .withClazz(LibLoaderTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(implDir))
+                .withApiLayer(api)
+                .build();
+
+        Class<?> apiClass = LibLoader.getLibClassLoader(api).loadClass(LIB_CLASS);
+        assertThat(LibLoader.getLibClassLoader(impl).loadClass(LIB_CLASS), sameInstance((Object) apiClass));
+        assertThat(LibLoader.getApiClassLoader(impl), sameInstance(LibLoader.getLibClassLoader(api)));
+
+        ProxyCallerInterface caller = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(impl)
+                .build();
+        assertThat(caller.as(apiClass), sameInstance(caller.see()));
+
+        ProxyCallerInterface other = ObjectBuilder.builder()
+                .setClassName(LIB_CLASS)
+                .setArtifact(artifact("layer-other"))
+                .build();
+        try {
+            other.as(apiClass);
+            fail("Class of an unrelated loader must not be visible");
+        } catch (ProxyException e) {
+            assertThat(e.getMessage().contains("API layer"), is(true));
+        }
+    }
+
+    @Test
+    public void keepApiLayerBehindSharedJars() throws Exception {
+        ArtifactInterface api = artifact("kept-api");
+        File implDir = folder.newFolder("kept-impl", "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), implDir);
+        ArtifactInterface impl = DirArtifact.builder()
+                .withClazz(LibLoaderTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(implDir))
+                .withApiLayer(api)
+                .build();
+        LibLoader.setSharedJarPolicy(Predicates.<String>alwaysTrue());
+
+        try (LoaderUsage.Lease lease = LibLoader.lease(impl)) {
+            // the API layer is a grandparent of the leased loader
+            LibLoader.setLoaderBudget(1, 0);
+            assertThat(LibLoader.containsLoader(impl.getName()), is(true));
+            assertThat(LibLoader.containsLoader(api.getName()), is(true));
+        } finally {
+            LibLoader.setSharedJarPolicy(null);
+        }
+    }
+
+    @Test
+    public void rejectCyclicApiLayer() throws Exception {
+        AtomicReference<ArtifactInterface> firstLayer = new AtomicReference<>();
+        AtomicReference<ArtifactInterface> secondLayer = new AtomicReference<>();
+        ArtifactInterface first = layered(artifact("cycle-first"), firstLayer);
+        ArtifactInterface second = layered(artifact("cycle-second"), secondLayer);
+        firstLayer.set(second);
+        secondLayer.set(first);
+
+        try {
+            LibLoader.getLibClassLoader(first);
+            fail("Cyclic API layer must fail the load");
+        } catch (ProxyException e) {
+            assertThat(e.getMessage().contains("Cyclic API layer"), is(true));
+        }
+        assertThat(LibLoader.containsLoader(first.getName()), is(false));
+        assertThat(LibLoader.containsLoader(second.getName()), is(false));
+    }
+
+    private ArtifactInterface artifact(String label) throws Exception {
+        return artifact(label, null);
+    }
+
+    private ArtifactInterface artifact(String label, WarmUp warmUp) throws Exception {
+        File libDir = folder.newFolder(label, "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+        return DirArtifact.builder()
+                .withClazz(LibLoaderTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .withWarmUp(warmUp)
+                .build();
+    }
+
+    // an artifact whose API layer can be set after it is built
+    private static ArtifactInterface layered(ArtifactInterface artifact, AtomicReference<ArtifactInterface> apiLayer) {
+        return (ArtifactInterface) Proxy.newProxyInstance(LibLoaderTest.class.getClassLoader(),
+                new Class<?>[] {ArtifactInterface.class},
+                (proxy, method, args) -> "getApiLayer".equals(method.getName()) ?
+                        apiLayer.get() : method.invoke(artifact, args));
+    }
+}
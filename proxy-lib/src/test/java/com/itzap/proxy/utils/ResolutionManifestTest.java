@@ -0,0 +1,98 @@
+package com.itzap.proxy.utils;
+
+import com.google.common.base.Predicates;
+import com.itzap.proxy.ProxyUtils;
+import com.itzap.proxy.TestLib;
+import com.itzap.proxy.loader.ArtifactClassLoaderTest;
+import com.itzap.proxy.model.ArtifactInterface;
+import com.itzap.proxy.model.DirArtifact;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ResolutionManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        ResolutionManifest.setDirectory(folder.newFolder("manifests"));
+    }
+
+    @After
+    public void restore() {
+        ResolutionManifest.setDirectory(null);
+        LibLoader.unloadAll();
+    }
+
+    @Test
+    public void skipScanWhileDirsUnchanged() throws Exception {
+        File libDir = folder.newFolder("manifest", "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(ResolutionManifestTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .build();
+
+        URL[] resolved = LibLoader.getLibClassLoader(artifact).getURLs();
+        assertThat(ResolutionManifest.getManifestFile(artifact).isFile(), is(true));
+
+        List<URL> cached = ResolutionManifest.read(artifact);
+        assertThat(cached, is(Arrays.asList(resolved)));
+
+        FileUtils.copyFile(ArtifactClassLoaderTest.testLibJar(), new File(libDir, "extra.jar"));
+        libDir.setLastModified(libDir.lastModified() + 2000);
+        assertThat(ResolutionManifest.read(artifact), nullValue());
+        assertThat(FileUtils.listFiles(libDir, null, true).size(), is(2));
+    }
+
+    @Test
+    public void skipPredicatesWithoutText() throws Exception {
+        ArtifactInterface lambda = TestLib.artifact(folder, "lambda", ResolutionManifestTest.class)
+                .withPredicate(name -> name.endsWith(".jar"))
+                .build();
+        ArtifactInterface named = TestLib.artifact(folder, "named", ResolutionManifestTest.class)
+                .withPredicate(Predicates.<String>alwaysTrue())
+                .build();
+
+        LibLoader.getLibClassLoader(lambda);
+        LibLoader.getLibClassLoader(named);
+        assertThat(ResolutionManifest.getManifestFile(lambda).exists(), is(false));
+        assertThat(ResolutionManifest.getManifestFile(named).isFile(), is(true));
+    }
+
+    @Test
+    public void staleWhenFastJarSourceChanges() throws Exception {
+        File libDir = folder.newFolder("fast", "1.0");
+        FileUtils.copyFileToDirectory(ArtifactClassLoaderTest.testLibJar(), libDir);
+        ArtifactInterface artifact = DirArtifact.builder()
+                .withClazz(ResolutionManifestTest.class)
+                .withVersionInfo(ProxyUtils.newVersionInfo(libDir))
+                .withFastJar(true)
+                .build();
+
+        LibLoader.getLibClassLoader(artifact);
+        assertThat(ResolutionManifest.read(artifact), notNullValue());
+
+        // overwritten in place, the folder keeps its modification time
+        long dirModified = libDir.lastModified();
+        File source = new File(libDir, ArtifactClassLoaderTest.testLibJar().getName());
+        source.setLastModified(source.lastModified() + 2000);
+        libDir.setLastModified(dirModified);
+        assertThat(ResolutionManifest.read(artifact), nullValue());
+    }
+}